@@ -0,0 +1,126 @@
+package softnet;
+
+import java.io.IOException;
+import java.util.HashSet;
+
+import softnet.core.Reactor;
+import softnet.core.Scheduler;
+import softnet.core.ThreadPool;
+
+public class EndpointRuntime
+{
+	public static EndpointRuntime create()
+	{
+		return create(0, 1, 0);
+	}
+
+	public static EndpointRuntime create(int workerThreads, int schedulerThreads, int ioThreads)
+	{
+		if(workerThreads < 0)
+			throw new IllegalArgumentException("The value of 'workerThreads' must not be negative.");
+		if(schedulerThreads < 1 || schedulerThreads > 64)
+			throw new IllegalArgumentException("The value of 'schedulerThreads' must be in the range [1, 64].");
+		if(ioThreads < 0 || ioThreads > 64)
+			throw new IllegalArgumentException("The value of 'ioThreads' must be in the range [0, 64].");
+
+		EndpointRuntime runtime = new EndpointRuntime(workerThreads, schedulerThreads, ioThreads);
+		runtime.init();
+		return runtime;
+	}
+
+	private ThreadPool threadPool;
+	private Scheduler scheduler;
+	private Reactor reactor;
+	private boolean ownsReactor;
+	private int ioThreads;
+	private HashSet<Object> endpoints;
+	private boolean isShutdown = false;
+	private Object mutex = new Object();
+
+	private EndpointRuntime(int workerThreads, int schedulerThreads, int ioThreads)
+	{
+		threadPool = new ThreadPool(workerThreads);
+		scheduler = new Scheduler(threadPool, schedulerThreads);
+		endpoints = new HashSet<Object>();
+		this.ioThreads = ioThreads;
+	}
+
+	private void init()
+	{
+		threadPool.init();
+		scheduler.init();
+
+		if(ioThreads > 0)
+		{
+			Reactor ownReactor = new Reactor(ioThreads);
+			try
+			{
+				ownReactor.init();
+				reactor = ownReactor;
+				ownsReactor = true;
+			}
+			catch(IOException ex)
+			{
+				reactor = null;
+				ownsReactor = false;
+			}
+		}
+		else
+		{
+			reactor = Reactor.getDefault();
+			ownsReactor = false;
+		}
+	}
+
+	public ThreadPool getThreadPool()
+	{
+		return threadPool;
+	}
+
+	public Scheduler getScheduler()
+	{
+		return scheduler;
+	}
+
+	public Reactor getReactor()
+	{
+		return reactor;
+	}
+
+	public boolean isShutdown()
+	{
+		synchronized(mutex)
+		{
+			return isShutdown;
+		}
+	}
+
+	public void attach(Object endpoint)
+	{
+		synchronized(mutex)
+		{
+			if(isShutdown)
+				throw new IllegalStateException("The endpoint runtime has been shut down.");
+			endpoints.add(endpoint);
+		}
+	}
+
+	public void detach(Object endpoint)
+	{
+		synchronized(mutex)
+		{
+			if(endpoints.remove(endpoint) == false || endpoints.size() > 0)
+				return;
+			isShutdown = true;
+		}
+		shutdown();
+	}
+
+	private void shutdown()
+	{
+		scheduler.shutdown();
+		threadPool.shutdown();
+		if(ownsReactor)
+			reactor.shutdown();
+	}
+}
@@ -0,0 +1,5 @@
+package softnet;
+
+public enum SendQueuePolicy {
+	Block, FailFast, DropOldest
+}
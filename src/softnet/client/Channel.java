@@ -1,11 +1,18 @@
 package softnet.client;
 
+import softnet.core.Acceptor;
 import softnet.core.MsgAcceptor;
+import softnet.core.MsgBufferAcceptor;
 
 interface Channel
 {
 	void registerComponent(int componentId, MsgAcceptor<Channel> MessageReceivedHandler);
+	void registerBufferComponent(int componentId, MsgBufferAcceptor<Channel> MessageReceivedHandler);
 	void removeComponent(int componentId);
-	void send(softnet.core.SoftnetMessage message);
+	boolean send(softnet.core.SoftnetMessage message);
+	boolean sendDiscardable(softnet.core.SoftnetMessage message);
+	boolean isWritable();
+	void awaitWritable();
+	void setWritabilityListener(int componentId, Acceptor<Boolean> listener);
 	boolean closed();
 }
@@ -4,7 +4,9 @@ import java.util.HashSet;
 import java.util.regex.Pattern;
 
 import softnet.EndpointConnectivity;
+import softnet.EndpointRuntime;
 import softnet.MembershipUser;
+import softnet.SendQueuePolicy;
 import softnet.TCPOptions;
 import softnet.core.*;
 
@@ -45,13 +47,23 @@ public class ClientEndpoint
 	{
 		endpointConnector.setLocalPingPeriod(seconds);
 	}
+	
+	public void setSendQueueLimits(int lowWatermark, int highWatermark, SendQueuePolicy policy)
+	{
+		endpointConnector.setSendQueueLimits(lowWatermark, highWatermark, policy);
+	}
+	
+	public ChannelMetricsMBean getChannelMetrics()
+	{
+		return endpointConnector.metrics;
+	}
 
 	public void close()
 	{
 		_isClosed = true;
 		endpointConnector.Close();
-		scheduler.shutdown();
-		threadPool.shutdown();
+		endpointConnector.metrics.unregister();
+		runtime.detach(this);
 	}
 	
 	public boolean isSingleService()
@@ -204,19 +216,7 @@ public class ClientEndpoint
 		validateServiceType(serviceType);
 		validateContractAuthor(contractAuthor);
 		
-		final ClientEndpoint clientEndpoint = new ClientEndpoint();
-		
-		MultiServiceGroup multiServiceGroup = new MultiServiceGroup(clientEndpoint);		
-		multiServiceGroup.remoteServiceOfflineCallback = new BiAcceptor<Long, Channel>()
-		{
-			public void accept(Long serviceId, Channel channel)
-			{
-				clientEndpoint.ServiceGroup_onRemoteServiceOffline(serviceId, channel);
-			}
-		};
-		
-		clientEndpoint.initialize(serviceType, contractAuthor, clientURI, null, null, multiServiceGroup);	
-		return clientEndpoint;
+		return createEndpoint(EndpointRuntime.create(), serviceType, contractAuthor, clientURI, null, null);
 	}
 	
 	public static ClientEndpoint create(String serviceType, String contractAuthor, ClientURI clientURI, String password) throws IllegalArgumentException
@@ -239,22 +239,19 @@ public class ClientEndpoint
 		validateServiceType(serviceType);
 		validateContractAuthor(contractAuthor);
 		
-		final ClientEndpoint clientEndpoint = new ClientEndpoint();
-		
-		MultiServiceGroup multiServiceGroup = new MultiServiceGroup(clientEndpoint);		
-		multiServiceGroup.remoteServiceOfflineCallback = new BiAcceptor<Long, Channel>()
-		{
-			public void accept(Long serviceId, Channel channel)
-			{
-				clientEndpoint.ServiceGroup_onRemoteServiceOffline(serviceId, channel);
-			}
-		};
-		
-		clientEndpoint.initialize(serviceType, contractAuthor, clientURI, password, null, multiServiceGroup);	
-		return clientEndpoint;
+		return createEndpoint(EndpointRuntime.create(), serviceType, contractAuthor, clientURI, password, null);
 	}
 
 	public static ClientEndpoint create(String serviceType,  String contractAuthor, ClientURI clientURI, String password, String clientDescription) throws IllegalArgumentException
+	{
+		return create(serviceType, contractAuthor, clientURI, password, clientDescription, null);
+	}
+
+	/**
+	 * The overload to use for sharing an EndpointRuntime. Pass null for 'password' of a stateless client
+	 * and for 'clientDescription' if there is none; a null 'runtime' creates a private one.
+	 */
+	public static ClientEndpoint create(String serviceType,  String contractAuthor, ClientURI clientURI, String password, String clientDescription, EndpointRuntime runtime) throws IllegalArgumentException
 	{
 		if(clientURI == null)
 			throw new IllegalArgumentException("The value of 'clientURI' is null.");
@@ -280,7 +277,15 @@ public class ClientEndpoint
 				validateClientDescription(clientDescription);
 		}
 		
-		final ClientEndpoint clientEndpoint = new ClientEndpoint();
+		if(runtime == null)
+			runtime = EndpointRuntime.create();
+		
+		return createEndpoint(runtime, serviceType, contractAuthor, clientURI, password, clientDescription);
+	}
+	
+	private static ClientEndpoint createEndpoint(EndpointRuntime runtime, String serviceType, String contractAuthor, ClientURI clientURI, String password, String clientDescription)
+	{
+		final ClientEndpoint clientEndpoint = new ClientEndpoint(runtime);
 		
 		MultiServiceGroup multiServiceGroup = new MultiServiceGroup(clientEndpoint);		
 		multiServiceGroup.remoteServiceOfflineCallback = new BiAcceptor<Long, Channel>()
@@ -291,14 +296,25 @@ public class ClientEndpoint
 			}
 		};
 		
-		clientEndpoint.initialize(serviceType, contractAuthor, clientURI, password, clientDescription, multiServiceGroup);	
+		try
+		{
+			clientEndpoint.initialize(serviceType, contractAuthor, clientURI, password, clientDescription, multiServiceGroup);
+		}
+		catch(RuntimeException ex)
+		{
+			runtime.detach(clientEndpoint);
+			throw ex;
+		}
 		return clientEndpoint;
 	}
 	
-	protected ClientEndpoint()
+	protected ClientEndpoint(EndpointRuntime runtime)
 	{
-		threadPool = new ThreadPool();
-		scheduler = new Scheduler(threadPool);
+		runtime.attach(this);
+		this.runtime = runtime;
+		threadPool = runtime.getThreadPool();
+		scheduler = runtime.getScheduler();
+		reactor = runtime.getReactor();
 		endpoint_mutex = new Object();
 		_isClosed = false;		
 	}
@@ -308,10 +324,8 @@ public class ClientEndpoint
 		this.clientURI = clientURI;
 		this.serviceGroup = serviceGroup;
 		
-		threadPool.init();
-		scheduler.init();		
-		
 		endpointConnector = new EndpointConnector(clientURI, password, endpoint_mutex, this);
+		endpointConnector.metrics.register(getClass().getSimpleName(), clientURI.value);
 		endpointConnector.onConnectedCallback = new Acceptor<Channel>()
 		{
 			public void accept(Channel channel)
@@ -384,8 +398,10 @@ public class ClientEndpoint
 	}
 
 	protected Object endpoint_mutex;
+	protected EndpointRuntime runtime;
 	protected ThreadPool threadPool;
 	protected Scheduler scheduler;
+	protected Reactor reactor;
 	protected ClientURI clientURI;
 	private boolean _isClosed;
 	private ServiceGroup serviceGroup;
@@ -1,5 +1,6 @@
 package softnet.client;
 
+import softnet.EndpointRuntime;
 import softnet.TCPOptions;
 import softnet.core.BiAcceptor;
 
@@ -7,6 +8,11 @@ public class ClientSEndpoint extends ClientEndpoint
 {
 	private RemoteService remoteService;
 
+	private ClientSEndpoint(EndpointRuntime runtime)
+	{
+		super(runtime);
+	}
+
 	public boolean isServiceOnline()
 	{
 		return remoteService.isOnline();
@@ -47,9 +53,7 @@ public class ClientSEndpoint extends ClientEndpoint
 		if(clientURI.category == ClientCategory.SingleService)
 			throw new IllegalArgumentException(String.format("The URI '%s' identifies a stateful client that is not allowed in this context.", clientURI.value));				
 								
-		ClientSEndpoint clientSEndpoint = new ClientSEndpoint();		
-		clientSEndpoint.initialize(serviceType, contractAuthor, clientURI, null, null);			
-		return clientSEndpoint;
+		return createEndpoint(EndpointRuntime.create(), serviceType, contractAuthor, clientURI, null, null);
 	}
 	
 	public static ClientSEndpoint create(String serviceType, String contractAuthor, ClientURI clientURI, String password)
@@ -72,12 +76,19 @@ public class ClientSEndpoint extends ClientEndpoint
 				throw new IllegalArgumentException("The length of 'password' must not be greater than 256.");
 		}
 								
-		ClientSEndpoint clientSEndpoint = new ClientSEndpoint();		
-		clientSEndpoint.initialize(serviceType, contractAuthor, clientURI, password, null);			
-		return clientSEndpoint;
+		return createEndpoint(EndpointRuntime.create(), serviceType, contractAuthor, clientURI, password, null);
 	}
 	
 	public static ClientSEndpoint create(String serviceType, String contractAuthor, ClientURI clientURI, String password, String clientDescription)
+	{
+		return create(serviceType, contractAuthor, clientURI, password, clientDescription, null);
+	}
+
+	/**
+	 * The overload to use for sharing an EndpointRuntime. Pass null for 'password' of a stateless client
+	 * and for 'clientDescription' if there is none; a null 'runtime' creates a private one.
+	 */
+	public static ClientSEndpoint create(String serviceType, String contractAuthor, ClientURI clientURI, String password, String clientDescription, EndpointRuntime runtime)
 	{
 		if(clientURI == null)
 			throw new IllegalArgumentException("'clientURI' must not be null.");
@@ -103,8 +114,24 @@ public class ClientSEndpoint extends ClientEndpoint
 				validateClientDescription(clientDescription);
 		}
 		
-		ClientSEndpoint clientSEndpoint = new ClientSEndpoint();		
-		clientSEndpoint.initialize(serviceType, contractAuthor, clientURI, password, clientDescription);			
+		if(runtime == null)
+			runtime = EndpointRuntime.create();
+		
+		return createEndpoint(runtime, serviceType, contractAuthor, clientURI, password, clientDescription);
+	}
+	
+	private static ClientSEndpoint createEndpoint(EndpointRuntime runtime, String serviceType, String contractAuthor, ClientURI clientURI, String password, String clientDescription)
+	{
+		ClientSEndpoint clientSEndpoint = new ClientSEndpoint(runtime);
+		try
+		{
+			clientSEndpoint.initialize(serviceType, contractAuthor, clientURI, password, clientDescription);
+		}
+		catch(RuntimeException ex)
+		{
+			runtime.detach(clientSEndpoint);
+			throw ex;
+		}
 		return clientSEndpoint;
 	}
 
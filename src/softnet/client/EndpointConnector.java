@@ -19,6 +19,7 @@ class EndpointConnector
 	public Runnable onDisconnectedCallback;
 	public Runnable onClosedCallback;
 	public Acceptor<Channel> onConnectedCallback;
+	public final ChannelMetrics metrics;
 	
 	public EndpointConnector(ClientURI clientURI, String password, Object endpoint_mutex, ClientEndpoint clientEndpoint)
 	{
@@ -28,6 +29,8 @@ class EndpointConnector
 		this.mutex = endpoint_mutex;
 		this.threadPool = clientEndpoint.threadPool;
 		this.scheduler = clientEndpoint.scheduler;
+		this.reactor = clientEndpoint.reactor;
+		metrics = new ChannelMetrics();
 		channelMonitor = new ChannelMonitor();
 	}
 	
@@ -109,6 +112,23 @@ class EndpointConnector
 		channelMonitor.setRemotePingPeriod(period);
     }
 
+    public void setSendQueueLimits(int lowWatermark, int highWatermark, SendQueuePolicy policy)
+    {
+		if(lowWatermark < 0 || highWatermark < lowWatermark)
+			throw new IllegalArgumentException("The watermarks must satisfy 0 <= lowWatermark <= highWatermark.");
+		if(policy == null)
+			throw new IllegalArgumentException("The send queue policy must not be null.");
+
+		synchronized(mutex)
+		{
+			sendQueueLowWatermark = lowWatermark;
+			sendQueueHighWatermark = highWatermark;
+			sendQueuePolicy = policy;
+			if(endpointChannel != null)
+				endpointChannel.setSendQueueLimits(lowWatermark, highWatermark, policy);
+		}
+    }
+
     public void setLocalPingPeriod(int period)
     {
 		if(!(period == 0 || (10 <= period && period <= 300)))
@@ -127,6 +147,7 @@ class EndpointConnector
 	private String password;
 	private ThreadPool threadPool;
 	private Scheduler scheduler;
+	private Reactor reactor;
 	
 	private Object mutex;    
 	private boolean isClosed = false;
@@ -137,6 +158,9 @@ class EndpointConnector
     private byte[] channelId = null;
     private boolean isConnected = false;
     private int connectionAttemptNumber;
+    private int sendQueueLowWatermark = Integer.MAX_VALUE;
+    private int sendQueueHighWatermark = Integer.MAX_VALUE;
+    private SendQueuePolicy sendQueuePolicy = SendQueuePolicy.Block;
 
     private void repeatConnectionAttempt(SoftnetError error)
     {
@@ -302,6 +326,7 @@ class EndpointConnector
     			return;
     		
     		isConnected = true;
+            metrics.onChannelEstablished();
             channelMonitor.onChannelConnected(channel);
             onConnectedCallback.accept(channel);
             
@@ -381,10 +406,10 @@ class EndpointConnector
     	
     	public void onChannelConnected(Channel channel)
     	{
-    		channel.registerComponent(Constants.Client.ChannelMonitor.ModuleId, 
-    			new MsgAcceptor<Channel>()
+    		channel.registerBufferComponent(Constants.Client.ChannelMonitor.ModuleId, 
+    			new MsgBufferAcceptor<Channel>()
     			{
-    				public void accept(byte[] message, Channel _channel) throws AsnException, FormatException, SoftnetException
+    				public void accept(MsgBuffer message, Channel _channel) throws AsnException, FormatException, SoftnetException
     				{
     					onMessageReceived(message, _channel);
     				}
@@ -392,6 +417,7 @@ class EndpointConnector
     		this.channel = (EndpointChannel)channel;    		    		
     	
     		ping_period_remote = 0;
+    		isPongPending = false;
 
     		if(ping_period_local == 0)
     			ping_period = 300;
@@ -489,7 +515,7 @@ class EndpointConnector
 					long next_ping_time = last_input_message_time + ping_period;				
 					if((next_ping_time - 3) <= current_time)
 					{				
-						channel.send(MsgBuilder.Create(Constants.Client.ChannelMonitor.ModuleId, Constants.Client.ChannelMonitor.PING));                    			                    			
+						sendPing();                    			                    			
             			ping_sent_time = current_time;
             			
 						if(ping_period > 60)
@@ -555,7 +581,7 @@ class EndpointConnector
 				long ping_time = last_input_message_time + ping_period;
 				if((ping_time - 3) <= current_time)
 				{
-					channel.send(MsgBuilder.Create(Constants.Client.ChannelMonitor.ModuleId, Constants.Client.ChannelMonitor.PING));                    			                    			
+					sendPing();                    			                    			
         			isPingSent = true;
         			ping_sent_time = current_time;
         			
@@ -602,7 +628,7 @@ class EndpointConnector
 
                 		if((ping_period - last_input_message_age) <= 3)
                 		{
-            				channel.send(MsgBuilder.Create(Constants.Client.ChannelMonitor.ModuleId, Constants.Client.ChannelMonitor.PING));
+            				sendPing();
                 			ping_sent_time = current_time;
 
                 			if(ping_period >= 60)
@@ -641,7 +667,7 @@ class EndpointConnector
             		
             		if((ping_period - last_input_message_age) <= 3)
             		{
-        				channel.send(MsgBuilder.Create(Constants.Client.ChannelMonitor.ModuleId, Constants.Client.ChannelMonitor.PING));                    			                    			
+        				sendPing();                    			                    			
             			ping_sent_time = current_time;
             			isPingSent = true;
 
@@ -689,6 +715,13 @@ class EndpointConnector
     		}
     	}
     	
+    	private void sendPing()
+    	{
+    		channel.send(MsgBuilder.Create(Constants.Client.ChannelMonitor.ModuleId, Constants.Client.ChannelMonitor.PING));
+    		ping_sent_millis = SystemClock.milliSeconds();
+    		isPongPending = true;
+    	}
+    	
     	private void executeKeepAlive(Object data)
     	{
     		KeepAliveContext context = (KeepAliveContext)data;
@@ -713,18 +746,27 @@ class EndpointConnector
     	private long ping_period_local;
     	private long ping_period;
     	private long ping_sent_time;
+    	private long ping_sent_millis;
+    	private boolean isPongPending;
     	private boolean isPingSent;
     	private boolean isEndpointInstalled;
     	
-    	private void onMessageReceived(byte[] message, Channel channel) throws AsnException, FormatException, SoftnetException
+    	private void onMessageReceived(MsgBuffer message, Channel channel) throws AsnException, FormatException, SoftnetException
     	{
     		synchronized(mutex)
     		{
     			if(channel.closed())
     				return;
     			
-    			if(message[1] == Constants.Client.ChannelMonitor.PONG)
-    				return;    				
+    			if(message.get(1) == Constants.Client.ChannelMonitor.PONG)
+    			{
+    				if(isPongPending)
+    				{
+    					isPongPending = false;
+    					metrics.onPingRoundTrip(SystemClock.milliSeconds() - ping_sent_millis);
+    				}
+    				return;
+    			}
     			
    				throw new FormatException();
     		}
@@ -764,6 +806,7 @@ class EndpointConnector
     	void close();
     	long getLastInputMessageTime();
     	long getLastOutputMessageTime();
+    	void setSendQueueLimits(int lowWatermark, int highWatermark, SendQueuePolicy policy);
     }
     
     private class ClearChannel implements EndpointChannel
@@ -773,8 +816,10 @@ class EndpointConnector
     	{
     		try
     		{    			    		
-	    		msgSocket = new MsgSocket(SocketChannel.open());
+	    		msgSocket = new MsgSocket(SocketChannel.open(), reactor);
 				components = new MsgAcceptor[16];
+				bufferComponents = (MsgBufferAcceptor<Channel>[])new MsgBufferAcceptor<?>[16];
+				writabilityListeners = (Acceptor<Boolean>[])new Acceptor<?>[16];
 				last_input_message_time = 0;
 				last_output_message_time = 0;
     		}
@@ -823,8 +868,16 @@ class EndpointConnector
 			{
 				public void run() { onFormatError(); }
 			};					
+			msgSocket.writabilityChangedHandler = new Acceptor<Boolean>()
+			{
+				public void accept(Boolean writable) { onWritabilityChanged(writable); }
+			};
 			msgSocket.minLength = 2;
 			msgSocket.maxLength = 256;	
+			msgSocket.receiveBufferPool = BufferPool.getDefault();
+			msgSocket.dispatcher = threadPool;
+			msgSocket.setSendQueueLimits(sendQueueLowWatermark, sendQueueHighWatermark, sendQueuePolicy);
+			metrics.attach(msgSocket);
 			msgSocket.start();
 
 			startHandshake();
@@ -844,24 +897,66 @@ class EndpointConnector
     	{
     		isClosed = true;
 			msgSocket.close();
+			metrics.detach(msgSocket);
     	}
 
     	// ---------- Channel interface implementation -------------------------------------
     	
-    	public void send(SoftnetMessage message)
+    	public boolean send(SoftnetMessage message)
+    	{
+    		if(msgSocket.send(message) == false)
+    			return false;
+    		metrics.onMessageSent(message);
+    		last_output_message_time = SystemClock.seconds();
+    		return true;
+    	}
+
+    	public boolean sendDiscardable(SoftnetMessage message)
     	{
-    		msgSocket.send(message);
+    		if(msgSocket.send(message, true) == false)
+    			return false;
+    		metrics.onMessageSent(message);
     		last_output_message_time = SystemClock.seconds();
+    		return true;
+    	}
+
+    	public boolean isWritable()
+    	{
+    		return msgSocket.isWritable();
+    	}
+
+    	public void awaitWritable()
+    	{
+    		msgSocket.awaitWritable();
+    	}
+
+    	public void setWritabilityListener(int componentId, Acceptor<Boolean> listener)
+    	{
+    		writabilityListeners[componentId] = listener;
+    	}
+
+    	public void setSendQueueLimits(int lowWatermark, int highWatermark, SendQueuePolicy policy)
+    	{
+    		msgSocket.setSendQueueLimits(lowWatermark, highWatermark, policy);
     	}
 
     	public void registerComponent(int componentId, MsgAcceptor<Channel> MessageReceivedCallback)
     	{
     		components[componentId] = MessageReceivedCallback;
+    		bufferComponents[componentId] = null;
+    	}
+    	
+    	public void registerBufferComponent(int componentId, MsgBufferAcceptor<Channel> MessageReceivedCallback)
+    	{
+    		bufferComponents[componentId] = MessageReceivedCallback;
+    		components[componentId] = null;
     	}
     	
     	public void removeComponent(int componentId)
     	{
     		components[componentId] = null;
+    		bufferComponents[componentId] = null;
+    		writabilityListeners[componentId] = null;
     	}
     	
     	private boolean isClosed = false;
@@ -873,21 +968,26 @@ class EndpointConnector
     	// -----------------------------------------------------------------------
     	
 		private MsgAcceptor<Channel>[] components;    	
+		private MsgBufferAcceptor<Channel>[] bufferComponents;
+		private Acceptor<Boolean>[] writabilityListeners;
     	private MsgSocket msgSocket;
     	private long last_input_message_time;    	
     	private long last_output_message_time;    
     	
-    	private void onMessageReceived(byte[] message)
+    	private void onMessageReceived(MsgBuffer message)
     	{
 			try
 			{
-				//System.out.println(message[0] + " " + message[1]);
-				
 				last_input_message_time = SystemClock.seconds();				
-			    int componentId = message[0];
-			    if(0 <= componentId && componentId < components.length && components[componentId] != null)
+			    int componentId = message.get(0);
+			    metrics.onMessageReceived(componentId, message.length());
+			    if(0 <= componentId && componentId < bufferComponents.length && bufferComponents[componentId] != null)
+			    {
+			    	bufferComponents[componentId].accept(message, this);
+			    }
+			    else if(0 <= componentId && componentId < components.length && components[componentId] != null)
 			    {			    	
-			    	components[componentId].accept(message, this);
+			    	components[componentId].accept(message.toArray(), this);
 			    }
 			    else
 			    {
@@ -906,6 +1006,10 @@ class EndpointConnector
 			{
 				Channel_onError(this, e);
 			}
+			finally
+			{
+				message.release();
+			}
     	}    	
     	
     	private void onChannelMessageReceived(byte[] message)
@@ -920,6 +1024,15 @@ class EndpointConnector
          	}
     	}
     	
+    	private void onWritabilityChanged(Boolean writable)
+    	{
+    		for(Acceptor<Boolean> listener: writabilityListeners)
+    		{
+    			if(listener != null)
+    				listener.accept(writable);
+    		}
+    	}
+
     	private void onNetworkError(NetworkErrorSoftnetException ex)
     	{
     		Channel_onError(this, ex);
@@ -1082,9 +1195,9 @@ class EndpointConnector
             sequence.end();
         	
 			msgSocket.maxLength = 4194304;
-            msgSocket.messageReceivedHandler = new Acceptor<byte[]>()
+            msgSocket.bufferReceivedHandler = new Acceptor<MsgBuffer>()
 			{
-				public void accept(byte[] message) { onMessageReceived(message); }
+				public void accept(MsgBuffer message) { onMessageReceived(message); }
 			};
 			
 			Channel_onEstablished(this);
@@ -1094,9 +1207,9 @@ class EndpointConnector
     	private void ProcessMessage_OpenOk2(byte[] message) throws AsnException
     	{
 			msgSocket.maxLength = 4194304;
-            msgSocket.messageReceivedHandler = new Acceptor<byte[]>()
+            msgSocket.bufferReceivedHandler = new Acceptor<MsgBuffer>()
 			{
-				public void accept(byte[] message) { onMessageReceived(message); }
+				public void accept(MsgBuffer message) { onMessageReceived(message); }
 			};
 			
 			Channel_onEstablished(this);
@@ -1106,9 +1219,9 @@ class EndpointConnector
     	private void ProcessMessage_RestoreOk()
     	{
 			msgSocket.maxLength = 4194304;
-    		msgSocket.messageReceivedHandler = new Acceptor<byte[]>()
+    		msgSocket.bufferReceivedHandler = new Acceptor<MsgBuffer>()
 			{
-				public void accept(byte[] message) { onMessageReceived(message); }
+				public void accept(MsgBuffer message) { onMessageReceived(message); }
 			};
 			
 			Channel_onEstablished(this);
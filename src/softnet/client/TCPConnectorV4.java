@@ -21,6 +21,8 @@ class TCPConnectorV4 implements TCPConnector
 	private InetAddress serverIp;
 	private TCPOptions tcpOptions;
 	private Scheduler scheduler;
+	private ThreadPool threadPool;
+	private Reactor reactor;
 	private TCPResponseHandler responseHandler;
 	private BiAcceptor<byte[], Object> authenticationHandler;
 	private Object attachment;
@@ -49,12 +51,14 @@ class TCPConnectorV4 implements TCPConnector
     }
 	private ConnectorState connectorState = ConnectorState.P2P_MODE;
 	
-	public TCPConnectorV4(byte[] connectionUid, InetAddress serverIp, TCPOptions tcpOptions, Scheduler scheduler)
+	public TCPConnectorV4(byte[] connectionUid, InetAddress serverIp, TCPOptions tcpOptions, Scheduler scheduler, ThreadPool threadPool, Reactor reactor)
 	{
 		this.connectionUid = connectionUid;
 		this.serverIp = serverIp;
 		this.tcpOptions = tcpOptions;
 		this.scheduler = scheduler;
+		this.threadPool = threadPool;
+		this.reactor = reactor;
 		acceptedChannels = new ArrayList<SocketChannel>(2);
 	}
 	
@@ -64,13 +68,12 @@ class TCPConnectorV4 implements TCPConnector
 		this.authenticationHandler = authenticationHandler;
 		this.attachment = attachment;
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	execute();
 		    }
-		};
-		thread.start();
+		});
 	}
 	
 	public void onAuthenticationHash(byte[] authHash, byte[] authKey2)
@@ -163,7 +166,7 @@ class TCPConnectorV4 implements TCPConnector
 						
 			localIEP = (InetSocketAddress)controlChannel.getLocalAddress();
 			
-			msgSocket = new MsgSocket(controlChannel);
+			msgSocket = new MsgSocket(controlChannel, reactor);
 			msgSocket.messageReceivedHandler	= new Acceptor<byte[]>()
 			{
 				public void accept(byte[] message) { onMessageReceived(message); }
@@ -178,6 +181,7 @@ class TCPConnectorV4 implements TCPConnector
 			};					
 			msgSocket.minLength = 1;
 			msgSocket.maxLength = 256;
+			msgSocket.dispatcher = threadPool;
 			msgSocket.start();			
 
 			try
@@ -268,13 +272,12 @@ class TCPConnectorV4 implements TCPConnector
 					listenerChannel.bind(localIEP);
 				
 					final ServerSocketChannel f_listenerChannel = listenerChannel;
-					Thread thread = new Thread()
+					Threads.start(new Runnable()
 					{
 					    public void run(){
 					    	executeListener(f_listenerChannel);
 					    }
-					};
-					thread.start();
+					});
 				}
 				catch(IOException | UnsupportedOperationException ex) {}
 								
@@ -337,7 +340,7 @@ class TCPConnectorV4 implements TCPConnector
 			controlChannel.configureBlocking(true);
 			controlChannel.connect(new InetSocketAddress(serverIp, Constants.ServerPorts.TcpRzvPort));	
 			
-			msgSocket = new MsgSocket(controlChannel);
+			msgSocket = new MsgSocket(controlChannel, reactor);
 			msgSocket.messageReceivedHandler	= new Acceptor<byte[]>()
 			{
 				public void accept(byte[] message) { onMessageReceived(message); }
@@ -352,6 +355,7 @@ class TCPConnectorV4 implements TCPConnector
 			};					
 			msgSocket.minLength = 1;
 			msgSocket.maxLength = 256;
+			msgSocket.dispatcher = threadPool;
 			msgSocket.start();
 			
 			msgSocket.send(EncodeMessage_ClientProxy());
@@ -379,8 +383,7 @@ class TCPConnectorV4 implements TCPConnector
 					if(connectorState == ConnectorState.P2P_HANDSHAKE)
 					{
 						acceptedChannels.add(acceptedChannel);						
-						ClientAuthenticationThread thread = new ClientAuthenticationThread(acceptedChannel);
-						thread.start();						
+						Threads.start(new ClientAuthenticationThread(acceptedChannel));						
 					}
 					else if (connectorState == ConnectorState.P2P_MODE)
 					{
@@ -672,8 +675,7 @@ class TCPConnectorV4 implements TCPConnector
 			{				
 				for(SocketChannel acceptedChannel: acceptedChannels)
 				{
-					ClientAuthenticationThread thread = new ClientAuthenticationThread(acceptedChannel);
-					thread.start();
+					Threads.start(new ClientAuthenticationThread(acceptedChannel));
 				}
 			}
 			
@@ -685,13 +687,12 @@ class TCPConnectorV4 implements TCPConnector
 			scheduler.add(p2pConnectionAttemptTimeoutControlTask, Constants.TcpP2PConnectionAttemptTimeoutSeconds);
 		}
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	tryP2PConnection();		    	
 		    }
-		};
-		thread.start();
+		});
 	}
 
 	private void ProcessMessage_CreateP2PConnectionInDualMode(byte[] message) throws AsnException, UnknownHostException
@@ -724,8 +725,7 @@ class TCPConnectorV4 implements TCPConnector
 			{				
 				for(SocketChannel acceptedChannel: acceptedChannels)
 				{
-					ClientAuthenticationThread thread = new ClientAuthenticationThread(acceptedChannel);
-					thread.start();
+					Threads.start(new ClientAuthenticationThread(acceptedChannel));
 				}
 			}
 			
@@ -737,21 +737,19 @@ class TCPConnectorV4 implements TCPConnector
 			scheduler.add(p2pConnectionAttemptTimeoutControlTask, Constants.TcpP2PConnectionAttemptTimeoutSeconds);
 		}
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	tryLocalP2PConnection();
 		    }
-		};
-		thread.start();
+		});
 		
-		Thread thread2 = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	tryP2PConnection();		    	
 		    }
-		};
-		thread2.start();
+		});
 	}
 
 	private void ProcessMessage_CreateProxyConnection(byte[] message) throws AsnException
@@ -760,13 +758,12 @@ class TCPConnectorV4 implements TCPConnector
 		final int serverPort = sequence.Int32();
 		sequence.end();
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 				tryProxyConnection(serverPort);
 		    }
-		};
-		thread.start();		
+		});		
 	}
 
 	private void ProcessMessage_Error(byte[] message) throws AsnException
@@ -859,7 +856,7 @@ class TCPConnectorV4 implements TCPConnector
 		catch(IOException e) {}
 	}
 	
-	class ClientAuthenticationThread extends Thread
+	class ClientAuthenticationThread implements Runnable
 	{
 		private SocketChannel acceptedChannel;
 		
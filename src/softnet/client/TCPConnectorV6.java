@@ -21,6 +21,8 @@ public class TCPConnectorV6 implements TCPConnector
 	private InetAddress serverIp;
 	private TCPOptions tcpOptions;
 	private Scheduler scheduler;
+	private ThreadPool threadPool;
+	private Reactor reactor;
 	private TCPResponseHandler responseHandler;
 	private BiAcceptor<byte[], Object> authenticationHandler;
 	private Object attachment;
@@ -47,12 +49,14 @@ public class TCPConnectorV6 implements TCPConnector
     }
 	private ConnectorState connectorState = ConnectorState.P2P_MODE;
 	
-	public TCPConnectorV6( byte[] connectionUid, InetAddress serverIp, TCPOptions tcpOptions, Scheduler scheduler)
+	public TCPConnectorV6( byte[] connectionUid, InetAddress serverIp, TCPOptions tcpOptions, Scheduler scheduler, ThreadPool threadPool, Reactor reactor)
 	{
 		this.connectionUid = connectionUid;
 		this.serverIp = serverIp;
 		this.tcpOptions = tcpOptions;
 		this.scheduler = scheduler;
+		this.threadPool = threadPool;
+		this.reactor = reactor;
 		acceptedChannels = new ArrayList<SocketChannel>(2);
 	}
 	
@@ -62,13 +66,12 @@ public class TCPConnectorV6 implements TCPConnector
 		this.authenticationHandler = authenticationHandler;
 		this.attachment = attachment;
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	execute();
 		    }
-		};
-		thread.start();
+		});
 	}
 	
 	public void onAuthenticationHash(byte[] authHash, byte[] authKey2)
@@ -158,7 +161,7 @@ public class TCPConnectorV6 implements TCPConnector
 						
 			localIEP = (InetSocketAddress)controlChannel.getLocalAddress();
 			
-			msgSocket = new MsgSocket(controlChannel);
+			msgSocket = new MsgSocket(controlChannel, reactor);
 			msgSocket.messageReceivedHandler	= new Acceptor<byte[]>()
 			{
 				public void accept(byte[] message) { onMessageReceived(message); }
@@ -173,6 +176,7 @@ public class TCPConnectorV6 implements TCPConnector
 			};					
 			msgSocket.minLength = 1;
 			msgSocket.maxLength = 256;
+			msgSocket.dispatcher = threadPool;
 			msgSocket.start();			
 
 			try
@@ -231,13 +235,12 @@ public class TCPConnectorV6 implements TCPConnector
 					listenerChannel.bind(localIEP);
 				
 					final ServerSocketChannel f_listenerChannel = listenerChannel;
-					Thread thread = new Thread()
+					Threads.start(new Runnable()
 					{
 					    public void run(){
 					    	executeListener(f_listenerChannel);
 					    }
-					};
-					thread.start();
+					});
 				}
 				catch(IOException | UnsupportedOperationException ex) {}
 								
@@ -300,7 +303,7 @@ public class TCPConnectorV6 implements TCPConnector
 			controlChannel.configureBlocking(true);
 			controlChannel.connect(new InetSocketAddress(serverIp, Constants.ServerPorts.TcpRzvPort));	
 			
-			msgSocket = new MsgSocket(controlChannel);
+			msgSocket = new MsgSocket(controlChannel, reactor);
 			msgSocket.messageReceivedHandler	= new Acceptor<byte[]>()
 			{
 				public void accept(byte[] message) { onMessageReceived(message); }
@@ -315,6 +318,7 @@ public class TCPConnectorV6 implements TCPConnector
 			};					
 			msgSocket.minLength = 1;
 			msgSocket.maxLength = 256;
+			msgSocket.dispatcher = threadPool;
 			msgSocket.start();
 			
 			msgSocket.send(EncodeMessage_ClientProxy());
@@ -342,8 +346,7 @@ public class TCPConnectorV6 implements TCPConnector
 					if(connectorState == ConnectorState.P2P_HANDSHAKE)
 					{
 						acceptedChannels.add(acceptedChannel);						
-						ClientAuthenticationThread thread = new ClientAuthenticationThread(acceptedChannel);
-						thread.start();						
+						Threads.start(new ClientAuthenticationThread(acceptedChannel));						
 					}
 					else if (connectorState == ConnectorState.P2P_MODE)
 					{
@@ -581,8 +584,7 @@ public class TCPConnectorV6 implements TCPConnector
 			{				
 				for(SocketChannel acceptedChannel: acceptedChannels)
 				{
-					ClientAuthenticationThread thread = new ClientAuthenticationThread(acceptedChannel);
-					thread.start();
+					Threads.start(new ClientAuthenticationThread(acceptedChannel));
 				}
 			}
 			
@@ -594,13 +596,12 @@ public class TCPConnectorV6 implements TCPConnector
 			scheduler.add(p2pConnectionAttemptTimeoutControlTask, Constants.TcpP2PConnectionAttemptTimeoutSeconds);
 		}
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	tryP2PConnection();		    	
 		    }
-		};
-		thread.start();
+		});
 	}
 	
 	private void ProcessMessage_CreateProxyConnection(byte[] message) throws AsnException
@@ -609,13 +610,12 @@ public class TCPConnectorV6 implements TCPConnector
 		final int serverPort = sequence.Int32();
 		sequence.end();
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 				tryProxyConnection(serverPort);
 		    }
-		};
-		thread.start();
+		});
 	}
 	
 	private void ProcessMessage_Error(byte[] message) throws AsnException
@@ -699,7 +699,7 @@ public class TCPConnectorV6 implements TCPConnector
 		catch(IOException e) {}
 	}
 	
-	class ClientAuthenticationThread extends Thread
+	class ClientAuthenticationThread implements Runnable
 	{
 		private SocketChannel acceptedChannel;
 		
@@ -18,6 +18,7 @@ class TCPController
 	private ClientEndpoint clientEndpoint;
 	private ThreadPool threadPool;
 	private Scheduler scheduler;
+	private Reactor reactor;
 	private Object mutex;
 	private Channel channel;
 	private LinkedList<TcpRequest> requestList;
@@ -33,6 +34,7 @@ class TCPController
 		this.clientEndpoint = clientEndpoint;
 		this.threadPool = clientEndpoint.threadPool;
 		this.scheduler = clientEndpoint.scheduler;
+		this.reactor = clientEndpoint.reactor;
 		requestList = new LinkedList<TcpRequest>();
 		mutex = new Object();
 	}
@@ -225,11 +227,11 @@ class TCPController
 			request.serverId = serverId;
 			if(serverIp instanceof Inet6Address)
 			{
-				request.tcpConnector = new TCPConnectorV6(connectionUid, serverIp, request.tcpOptions, scheduler);
+				request.tcpConnector = new TCPConnectorV6(connectionUid, serverIp, request.tcpOptions, scheduler, threadPool, reactor);
 			}
 			else
 			{
-				request.tcpConnector = new TCPConnectorV4(connectionUid, serverIp, request.tcpOptions, scheduler);
+				request.tcpConnector = new TCPConnectorV4(connectionUid, serverIp, request.tcpOptions, scheduler, threadPool, reactor);
 			}
 		}
 		
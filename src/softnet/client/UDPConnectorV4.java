@@ -15,6 +15,8 @@ class UDPConnectorV4 implements UDPConnector, STaskContext
 	private byte[] connectionUid;
 	private InetAddress serverIP;
 	private Scheduler scheduler;
+	private ThreadPool threadPool;
+	private Reactor reactor;
 	private UDPResponseHandler responseHandler;
 	private BiAcceptor<byte[], Object> authenticationHandler;
 	private Object attachment;
@@ -44,11 +46,13 @@ class UDPConnectorV4 implements UDPConnector, STaskContext
     }
 	private ConnectorState connectorState = ConnectorState.INITIAL;
 	
-	public UDPConnectorV4(byte[] connectionUid, InetAddress serverIP, Scheduler scheduler)
+	public UDPConnectorV4(byte[] connectionUid, InetAddress serverIP, Scheduler scheduler, ThreadPool threadPool, Reactor reactor)
 	{
 		this.connectionUid = connectionUid;
 		this.serverIP = serverIP;
 		this.scheduler = scheduler;
+		this.threadPool = threadPool;
+		this.reactor = reactor;
 	}
 	
 	public void connect(UDPResponseHandler responseHandler, BiAcceptor<byte[], Object> authenticationHandler, Object attachment)
@@ -57,13 +61,12 @@ class UDPConnectorV4 implements UDPConnector, STaskContext
 		this.authenticationHandler = authenticationHandler;
 		this.attachment = attachment;
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	execute();
 		    }
-		};
-		thread.start();
+		});
 	}
 	
 	public void onAuthenticationHash(byte[] authHash, byte[] authKey2)
@@ -127,7 +130,7 @@ class UDPConnectorV4 implements UDPConnector, STaskContext
 				if(is_disposed == false)
 				{
 					controlChannel = SocketChannel.open();
-					msgSocket = new MsgSocket(controlChannel);
+					msgSocket = new MsgSocket(controlChannel, reactor);
 				}
 				else return;
 			}
@@ -151,6 +154,7 @@ class UDPConnectorV4 implements UDPConnector, STaskContext
 			};					
 			msgSocket.minLength = 1;
 			msgSocket.maxLength = 256;
+			msgSocket.dispatcher = threadPool;
 			msgSocket.start();
 			
 			msgSocket.send(EncodeMessage_Client());
@@ -178,13 +182,12 @@ class UDPConnectorV4 implements UDPConnector, STaskContext
 			thisEndpointUid = endpointUid;			
 		}
         
-        Thread thread = new Thread()
+        Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	udpExecute();
 		    }
-		};
-		thread.start();
+		});
         
         authenticationHandler.accept(authKey, attachment);
 	}
@@ -580,13 +583,12 @@ class UDPConnectorV4 implements UDPConnector, STaskContext
 		dispose();
 
 		final DatagramSocket f_dgmSocket = dgmSocket;
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 				responseHandler.onSuccess(new ResponseContext(null, null, attachment), f_dgmSocket, remotePublicIEP, ConnectionMode.P2P);
 		    }
-		};
-		thread.start();		
+		});		
 	}
 
 	private void ProcessMessage_P2PLocalHolePunched()
@@ -610,13 +612,12 @@ class UDPConnectorV4 implements UDPConnector, STaskContext
 		dispose();
 		
 		final DatagramSocket f_dgmSocket = dgmSocket;
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 				responseHandler.onSuccess(new ResponseContext(null, null, attachment), f_dgmSocket, remotePrivateIEP, ConnectionMode.P2P);
 		    }
-		};
-		thread.start();		
+		});		
 	}
 
 	private SoftnetMessage EncodeMessage_Client()
@@ -15,6 +15,8 @@ class UDPConnectorV6 implements UDPConnector, STaskContext
 	private byte[] connectionUid;
 	private InetAddress serverIP;
 	private Scheduler scheduler;
+	private ThreadPool threadPool;
+	private Reactor reactor;
 	private UDPResponseHandler responseHandler;
 	private BiAcceptor<byte[], Object> authenticationHandler;
 	private Object attachment;
@@ -40,11 +42,13 @@ class UDPConnectorV6 implements UDPConnector, STaskContext
     }
 	private ConnectorState connectorState = ConnectorState.INITIAL;
 	
-	public UDPConnectorV6(byte[] connectionUid, InetAddress serverIP, Scheduler scheduler)
+	public UDPConnectorV6(byte[] connectionUid, InetAddress serverIP, Scheduler scheduler, ThreadPool threadPool, Reactor reactor)
 	{
 		this.connectionUid = connectionUid;
 		this.serverIP = serverIP;
 		this.scheduler = scheduler;
+		this.threadPool = threadPool;
+		this.reactor = reactor;
 	}
 		
 	public void connect(UDPResponseHandler responseHandler, BiAcceptor<byte[], Object> authenticationHandler, Object attachment)
@@ -53,13 +57,12 @@ class UDPConnectorV6 implements UDPConnector, STaskContext
 		this.authenticationHandler = authenticationHandler;
 		this.attachment = attachment;
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	execute();
 		    }
-		};
-		thread.start();
+		});
 	}
 	
 	public void onAuthenticationHash(byte[] authHash, byte[] authKey2)
@@ -123,7 +126,7 @@ class UDPConnectorV6 implements UDPConnector, STaskContext
 				if(is_disposed == false)
 				{
 					controlChannel = SocketChannel.open();
-					msgSocket = new MsgSocket(controlChannel);
+					msgSocket = new MsgSocket(controlChannel, reactor);
 				}
 				else return;
 			}
@@ -147,6 +150,7 @@ class UDPConnectorV6 implements UDPConnector, STaskContext
 			};					
 			msgSocket.minLength = 1;
 			msgSocket.maxLength = 256;
+			msgSocket.dispatcher = threadPool;
 			msgSocket.start();
 			
 			msgSocket.send(EncodeMessage_Client());
@@ -174,13 +178,12 @@ class UDPConnectorV6 implements UDPConnector, STaskContext
 			thisEndpointUid = endpointUid;			
 		}
         
-        Thread thread = new Thread()
+        Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	udpExecute();
 		    }
-		};
-		thread.start();
+		});
         
         authenticationHandler.accept(authKey, attachment);
 	}
@@ -459,13 +462,12 @@ class UDPConnectorV6 implements UDPConnector, STaskContext
 		dispose();
 
 		final DatagramSocket f_dgmSocket = dgmSocket;
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 				responseHandler.onSuccess(new ResponseContext(null, null, attachment), f_dgmSocket, remoteIEP, ConnectionMode.P2P);
 		    }
-		};
-		thread.start();		
+		});		
 	}
 	
 	private SoftnetMessage EncodeMessage_Client()
@@ -16,6 +16,7 @@ class UDPController
 	private ClientEndpoint clientEndpoint;
 	private ThreadPool threadPool;
 	private Scheduler scheduler;
+	private Reactor reactor;
 	private Object mutex;
 	private Channel channel;
 	private LinkedList<UdpRequest> requestList;
@@ -31,6 +32,7 @@ class UDPController
 		this.clientEndpoint = clientEndpoint;
 		this.threadPool = clientEndpoint.threadPool;
 		this.scheduler = clientEndpoint.scheduler;
+		this.reactor = clientEndpoint.reactor;
 		requestList = new LinkedList<UdpRequest>();
 		mutex = new Object();
 	}
@@ -221,11 +223,11 @@ class UDPController
 			request.serverId = serverId;
 			if(serverIp instanceof Inet6Address)
 			{
-				request.udpConnector = new UDPConnectorV6(connectionUid, serverIp, scheduler);
+				request.udpConnector = new UDPConnectorV6(connectionUid, serverIp, scheduler, threadPool, reactor);
 			}
 			else
 			{
-				request.udpConnector = new UDPConnectorV4(connectionUid, serverIp, scheduler);
+				request.udpConnector = new UDPConnectorV4(connectionUid, serverIp, scheduler, threadPool, reactor);
 			}
 		}
 		
@@ -0,0 +1,81 @@
+package softnet.core;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BufferPool
+{
+	private static BufferPool defaultPool = null;
+
+	public static synchronized BufferPool getDefault()
+	{
+		if(defaultPool == null)
+			defaultPool = new BufferPool(16384, 256, false);
+		return defaultPool;
+	}
+
+	private final int bufferSize;
+	private final int maxPooledBuffers;
+	private final boolean direct;
+	private final ConcurrentLinkedQueue<ByteBuffer> buffers;
+	private final AtomicInteger pooledBuffers;
+
+	public BufferPool(int bufferSize, int maxPooledBuffers, boolean direct)
+	{
+		if(bufferSize < 1024)
+			throw new IllegalArgumentException("The value of 'bufferSize' must not be less than 1024.");
+		if(maxPooledBuffers < 0)
+			throw new IllegalArgumentException("The value of 'maxPooledBuffers' must not be negative.");
+
+		this.bufferSize = bufferSize;
+		this.maxPooledBuffers = maxPooledBuffers;
+		this.direct = direct;
+		buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+		pooledBuffers = new AtomicInteger(0);
+	}
+
+	public int getBufferSize()
+	{
+		return bufferSize;
+	}
+
+	public boolean isDirect()
+	{
+		return direct;
+	}
+
+	PooledBuffer acquire()
+	{
+		ByteBuffer buffer = buffers.poll();
+		if(buffer != null)
+		{
+			pooledBuffers.decrementAndGet();
+			buffer.clear();
+			return new PooledBuffer(buffer, this);
+		}
+		return new PooledBuffer(allocate(bufferSize), this);
+	}
+
+	PooledBuffer acquire(int capacity)
+	{
+		if(capacity <= bufferSize)
+			return acquire();
+		return new PooledBuffer(allocate(capacity), null);
+	}
+
+	void recycle(ByteBuffer buffer)
+	{
+		if(pooledBuffers.incrementAndGet() <= maxPooledBuffers)
+			buffers.add(buffer);
+		else
+			pooledBuffers.decrementAndGet();
+	}
+
+	private ByteBuffer allocate(int capacity)
+	{
+		if(direct)
+			return ByteBuffer.allocateDirect(capacity);
+		return ByteBuffer.allocate(capacity);
+	}
+}
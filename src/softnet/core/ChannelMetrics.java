@@ -0,0 +1,213 @@
+package softnet.core;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class ChannelMetrics implements ChannelMetricsMBean
+{
+	public static final int ModuleCount = 16;
+	
+	private static final int MessagesReceived = 0;
+	private static final int BytesReceived = ModuleCount;
+	private static final int MessagesSent = ModuleCount * 2;
+	private static final int BytesSent = ModuleCount * 3;
+	
+	private final StripedCounters counters = new StripedCounters(ModuleCount * 4);
+	private final AtomicLong channelsEstablished = new AtomicLong(0);
+	private final AtomicLong peakSendQueueBytes = new AtomicLong(0);
+	private volatile MsgSocket msgSocket = null;
+	private volatile long pingRoundTripMillis = -1;
+	private volatile RoundTripEstimator eventRoundTripEstimator = null;
+	private ObjectName objectName = null;
+
+	public void onMessageReceived(int componentId, int length)
+	{
+		if(componentId < 0 || componentId >= ModuleCount)
+			return;
+		counters.increment(MessagesReceived + componentId);
+		counters.add(BytesReceived + componentId, length);
+	}
+
+	public void onMessageSent(SoftnetMessage message)
+	{
+		int header = message.buffer[message.offset];
+		int componentIndex = header > 0 ? message.offset + 1 : message.offset + 1 + (header & 0x7F);
+		if(componentIndex >= message.offset + message.length)
+			return;
+		
+		int componentId = message.buffer[componentIndex];
+		if(componentId < 0 || componentId >= ModuleCount)
+			return;
+		counters.increment(MessagesSent + componentId);
+		counters.add(BytesSent + componentId, message.length);
+	}
+
+	public void onChannelEstablished()
+	{
+		channelsEstablished.incrementAndGet();
+	}
+
+	public void onPingRoundTrip(long millis)
+	{
+		pingRoundTripMillis = millis;
+	}
+
+	public void attach(RoundTripEstimator eventRoundTripEstimator)
+	{
+		this.eventRoundTripEstimator = eventRoundTripEstimator;
+	}
+
+	public void attach(MsgSocket msgSocket)
+	{
+		this.msgSocket = msgSocket;
+	}
+
+	public void detach(MsgSocket msgSocket)
+	{
+		if(this.msgSocket != msgSocket)
+			return;
+		updatePeakSendQueueBytes(msgSocket.getPeakQueuedBytes());
+		this.msgSocket = null;
+	}
+
+	public synchronized void register(String endpointType, String uri)
+	{
+		if(objectName != null)
+			return;
+		try
+		{
+			ObjectName name = new ObjectName("softnet:type=" + endpointType + ",uri=" + ObjectName.quote(uri));
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if(server.isRegistered(name))
+				return;
+			server.registerMBean(this, name);
+			objectName = name;
+		}
+		catch(JMException | SecurityException ex) {}
+	}
+
+	public synchronized void unregister()
+	{
+		if(objectName == null)
+			return;
+		try
+		{
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		}
+		catch(JMException | SecurityException ex) {}
+		objectName = null;
+	}
+
+	public long[] getMessagesReceivedByModule()
+	{
+		return sumByModule(MessagesReceived);
+	}
+
+	public long[] getBytesReceivedByModule()
+	{
+		return sumByModule(BytesReceived);
+	}
+
+	public long[] getMessagesSentByModule()
+	{
+		return sumByModule(MessagesSent);
+	}
+
+	public long[] getBytesSentByModule()
+	{
+		return sumByModule(BytesSent);
+	}
+
+	public long getMessagesReceived()
+	{
+		return sum(MessagesReceived);
+	}
+
+	public long getBytesReceived()
+	{
+		return sum(BytesReceived);
+	}
+
+	public long getMessagesSent()
+	{
+		return sum(MessagesSent);
+	}
+
+	public long getBytesSent()
+	{
+		return sum(BytesSent);
+	}
+
+	public long getSendQueueBytes()
+	{
+		MsgSocket msgSocket = this.msgSocket;
+		if(msgSocket == null)
+			return 0;
+		return msgSocket.getQueuedBytes();
+	}
+
+	public long getPeakSendQueueBytes()
+	{
+		MsgSocket msgSocket = this.msgSocket;
+		if(msgSocket != null)
+			updatePeakSendQueueBytes(msgSocket.getPeakQueuedBytes());
+		return peakSendQueueBytes.get();
+	}
+
+	public long getReconnects()
+	{
+		long established = channelsEstablished.get();
+		return established > 0 ? established - 1 : 0;
+	}
+
+	public long getPingRoundTripMillis()
+	{
+		return pingRoundTripMillis;
+	}
+
+	public long getEventRoundTripMillis()
+	{
+		RoundTripEstimator estimator = eventRoundTripEstimator;
+		if(estimator == null)
+			return -1;
+		return estimator.getRoundTripMillis();
+	}
+
+	public long getEventDeliveryTimeoutMillis()
+	{
+		RoundTripEstimator estimator = eventRoundTripEstimator;
+		if(estimator == null)
+			return -1;
+		return estimator.getTimeoutMillis();
+	}
+
+	private void updatePeakSendQueueBytes(long value)
+	{
+		long peak;
+		while(value > (peak = peakSendQueueBytes.get()))
+		{
+			if(peakSendQueueBytes.compareAndSet(peak, value))
+				return;
+		}
+	}
+
+	private long[] sumByModule(int base)
+	{
+		long[] values = new long[ModuleCount];
+		for(int i = 0; i < ModuleCount; i++)
+			values[i] = counters.sum(base + i);
+		return values;
+	}
+
+	private long sum(int base)
+	{
+		long sum = 0;
+		for(int i = 0; i < ModuleCount; i++)
+			sum += counters.sum(base + i);
+		return sum;
+	}
+}
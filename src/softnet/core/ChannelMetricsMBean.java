@@ -0,0 +1,19 @@
+package softnet.core;
+
+public interface ChannelMetricsMBean
+{
+	long[] getMessagesReceivedByModule();
+	long[] getBytesReceivedByModule();
+	long[] getMessagesSentByModule();
+	long[] getBytesSentByModule();
+	long getMessagesReceived();
+	long getBytesReceived();
+	long getMessagesSent();
+	long getBytesSent();
+	long getSendQueueBytes();
+	long getPeakSendQueueBytes();
+	long getReconnects();
+	long getPingRoundTripMillis();
+	long getEventRoundTripMillis();
+	long getEventDeliveryTimeoutMillis();
+}
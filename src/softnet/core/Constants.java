@@ -12,6 +12,10 @@ public class Constants
     
     public static final int RpcWaitSeconds = 30;
     public static final int EventDeliverySeconds = 30;
+    public static final int EventDeliveryMinMillis = 1000;
+    public static final int EventDeliveryMaxMillis = 60000;
+    public static final int EventBatchMaxCount = 512;
+    public static final int EventBatchMaxBytes = 65536;
     
 	public static class ServerPorts
 	{
@@ -208,10 +212,12 @@ public class Constants
         	public static final byte PRIVATE_EVENT = 4;        	
         	public static final byte REPLACING_NULL_EVENT = 5;        	
         	public static final byte NEW_STORAGE_UID = 9;        	
+        	public static final byte EVENT_BATCH = 10;
         	// Input
         	public static final byte EVENT_ACK = 1;        	
         	public static final byte ILLEGAL_EVENT_NAME = 2;
         	public static final byte LAST_STORAGE_UID = 9;        	
+        	public static final byte EVENT_BATCH_ACK = 10;
         }
     }
     
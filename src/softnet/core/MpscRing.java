@@ -0,0 +1,67 @@
+package softnet.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class MpscRing<T>
+{
+	private final AtomicReferenceArray<T> slots;
+	private final int capacity;
+	private final int mask;
+	private final AtomicLong tail = new AtomicLong(0);
+	private volatile long head = 0;
+
+	public MpscRing(int capacity)
+	{
+		if(capacity < 2 || capacity > (1 << 24))
+			throw new IllegalArgumentException("The value of 'capacity' must be in the range [2, 16777216].");
+
+		this.capacity = Integer.highestOneBit(capacity - 1) << 1;
+		this.mask = this.capacity - 1;
+		slots = new AtomicReferenceArray<T>(this.capacity);
+	}
+
+	public int capacity()
+	{
+		return capacity;
+	}
+
+	public boolean offer(T item)
+	{
+		if(item == null)
+			throw new NullPointerException();
+
+		while(true)
+		{
+			long sequence = tail.get();
+			if(sequence - head >= capacity)
+				return false;
+			if(tail.compareAndSet(sequence, sequence + 1))
+			{
+				slots.set((int)(sequence & mask), item);
+				return true;
+			}
+		}
+	}
+
+	public T peek()
+	{
+		return slots.get((int)(head & mask));
+	}
+
+	public T poll()
+	{
+		int index = (int)(head & mask);
+		T item = slots.get(index);
+		if(item == null)
+			return null;
+		slots.lazySet(index, null);
+		head = head + 1;
+		return item;
+	}
+
+	public boolean isEmpty()
+	{
+		return tail.get() == head;
+	}
+}
@@ -0,0 +1,45 @@
+package softnet.core;
+
+import java.nio.ByteBuffer;
+
+public class MsgBuffer
+{
+	public final ByteBuffer data;
+	private final PooledBuffer lease;
+
+	MsgBuffer(ByteBuffer data, PooledBuffer lease)
+	{
+		this.data = data;
+		this.lease = lease;
+	}
+
+	public int length()
+	{
+		return data.limit();
+	}
+
+	public byte get(int index)
+	{
+		return data.get(index);
+	}
+
+	public byte[] toArray()
+	{
+		byte[] message = new byte[data.limit()];
+		ByteBuffer source = data.duplicate();
+		source.clear();
+		source.get(message);
+		return message;
+	}
+
+	public MsgBuffer retain()
+	{
+		lease.retain();
+		return this;
+	}
+
+	public void release()
+	{
+		lease.release();
+	}
+}
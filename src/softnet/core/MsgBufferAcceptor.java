@@ -0,0 +1,8 @@
+package softnet.core;
+
+import softnet.exceptions.FormatException;
+
+public interface MsgBufferAcceptor<C>
+{	
+	void accept(MsgBuffer message, C channel) throws softnet.asn.AsnException, FormatException, softnet.exceptions.SoftnetException;
+}
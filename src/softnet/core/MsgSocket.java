@@ -6,23 +6,37 @@ import java.nio.ByteBuffer;
 import java.io.IOException;
 import java.util.Queue;
 import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicLong;
 
+import softnet.SendQueuePolicy;
 import softnet.exceptions.*;
 
 public class MsgSocket 
 {
 	public Acceptor<byte[]> messageReceivedHandler;
+	public Acceptor<MsgBuffer> bufferReceivedHandler;
 	public Acceptor<NetworkErrorSoftnetException> networkErrorHandler;
 	public Runnable formatErrorHandler;
+	public Acceptor<Boolean> writabilityChangedHandler;
 	
 	public int minLength = 2;
     public int maxLength = 127;
+    public int maxBatchSize = 65536;
+    public BufferPool receiveBufferPool = null;
+    public ThreadPool dispatcher = null;
     
     private Object mutex = new Object(); 
     
 	public MsgSocket(SocketChannel socketChannel)
 	{
 		this.socketChannel = socketChannel;
+		this.reactor = null;
+	}
+
+	public MsgSocket(SocketChannel socketChannel, Reactor reactor)
+	{
+		this.socketChannel = socketChannel;
+		this.reactor = reactor;
 	}
 			
 	private boolean isClosed = false;
@@ -33,6 +47,7 @@ public class MsgSocket
 			synchronized(mutex)
 			{
 				isClosed = true;
+				mutex.notifyAll();
 				if(isSending == false)
 					socketChannel.close();
 			}
@@ -42,16 +57,39 @@ public class MsgSocket
 	
 	public void start()
 	{
-		m_buffer = ByteBuffer.allocate(1024);
+		if(receiveBufferPool != null)
+			rxLease = receiveBufferPool.acquire();
+		else
+			m_buffer = ByteBuffer.allocate(1024);
 		outputMessageQueue = new LinkedList<ByteBuffer>();
+		discardableMessages = new LinkedList<ByteBuffer>();
+		outputBatch = new ByteBuffer[16];
+		inboundTasks = new LinkedList<Runnable>();
+		
+		if(reactor != null)
+		{
+			try
+			{
+				registration = reactor.register(socketChannel, new Reactor.Handler()
+				{
+					public void onReadable() { onInputReady(); }
+					public void onWritable() { onOutputReady(); }
+					public void onFailed(IOException ex) { onRegistrationFailed(ex); }
+				});
+			}
+			catch(IOException ex)
+			{
+				onRegistrationFailed(ex);
+			}
+			return;
+		}
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	inputCircle();
 		    }
-		};
-		thread.start();
+		});
 	}
 	
 	public SocketChannel getChannel()
@@ -60,12 +98,24 @@ public class MsgSocket
 	}
 	
 	private SocketChannel socketChannel;
+	private Reactor reactor;
+	private Reactor.Registration registration = null;
 
 	private ByteBuffer m_buffer;
+	private PooledBuffer rxLease = null;
+	private int rxStart = 0;
 	private byte[] m_message;
 	private int messageLength;
 	private int messageBytesReceived;
 	private boolean isReadingAtMessageOrigin = true;
+	
+	private static final int MaxInboundTasks = 1024;
+	private Object inboundMutex = new Object();
+	private LinkedList<Runnable> inboundTasks;
+	private boolean isDispatching = false;
+	private volatile boolean isReadPaused = false;
+	private boolean isInputSuspended = false;
+	private boolean hasBufferedInput = false;
 		
 	private void inputCircle()
 	{
@@ -73,7 +123,7 @@ public class MsgSocket
 		{
 			while (isClosed == false)
 			{
-				int bytesRead = socketChannel.read(m_buffer);
+				int bytesRead = receive();
 				if (bytesRead == -1)
 		        {
 					if(isClosed == false)
@@ -81,120 +131,522 @@ public class MsgSocket
 						networkErrorHandler.accept(new NetworkErrorSoftnetException("The softnet server closed the connection."));
 						closeSocketChannel();
 					}
+					releaseReceiveBuffer();
 		            return;
 		        }
 				
-				m_buffer.flip();
-				
-				while (isClosed == false)
-	            {
-	                if (isReadingAtMessageOrigin)
-	                {
-	                    int firstByte = m_buffer.get(m_buffer.position());
-	                    
-	                    if (firstByte > 0)
-	                    {
-	                    	m_buffer.get();
-	                    	messageLength = firstByte;
-	                    }
-	                    else if(firstByte < 0)
-	                    {
-	                    	int lengthBytes = firstByte & 0x0000007F;
-	                    	if(lengthBytes < m_buffer.remaining())
-	                    	{    
-	                    		m_buffer.get();
-	                    		messageLength = decodeLength(lengthBytes);
-	                    	}
-	                    	else
-	                    	{
-	                    		m_buffer.compact();
-	                    		break;
-	                    	}
-	                    }
-	                    else
-	                    {
-	                    	throw new FormatException();
-	                    }
-	                    
-	                    if (messageLength < minLength || messageLength > maxLength)
-	                        throw new FormatException();
-	                    
-	                    m_message = new byte[messageLength];
-	                    
-	                    if(messageLength == m_buffer.remaining())
-	            		{
-	            			m_buffer.get(m_message);
-	            			m_buffer.clear();
-	            			
-	            			messageReceivedHandler.accept(m_message);
-	            			m_message = null;
-	            			break;
-	            		}
-	            		else if(messageLength < m_buffer.remaining())
-	            		{
-	            			m_buffer.get(m_message);
-	            			
-	            			messageReceivedHandler.accept(m_message);
-	            			m_message = null;
-	            		}
-	            		else
-	            		{
-	            			messageBytesReceived = m_buffer.remaining();
-	            			m_buffer.get(m_message, 0, messageBytesReceived);                    			
-	            			m_buffer.clear();
-	            			
-	            			isReadingAtMessageOrigin = false;
-	            			break;
-	            		}
-	                }
-	                else
-	                {
-	                	int messageBytesRequired = messageLength - messageBytesReceived;
-	                	if(messageBytesRequired == m_buffer.remaining())
-	                	{
-	                		m_buffer.get(m_message, messageBytesReceived, messageBytesRequired);                    			
-	                		m_buffer.clear();
-	            			
-	                		messageReceivedHandler.accept(m_message);
-	            			m_message = null;
-	
-	            			isReadingAtMessageOrigin = true;
-	            			break;
-	                	}
-	                	else if(messageBytesRequired > m_buffer.remaining())
-	                	{
-	                		int bytesReceived = m_buffer.remaining();                		
-	            			m_buffer.get(m_message, messageBytesReceived, bytesReceived);            
-	            			m_buffer.clear();
-	            			
-	                		messageBytesReceived = messageBytesReceived + bytesReceived;
-	                		break;
-	                	}
-	                	else // messageBytesRequired < m_buffer.remaining()
-	                	{
-	                		m_buffer.get(m_message, messageBytesReceived, messageBytesRequired); 
-	                		
-	                		messageReceivedHandler.accept(m_message);
-	            			m_message = null;
-	            			
-	            			isReadingAtMessageOrigin = true;
-	                	}
-	                }
-	            }
+				processInput();
 			}
+			releaseReceiveBuffer();
 		}
 		catch(FormatException ex)
 		{			
 			formatErrorHandler.run();
 			closeSocketChannel();
+			releaseReceiveBuffer();
 		}
 		catch(IOException ex)
 		{
 			networkErrorHandler.accept(new NetworkErrorSoftnetException(ex.getMessage()));
 			closeSocketChannel();
+			releaseReceiveBuffer();
+		}
+	}
+		
+	private void onInputReady()
+	{
+		try
+		{
+			for (int i = 0; i < 16 && isClosed == false && isReadPaused == false && isInputSuspended == false; i++)
+			{
+				int bytesRead = receive();
+				if (bytesRead == 0)
+					return;
+				
+				if (bytesRead == -1)
+		        {
+					if(isClosed == false)
+					{
+						deliverNetworkError(new NetworkErrorSoftnetException("The softnet server closed the connection."));
+						closeSocketChannel();
+					}
+					releaseReceiveBuffer();
+		            return;
+		        }
+				
+				processInput();
+			}
+		}
+		catch(FormatException ex)
+		{			
+			deliverFormatError();
+			closeSocketChannel();
+			releaseReceiveBuffer();
+		}
+		catch(IOException ex)
+		{
+			deliverNetworkError(new NetworkErrorSoftnetException(ex.getMessage()));
+			closeSocketChannel();
+			releaseReceiveBuffer();
+		}
+	}
+	
+	private int receive() throws IOException
+	{
+		if(rxLease == null)
+			return socketChannel.read(m_buffer);
+		
+		ByteBuffer buffer = rxLease.buffer;
+		if(buffer.hasRemaining() == false && rxStart == buffer.position())
+		{
+			if(rxLease.isShared() || buffer.capacity() > receiveBufferPool.getBufferSize())
+			{
+				rxLease.release();
+				rxLease = receiveBufferPool.acquire();
+			}
+			else
+			{
+				buffer.clear();
+			}
+			rxStart = 0;
+		}
+		return socketChannel.read(rxLease.buffer);
+	}
+	
+	private void processInput() throws FormatException
+	{
+		if(rxLease != null)
+		{
+			decodeFrames();
+		}
+		else
+		{
+			m_buffer.flip();
+			decodeInput();
+		}
+	}
+	
+	private void decodeFrames() throws FormatException
+	{
+		ByteBuffer buffer = rxLease.buffer;
+		while (isClosed == false && isInputSuspended == false)
+		{
+			int available = buffer.position() - rxStart;
+			if (available == 0)
+				break;
+			
+			int firstByte = buffer.get(rxStart);
+			int headerLength;
+			int frameLength;
+			if (firstByte > 0)
+			{
+				headerLength = 1;
+				frameLength = firstByte;
+			}
+			else if (firstByte < 0)
+			{
+				int lengthBytes = firstByte & 0x0000007F;
+				if (lengthBytes == 0 || lengthBytes > 4)
+					throw new FormatException();
+				
+				if (lengthBytes >= available)
+				{
+					reserveReceiveSpace(5);
+					break;
+				}
+				headerLength = 1 + lengthBytes;
+				frameLength = decodeLength(buffer, rxStart + 1, lengthBytes);
+			}
+			else
+			{
+				throw new FormatException();
+			}
+			
+			if (frameLength < minLength || frameLength > maxLength)
+				throw new FormatException();
+			
+			if (headerLength + frameLength > available)
+			{
+				reserveReceiveSpace(headerLength + frameLength);
+				break;
+			}
+			
+			int frameOrigin = rxStart + headerLength;
+			rxStart = frameOrigin + frameLength;
+			
+			ByteBuffer frame = buffer.duplicate();
+			frame.limit(frameOrigin + frameLength);
+			frame.position(frameOrigin);
+			
+			rxLease.retain();
+			MsgBuffer message = new MsgBuffer(frame.slice().asReadOnlyBuffer(), rxLease);
+			if (bufferReceivedHandler != null)
+			{
+				deliverBuffer(message);
+			}
+			else
+			{
+				byte[] array = message.toArray();
+				message.release();
+				deliverMessage(array);
+			}
+		}
+		
+		if (rxStart == buffer.position() && rxLease.isShared() == false)
+		{
+			buffer.clear();
+			rxStart = 0;
+		}
+	}
+	
+	private void reserveReceiveSpace(int required)
+	{
+		ByteBuffer buffer = rxLease.buffer;
+		if (rxStart + required <= buffer.capacity())
+			return;
+		
+		if (required <= buffer.capacity() && rxLease.isShared() == false)
+		{
+			buffer.limit(buffer.position());
+			buffer.position(rxStart);
+			buffer.compact();
+			rxStart = 0;
+			return;
+		}
+		
+		PooledBuffer lease = receiveBufferPool.acquire(required);
+		ByteBuffer pending = buffer.duplicate();
+		pending.limit(buffer.position());
+		pending.position(rxStart);
+		lease.buffer.put(pending);
+		
+		rxLease.release();
+		rxLease = lease;
+		rxStart = 0;
+	}
+	
+	private void releaseReceiveBuffer()
+	{
+		if(rxLease != null)
+		{
+			rxLease.release();
+			rxLease = null;
+		}
+	}
+	
+	private static int decodeLength(ByteBuffer buffer, int index, int lengthBytes) throws FormatException
+	{
+		int length = 0;
+		for (int i = 0; i < lengthBytes; i++)
+			length = (length << 8) + (buffer.get(index + i) & 0xFF);
+		if (length < 0)
+			throw new FormatException();
+		return length;
+	}
+	
+	private void onRegistrationFailed(IOException ex)
+	{
+		if(isClosed == false)
+			deliverNetworkError(new NetworkErrorSoftnetException(ex.getMessage()));
+		closeSocketChannel();
+	}
+	
+	private void deliverMessage(final byte[] message)
+	{
+		if(dispatcher == null || reactor == null)
+		{
+			messageReceivedHandler.accept(message);
+			return;
+		}
+		
+		// A handler of raw messages may switch maxLength or bufferReceivedHandler,
+		// so the next frame is decoded only after the handler has returned.
+		if(registration != null)
+		{
+			isInputSuspended = true;
+			registration.setReadInterest(false);
+		}
+		
+		dispatch(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					if(isClosed == false)
+						messageReceivedHandler.accept(message);
+				}
+				finally
+				{
+					resumeInput();
+				}
+			}
+		});
+	}
+	
+	private void resumeInput()
+	{
+		if(registration == null)
+			return;
+		
+		registration.execute(new Runnable()
+		{
+			public void run()
+			{
+				onInputResumed();
+			}
+		});
+	}
+	
+	private void onInputResumed()
+	{
+		if(isInputSuspended == false)
+			return;
+		isInputSuspended = false;
+		if(isClosed)
+			return;
+		
+		try
+		{
+			if(rxLease != null)
+			{
+				decodeFrames();
+			}
+			else if(hasBufferedInput)
+			{
+				hasBufferedInput = false;
+				decodeInput();
+			}
+		}
+		catch(FormatException ex)
+		{
+			deliverFormatError();
+			closeSocketChannel();
+			releaseReceiveBuffer();
+			return;
+		}
+		
+		if(isInputSuspended == false && isReadPaused == false && isClosed == false)
+			registration.setReadInterest(true);
+	}
+	
+	private void deliverBuffer(final MsgBuffer message)
+	{
+		if(dispatcher == null || reactor == null)
+		{
+			bufferReceivedHandler.accept(message);
+			return;
 		}
+		
+		dispatch(new Runnable()
+		{
+			public void run()
+			{
+				if(isClosed == false)
+					bufferReceivedHandler.accept(message);
+				else
+					message.release();
+			}
+		});
 	}
+	
+	private void deliverNetworkError(final NetworkErrorSoftnetException ex)
+	{
+		if(dispatcher == null || reactor == null)
+		{
+			networkErrorHandler.accept(ex);
+			return;
+		}
 		
+		dispatch(new Runnable()
+		{
+			public void run()
+			{
+				networkErrorHandler.accept(ex);
+			}
+		});
+	}
+	
+	private void deliverFormatError()
+	{
+		if(dispatcher == null || reactor == null)
+		{
+			formatErrorHandler.run();
+			return;
+		}
+		
+		dispatch(formatErrorHandler);
+	}
+	
+	private void dispatch(Runnable task)
+	{
+		boolean startDispatching = false;
+		synchronized(inboundMutex)
+		{
+			inboundTasks.add(task);
+			if(inboundTasks.size() >= MaxInboundTasks && isReadPaused == false && registration != null)
+			{
+				isReadPaused = true;
+				registration.setReadInterest(false);
+			}
+			if(isDispatching == false)
+			{
+				isDispatching = true;
+				startDispatching = true;
+			}
+		}
+		
+		if(startDispatching)
+		{
+			dispatcher.execute(new Runnable()
+			{
+				public void run()
+				{
+					runInboundTasks();
+				}
+			});
+		}
+	}
+	
+	private void runInboundTasks()
+	{
+		while(true)
+		{
+			Runnable task;
+			boolean resumeReading = false;
+			synchronized(inboundMutex)
+			{
+				task = inboundTasks.poll();
+				if(task == null)
+				{
+					isDispatching = false;
+					return;
+				}
+				if(isReadPaused && inboundTasks.size() <= MaxInboundTasks / 2)
+				{
+					isReadPaused = false;
+					resumeReading = true;
+				}
+			}
+			
+			if(resumeReading)
+				registration.setReadInterest(true);
+			try
+			{
+				task.run();
+			}
+			catch(RuntimeException ex)
+			{
+				closeSocketChannel();
+			}
+		}
+	}
+	
+	private void decodeInput() throws FormatException
+	{
+		while (isClosed == false)
+	    {
+	    	if (isInputSuspended)
+	    	{
+	    		hasBufferedInput = true;
+	    		break;
+	    	}
+	    	
+	        if (isReadingAtMessageOrigin)
+	        {
+	            int firstByte = m_buffer.get(m_buffer.position());
+	            
+	            if (firstByte > 0)
+	            {
+	            	m_buffer.get();
+	            	messageLength = firstByte;
+	            }
+	            else if(firstByte < 0)
+	            {
+	            	int lengthBytes = firstByte & 0x0000007F;
+	            	if(lengthBytes < m_buffer.remaining())
+	            	{    
+	            		m_buffer.get();
+	            		messageLength = decodeLength(lengthBytes);
+	            	}
+	            	else
+	            	{
+	            		m_buffer.compact();
+	            		break;
+	            	}
+	            }
+	            else
+	            {
+	            	throw new FormatException();
+	            }
+	            
+	            if (messageLength < minLength || messageLength > maxLength)
+	                throw new FormatException();
+	            
+	            m_message = new byte[messageLength];
+	            
+	            if(messageLength == m_buffer.remaining())
+	    		{
+	    			m_buffer.get(m_message);
+	    			m_buffer.clear();
+	    			
+	    			deliverMessage(m_message);
+	    			m_message = null;
+	    			break;
+	    		}
+	    		else if(messageLength < m_buffer.remaining())
+	    		{
+	    			m_buffer.get(m_message);
+	    			
+	    			deliverMessage(m_message);
+	    			m_message = null;
+	    		}
+	    		else
+	    		{
+	    			messageBytesReceived = m_buffer.remaining();
+	    			m_buffer.get(m_message, 0, messageBytesReceived);                    			
+	    			m_buffer.clear();
+	    			
+	    			isReadingAtMessageOrigin = false;
+	    			break;
+	    		}
+	        }
+	        else
+	        {
+	        	int messageBytesRequired = messageLength - messageBytesReceived;
+	        	if(messageBytesRequired == m_buffer.remaining())
+	        	{
+	        		m_buffer.get(m_message, messageBytesReceived, messageBytesRequired);                    			
+	        		m_buffer.clear();
+	    			
+	        		deliverMessage(m_message);
+	    			m_message = null;
+	
+	    			isReadingAtMessageOrigin = true;
+	    			break;
+	        	}
+	        	else if(messageBytesRequired > m_buffer.remaining())
+	        	{
+	        		int bytesReceived = m_buffer.remaining();                		
+	    			m_buffer.get(m_message, messageBytesReceived, bytesReceived);            
+	    			m_buffer.clear();
+	    			
+	        		messageBytesReceived = messageBytesReceived + bytesReceived;
+	        		break;
+	        	}
+	        	else // messageBytesRequired < m_buffer.remaining()
+	        	{
+	        		m_buffer.get(m_message, messageBytesReceived, messageBytesRequired); 
+	        		
+	        		deliverMessage(m_message);
+	    			m_message = null;
+	    			
+	    			isReadingAtMessageOrigin = true;
+	        	}
+	        }
+	    }
+	}
+	
 	private int decodeLength(int lengthBytes) throws FormatException
     {
         if (lengthBytes == 1)
@@ -229,7 +681,45 @@ public class MsgSocket
     }
 	
 	private Queue<ByteBuffer> outputMessageQueue;
+	private LinkedList<ByteBuffer> discardableMessages;
+	private long queuedBytes = 0;
+	private long peakQueuedBytes = 0;
+	private int lowWatermark = Integer.MAX_VALUE;
+	private int highWatermark = Integer.MAX_VALUE;
+	private SendQueuePolicy sendQueuePolicy = SendQueuePolicy.Block;
+	private boolean isWritable = true;
+	private ByteBuffer[] outputBatch;
+	private int outputBatchIndex = 0;
+	private int outputBatchCount = 0;
 	private boolean isSending = false;
+	private boolean isWritePending = false;
+	
+	private static final int MaxBatchMessages = 1024;
+	
+	private AtomicLong writeCount = new AtomicLong(0);
+	private AtomicLong messagesWritten = new AtomicLong(0);
+	private AtomicLong bytesWritten = new AtomicLong(0);
+	private AtomicLong messagesDropped = new AtomicLong(0);
+	
+	public long getWriteCount()
+	{
+		return writeCount.get();
+	}
+	
+	public long getMessagesWritten()
+	{
+		return messagesWritten.get();
+	}
+	
+	public long getBytesWritten()
+	{
+		return bytesWritten.get();
+	}
+	
+	public long getMessagesDropped()
+	{
+		return messagesDropped.get();
+	}
 	
 	public void shutdownOutput()
 	{
@@ -250,52 +740,217 @@ public class MsgSocket
 		}
 	}
 
-	public void send(SoftnetMessage message)
+	public boolean send(SoftnetMessage message)
 	{	
-		ByteBuffer msg = ByteBuffer.wrap(message.buffer, message.offset, message.length);
-		synchronized(mutex)
-        {
-			if(isClosed) 
-				return;
-            if (isSending)
-            {
-                outputMessageQueue.add(msg);
-                return;                    
-            }
-            isSending = true;            
-        }
-		send(msg);
+		return send(ByteBuffer.wrap(message.buffer, message.offset, message.length), false);
+	}
+	
+	public boolean send(SoftnetMessage message, boolean discardable)
+	{	
+		return send(ByteBuffer.wrap(message.buffer, message.offset, message.length), discardable);
 	}
 		
-	public void send(byte[] buffer, int offset, int length)
+	public boolean send(byte[] buffer, int offset, int length)
 	{		
-		ByteBuffer msg = ByteBuffer.wrap(buffer, offset, length);
+		return send(ByteBuffer.wrap(buffer, offset, length), false);
+	}
+	
+	public void setSendQueueLimits(int lowWatermark, int highWatermark, SendQueuePolicy policy)
+	{
+		if(lowWatermark < 0 || highWatermark < lowWatermark)
+			throw new IllegalArgumentException("The watermarks must satisfy 0 <= lowWatermark <= highWatermark.");
+		if(policy == null)
+			throw new IllegalArgumentException("The send queue policy must not be null.");
+		
+		synchronized(mutex)
+		{
+			this.lowWatermark = lowWatermark;
+			this.highWatermark = highWatermark;
+			this.sendQueuePolicy = policy;
+		}
+	}
+	
+	public boolean isWritable()
+	{
+		synchronized(mutex)
+		{
+			return isWritable;
+		}
+	}
+	
+	public long getQueuedBytes()
+	{
+		synchronized(mutex)
+		{
+			return queuedBytes;
+		}
+	}
+	
+	public long getPeakQueuedBytes()
+	{
+		synchronized(mutex)
+		{
+			return peakQueuedBytes;
+		}
+	}
+	
+	public void awaitWritable()
+	{
+		if(Reactor.isIOThread())
+			return;
+		
+		synchronized(mutex)
+		{
+			while(isWritable == false && isClosed == false && socketChannel.isOpen())
+			{
+				try
+				{
+					mutex.wait();
+				}
+				catch(InterruptedException ex)
+				{
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+	
+	private boolean send(ByteBuffer msg, boolean discardable)
+	{
+		boolean writabilityLost = false;
 		synchronized(mutex)
         {
+			if(sendQueuePolicy == SendQueuePolicy.Block && Reactor.isIOThread() == false)
+			{
+				while(isWritable == false && isClosed == false && socketChannel.isOpen())
+				{
+					try
+					{
+						mutex.wait();
+					}
+					catch(InterruptedException ex)
+					{
+						Thread.currentThread().interrupt();
+						break;
+					}
+				}
+			}
+			
 			if(isClosed)
-				return;
+				return false;
+			
+			int length = msg.remaining();
+			if(queuedBytes > 0 && queuedBytes + length > highWatermark)
+			{
+				if(sendQueuePolicy == SendQueuePolicy.DropOldest)
+					dropDiscardableMessages(length);
+				
+				if(sendQueuePolicy != SendQueuePolicy.Block && queuedBytes > 0 && queuedBytes + length > highWatermark)
+					return false;
+			}
+			
+			queuedBytes += length;
+			if(queuedBytes > peakQueuedBytes)
+				peakQueuedBytes = queuedBytes;
+			if(isWritable && queuedBytes > highWatermark)
+			{
+				isWritable = false;
+				writabilityLost = true;
+			}
 			
             if (isSending)
             {
                 outputMessageQueue.add(msg);
-                return;                    
+                if(discardable)
+                	discardableMessages.add(msg);
+                msg = null;
             }
-            
-            isSending = true;
+            else
+            	isSending = true;
         }
-		send(msg);
+		
+		if(writabilityLost && writabilityChangedHandler != null)
+			writabilityChangedHandler.accept(false);
+		if(msg != null)
+			send(msg);
+		return true;
+	}
+	
+	private void dropDiscardableMessages(int length)
+	{
+		ByteBuffer message;
+		while(queuedBytes + length > highWatermark && (message = discardableMessages.poll()) != null)
+		{
+			queuedBytes -= message.remaining();
+			message.position(message.limit());
+			messagesDropped.incrementAndGet();
+		}
+	}
+	
+	private void onBytesWritten(long bytes)
+	{
+		boolean writabilityRestored = false;
+		synchronized(mutex)
+		{
+			queuedBytes -= bytes;
+			if(isWritable == false && queuedBytes <= lowWatermark)
+			{
+				isWritable = true;
+				writabilityRestored = true;
+				mutex.notifyAll();
+			}
+		}
+		
+		if(writabilityRestored && writabilityChangedHandler != null)
+			writabilityChangedHandler.accept(true);
 	}
 	
 	private void send(ByteBuffer message)
+	{
+		outputBatch[0] = message;
+		outputBatchIndex = 0;
+		outputBatchCount = 1;
+		synchronized(mutex)
+		{
+			fillOutputBatch(message.remaining());
+		}
+		flushOutput();
+	}
+	
+	private void flushOutput()
 	{
 		try		
 		{
 			while(isSending)
-			{				
-				socketChannel.write(message);
+			{
+				while(outputBatchIndex < outputBatchCount)
+				{
+					long bytes = socketChannel.write(outputBatch, outputBatchIndex, outputBatchCount - outputBatchIndex);
+					writeCount.incrementAndGet();
+					bytesWritten.addAndGet(bytes);
+					if(bytes > 0)
+						onBytesWritten(bytes);
+					
+					while(outputBatchIndex < outputBatchCount && outputBatch[outputBatchIndex].hasRemaining() == false)
+					{
+						outputBatch[outputBatchIndex] = null;
+						outputBatchIndex++;
+						messagesWritten.incrementAndGet();
+					}
+					
+					if(outputBatchIndex < outputBatchCount && registration != null)
+					{
+						isWritePending = true;
+						registration.setWriteInterest(true);
+						return;
+					}
+				}
 				
 				synchronized(mutex)
                 {
+					outputBatchIndex = 0;
+					outputBatchCount = 0;
                     if (outputMessageQueue.size() == 0)
                     {
                         isSending = false;
@@ -306,17 +961,52 @@ public class MsgSocket
                         }                        	
                         return;
                     }
-                    message = outputMessageQueue.remove();
+                    fillOutputBatch(0);
                 }
 			}
 		}
 		catch(IOException ex)
 		{
-			networkErrorHandler.accept(new NetworkErrorSoftnetException(ex.getMessage()));
+			deliverNetworkError(new NetworkErrorSoftnetException(ex.getMessage()));
 			closeSocketChannel();
 		}
 	}
 	
+	private void fillOutputBatch(int batchSize)
+	{
+		ByteBuffer message;
+		while((message = outputMessageQueue.peek()) != null)
+		{
+			if(outputBatchCount > 0 && (batchSize + message.remaining() > maxBatchSize || outputBatchCount == MaxBatchMessages))
+				return;
+			
+			if(outputBatchCount == outputBatch.length)
+			{
+				ByteBuffer[] batch = new ByteBuffer[Math.min(outputBatch.length * 2, MaxBatchMessages)];
+				System.arraycopy(outputBatch, 0, batch, 0, outputBatchCount);
+				outputBatch = batch;
+			}
+			
+			outputMessageQueue.remove();
+			if(message == discardableMessages.peek())
+				discardableMessages.remove();
+			if(message.hasRemaining() == false)
+				continue;
+			
+			outputBatch[outputBatchCount] = message;
+			outputBatchCount++;
+			batchSize += message.remaining();
+		}
+	}
+	
+	private void onOutputReady()
+	{
+		if(isWritePending == false)
+			return;
+		isWritePending = false;
+		flushOutput();
+	}
+	
 	private void closeSocketChannel()
 	{
 		try
@@ -324,5 +1014,9 @@ public class MsgSocket
 			socketChannel.close();
 		}
 		catch(IOException ex) {}
+		synchronized(mutex)
+		{
+			mutex.notifyAll();
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,42 @@
+package softnet.core;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class PooledBuffer
+{
+	public final ByteBuffer buffer;
+	private final BufferPool pool;
+	private final AtomicInteger refCount;
+
+	public PooledBuffer(ByteBuffer buffer, BufferPool pool)
+	{
+		this.buffer = buffer;
+		this.pool = pool;
+		refCount = new AtomicInteger(1);
+	}
+
+	public boolean isShared()
+	{
+		return refCount.get() > 1;
+	}
+
+	public void retain()
+	{
+		refCount.incrementAndGet();
+	}
+
+	public void release()
+	{
+		int count = refCount.decrementAndGet();
+		if(count == 0)
+		{
+			if(pool != null)
+				pool.recycle(buffer);
+		}
+		else if(count < 0)
+		{
+			throw new IllegalStateException("The buffer has already been released.");
+		}
+	}
+}
@@ -0,0 +1,310 @@
+package softnet.core;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Reactor
+{
+	private static Reactor defaultReactor = null;
+
+	public static synchronized Reactor getDefault()
+	{
+		if(defaultReactor == null)
+		{
+			int ioThreadCount = Runtime.getRuntime().availableProcessors() / 2;
+			if(ioThreadCount < 1)
+				ioThreadCount = 1;
+			else if(ioThreadCount > 4)
+				ioThreadCount = 4;
+
+			Reactor reactor = new Reactor(ioThreadCount);
+			try
+			{
+				reactor.init();
+			}
+			catch(IOException ex)
+			{
+				return null;
+			}
+			defaultReactor = reactor;
+		}
+		return defaultReactor;
+	}
+
+	public static boolean isIOThread()
+	{
+		return Thread.currentThread() instanceof IOThread;
+	}
+
+	private IOThread[] ioThreads;
+	private AtomicInteger nextThread = new AtomicInteger(0);
+	private boolean isShutdown = false;
+
+	public Reactor(int ioThreadCount)
+	{
+		if(ioThreadCount < 1 || ioThreadCount > 64)
+			throw new IllegalArgumentException("The value of 'ioThreadCount' must be in the range [1, 64].");
+		ioThreads = new IOThread[ioThreadCount];
+	}
+
+	public void init() throws IOException
+	{
+		try
+		{
+			for(int i = 0; i < ioThreads.length; i++)
+			{
+				ioThreads[i] = new IOThread(Selector.open());
+				ioThreads[i].setName("softnet-reactor-" + i);
+				ioThreads[i].setDaemon(true);
+			}
+		}
+		catch(IOException ex)
+		{
+			for(IOThread ioThread: ioThreads)
+			{
+				if(ioThread != null)
+					ioThread.closeSelector();
+			}
+			throw ex;
+		}
+
+		for(IOThread ioThread: ioThreads)
+			ioThread.start();
+	}
+
+	public int ioThreadCount()
+	{
+		return ioThreads.length;
+	}
+
+	public Registration register(SelectableChannel channel, Handler handler) throws IOException
+	{
+		if(isShutdown)
+			throw new IOException("The reactor has been shut down.");
+
+		channel.configureBlocking(false);
+		IOThread ioThread = ioThreads[(nextThread.getAndIncrement() & 0x7FFFFFFF) % ioThreads.length];
+		Registration registration = new Registration(ioThread, channel, handler);
+		ioThread.execute(registration.registerTask());
+		return registration;
+	}
+
+	public void shutdown()
+	{
+		isShutdown = true;
+		for(IOThread ioThread: ioThreads)
+		{
+			if(ioThread != null)
+				ioThread.shutdown();
+		}
+	}
+
+	public interface Handler
+	{
+		void onReadable();
+		void onWritable();
+		void onFailed(IOException ex);
+	}
+
+	public static class Registration
+	{
+		private final IOThread ioThread;
+		private final SelectableChannel channel;
+		private final Handler handler;
+		private SelectionKey key = null;
+		private int interestOps = SelectionKey.OP_READ;
+
+		private Registration(IOThread ioThread, SelectableChannel channel, Handler handler)
+		{
+			this.ioThread = ioThread;
+			this.channel = channel;
+			this.handler = handler;
+		}
+
+		public void setWriteInterest(boolean enabled)
+		{
+			setInterest(SelectionKey.OP_WRITE, enabled);
+		}
+
+		public void setReadInterest(boolean enabled)
+		{
+			setInterest(SelectionKey.OP_READ, enabled);
+		}
+
+		private void setInterest(final int operation, final boolean enabled)
+		{
+			if(Thread.currentThread() == ioThread)
+			{
+				applyInterest(operation, enabled);
+				return;
+			}
+
+			ioThread.execute(new Runnable()
+			{
+				public void run()
+				{
+					applyInterest(operation, enabled);
+				}
+			});
+		}
+
+		public void execute(Runnable task)
+		{
+			ioThread.execute(task);
+		}
+
+		public void cancel()
+		{
+			ioThread.execute(new Runnable()
+			{
+				public void run()
+				{
+					if(key != null)
+						key.cancel();
+				}
+			});
+		}
+
+		private void applyInterest(int operation, boolean enabled)
+		{
+			if(enabled)
+				interestOps |= operation;
+			else
+				interestOps &= ~operation;
+
+			if(key == null || key.isValid() == false)
+				return;
+
+			try
+			{
+				key.interestOps(interestOps);
+			}
+			catch(CancelledKeyException ex) {}
+		}
+
+		private Runnable registerTask()
+		{
+			return new Runnable()
+			{
+				public void run()
+				{
+					if(channel.isOpen() == false)
+						return;
+					try
+					{
+						key = channel.register(ioThread.selector, interestOps, Registration.this);
+					}
+					catch(IOException ex)
+					{
+						handler.onFailed(ex);
+					}
+				}
+			};
+		}
+	}
+
+	private static class IOThread extends Thread
+	{
+		private final Selector selector;
+		private final ConcurrentLinkedQueue<Runnable> tasks;
+		private volatile boolean isShutdown = false;
+
+		public IOThread(Selector selector)
+		{
+			this.selector = selector;
+			tasks = new ConcurrentLinkedQueue<Runnable>();
+		}
+
+		public void execute(Runnable task)
+		{
+			tasks.add(task);
+			if(Thread.currentThread() != this)
+				selector.wakeup();
+		}
+
+		public void shutdown()
+		{
+			isShutdown = true;
+			selector.wakeup();
+		}
+
+		public void closeSelector()
+		{
+			try
+			{
+				selector.close();
+			}
+			catch(IOException ex) {}
+		}
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				while(isShutdown == false)
+				{
+					selector.select();
+
+					Runnable task;
+					while((task = tasks.poll()) != null)
+						task.run();
+
+					Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+					while(iterator.hasNext())
+					{
+						SelectionKey key = iterator.next();
+						iterator.remove();
+						dispatch(key);
+					}
+				}
+			}
+			catch(IOException ex) {}
+			finally
+			{
+				for(SelectionKey key: selector.keys())
+				{
+					try
+					{
+						key.channel().close();
+					}
+					catch(IOException ex) {}
+				}
+				closeSelector();
+			}
+		}
+
+		private void dispatch(SelectionKey key)
+		{
+			Registration registration = (Registration)key.attachment();
+			try
+			{
+				int readyOps = key.readyOps();
+				if((readyOps & SelectionKey.OP_WRITE) != 0)
+				{
+					registration.applyInterest(SelectionKey.OP_WRITE, false);
+					registration.handler.onWritable();
+				}
+				if(key.isValid() && (readyOps & SelectionKey.OP_READ) != 0)
+					registration.handler.onReadable();
+			}
+			catch(CancelledKeyException ex) {}
+			catch(RuntimeException ex)
+			{
+				key.cancel();
+				try
+				{
+					key.channel().close();
+				}
+				catch(IOException e) {}
+				registration.handler.onFailed(new IOException(ex.getMessage()));
+			}
+		}
+	}
+}
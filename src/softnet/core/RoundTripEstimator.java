@@ -0,0 +1,78 @@
+package softnet.core;
+
+public class RoundTripEstimator
+{
+	private static final long ClockGranularityMillis = 10;
+
+	private final long initialTimeoutMillis;
+	private final long minTimeoutMillis;
+	private final long maxTimeoutMillis;
+	private long smoothedRoundTripMillis = -1;
+	private long roundTripVarianceMillis = 0;
+	private long timeoutMillis;
+
+	public RoundTripEstimator(long initialTimeoutMillis, long minTimeoutMillis, long maxTimeoutMillis)
+	{
+		if(minTimeoutMillis < 1 || maxTimeoutMillis < minTimeoutMillis)
+			throw new IllegalArgumentException("The timeout bounds must satisfy 0 < minTimeoutMillis <= maxTimeoutMillis.");
+
+		this.minTimeoutMillis = minTimeoutMillis;
+		this.maxTimeoutMillis = maxTimeoutMillis;
+		this.initialTimeoutMillis = clamp(initialTimeoutMillis);
+		timeoutMillis = this.initialTimeoutMillis;
+	}
+
+	public synchronized void addSample(long roundTripMillis)
+	{
+		if(roundTripMillis < 0)
+			return;
+
+		if(smoothedRoundTripMillis < 0)
+		{
+			smoothedRoundTripMillis = roundTripMillis;
+			roundTripVarianceMillis = roundTripMillis / 2;
+		}
+		else
+		{
+			roundTripVarianceMillis = (3 * roundTripVarianceMillis + Math.abs(smoothedRoundTripMillis - roundTripMillis)) / 4;
+			smoothedRoundTripMillis = (7 * smoothedRoundTripMillis + roundTripMillis) / 8;
+		}
+		timeoutMillis = clamp(smoothedRoundTripMillis + Math.max(ClockGranularityMillis, 4 * roundTripVarianceMillis));
+	}
+
+	public synchronized void backOff()
+	{
+		timeoutMillis = Math.min(timeoutMillis * 2, maxTimeoutMillis);
+	}
+
+	public synchronized void reset()
+	{
+		smoothedRoundTripMillis = -1;
+		roundTripVarianceMillis = 0;
+		timeoutMillis = initialTimeoutMillis;
+	}
+
+	public synchronized long getTimeoutMillis()
+	{
+		return timeoutMillis;
+	}
+
+	public synchronized long getRoundTripMillis()
+	{
+		return smoothedRoundTripMillis;
+	}
+
+	public synchronized long getRoundTripVarianceMillis()
+	{
+		return roundTripVarianceMillis;
+	}
+
+	private long clamp(long millis)
+	{
+		if(millis < minTimeoutMillis)
+			return minTimeoutMillis;
+		if(millis > maxTimeoutMillis)
+			return maxTimeoutMillis;
+		return millis;
+	}
+}
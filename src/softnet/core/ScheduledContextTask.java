@@ -21,7 +21,10 @@ public class ScheduledContextTask extends ScheduledTask
     {	
 		if (this.context.isClosed())
             return false;
-		return super.completed.compareAndSet(0, 1);
+		if(super.completed.compareAndSet(0, 1) == false)
+			return false;
+		removeFromWheel();
+		return true;
     }
 
 	@Override
@@ -15,14 +15,36 @@ public class ScheduledTask
 	}
 
 	protected AtomicInteger completed;
+	
+	volatile TimingWheel wheel = null;
+	long deadline;
+	int bucketIndex;
+	boolean isLinked = false;
+	ScheduledTask wheelPrev = null;
+	ScheduledTask wheelNext = null;
 
 	public boolean cancel()
     {	
-		return completed.compareAndSet(0, 1);
+		if(completed.compareAndSet(0, 1) == false)
+			return false;
+		removeFromWheel();
+		return true;
     }
 
     public boolean complete()
     {    	
     	return completed.compareAndSet(0, 1);
     }
+    
+    boolean isDone()
+    {
+    	return completed.get() != 0;
+    }
+    
+    protected void removeFromWheel()
+    {
+    	TimingWheel wheel = this.wheel;
+    	if(wheel != null)
+    		wheel.cancel(this);
+    }
 }
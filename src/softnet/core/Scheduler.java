@@ -1,68 +1,65 @@
 package softnet.core;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Scheduler
 {
+	private static final long TickMillis = 10;
+	private static final int WheelSize = 512;
+	
 	private ThreadPool threadPool;
-	private ScheduledExecutorService scheduledThreadPool;	
+	private TimingWheel[] wheels;
+	private AtomicInteger nextWheel = new AtomicInteger(0);
+	private int threadCount;
 	private boolean isShutdown = false;
 	
 	public Scheduler(ThreadPool threadPool)
 	{
 		this.threadPool = threadPool;
+		this.threadCount = 1;
 	}
 	
-	public void init()
+	public Scheduler(ThreadPool threadPool, int threadCount)
 	{
-		scheduledThreadPool = Executors.newScheduledThreadPool(1);
+		if(threadCount < 1)
+			throw new IllegalArgumentException("The value of 'threadCount' must be positive.");
+		this.threadPool = threadPool;
+		this.threadCount = threadCount;
 	}
-
-	public void add(ScheduledTask task, long delaySeconds)
+	
+	public void init()
 	{
-		try
+		wheels = new TimingWheel[threadCount];
+		for(int i = 0; i < threadCount; i++)
 		{
-			scheduledThreadPool.schedule(new STaskWrapper(task, threadPool), delaySeconds, TimeUnit.SECONDS);
+			wheels[i] = new TimingWheel(threadPool, TickMillis, WheelSize);
+			wheels[i].setName("softnet-scheduler-" + i);
+			wheels[i].start();
 		}
-		catch(java.util.concurrent.RejectedExecutionException e)
-		{
-			if(isShutdown == true)
-				return;
-			throw e;
-		}		
 	}
-	
-	public void shutdown()
+
+	public void add(ScheduledTask task, long delaySeconds)
 	{
-		isShutdown = true;
-		scheduledThreadPool.shutdownNow();
+		addMillis(task, delaySeconds * 1000L);
 	}
-}
-
-class STaskWrapper implements Runnable
-{
-	private ThreadPool threadPool;
-	private ScheduledTask task;
 	
-	public STaskWrapper(ScheduledTask task, ThreadPool threadPool)
+	public void addMillis(ScheduledTask task, long delayMillis)
 	{
-		this.task = task;
-		this.threadPool = threadPool;
+		if(isShutdown)
+			return;
+		
+		TimingWheel wheel;
+		if(wheels.length == 1)
+			wheel = wheels[0];
+		else
+			wheel = wheels[(nextWheel.getAndIncrement() & 0x7FFFFFFF) % wheels.length];
+		wheel.add(task, delayMillis);
 	}
 	
-	public void run()
+	public void shutdown()
 	{
-		if(task.complete())
-		{			
-			threadPool.execute(new Runnable()
-			{
-				public void run()
-				{
-					task.acceptor.accept(task.state);
-				}
-			});
-		}
+		isShutdown = true;
+		for(TimingWheel wheel: wheels)
+			wheel.shutdown();
 	}
 }
@@ -0,0 +1,57 @@
+package softnet.core;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class StripedCounters
+{
+	private static final int CacheLineLongs = 8;
+	
+	private final AtomicLongArray cells;
+	private final int count;
+	private final int stride;
+	private final int mask;
+
+	public StripedCounters(int count)
+	{
+		if(count < 1)
+			throw new IllegalArgumentException("The value of 'count' must be positive.");
+		
+		int stripes = Integer.highestOneBit(Math.max(Runtime.getRuntime().availableProcessors(), 1));
+		if(stripes > 8)
+			stripes = 8;
+		
+		this.count = count;
+		this.stride = ((count + CacheLineLongs - 1) / CacheLineLongs + 1) * CacheLineLongs;
+		this.mask = stripes - 1;
+		cells = new AtomicLongArray(stripes * stride);
+	}
+
+	public void add(int index, long value)
+	{
+		cells.addAndGet(stripe() * stride + index, value);
+	}
+
+	public void increment(int index)
+	{
+		cells.incrementAndGet(stripe() * stride + index);
+	}
+
+	public long sum(int index)
+	{
+		long sum = 0;
+		for(int offset = index; offset < cells.length(); offset += stride)
+			sum += cells.get(offset);
+		return sum;
+	}
+
+	public int count()
+	{
+		return count;
+	}
+
+	private int stripe()
+	{
+		long id = Thread.currentThread().getId();
+		return (int)(id ^ (id >>> 16)) & mask;
+	}
+}
@@ -2,15 +2,47 @@ package softnet.core;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class ThreadPool
 {
 	private ExecutorService cachedThreadPool;
+	private int maxThreads;
 	private boolean shutdown = false;
 	
+	public ThreadPool()
+	{
+		this.maxThreads = 0;
+	}
+	
+	public ThreadPool(int maxThreads)
+	{
+		if(maxThreads < 0)
+			throw new IllegalArgumentException("The value of 'maxThreads' must not be negative.");
+		this.maxThreads = maxThreads;
+	}
+	
 	public void init()
 	{
-		cachedThreadPool = Executors.newCachedThreadPool();
+		ThreadFactory threadFactory = Threads.threadFactory();
+		if(maxThreads == 0)
+		{
+			if(threadFactory != null)
+				cachedThreadPool = Threads.newThreadPerTaskExecutor();
+			else
+				cachedThreadPool = Executors.newCachedThreadPool();
+		}
+		else
+		{
+			if(threadFactory == null)
+				threadFactory = Executors.defaultThreadFactory();
+			ThreadPoolExecutor boundedThreadPool = new ThreadPoolExecutor(maxThreads, maxThreads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory);
+			boundedThreadPool.allowCoreThreadTimeOut(true);
+			cachedThreadPool = boundedThreadPool;
+		}
 	}
 	
 	public void execute(Runnable runnable)
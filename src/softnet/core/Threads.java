@@ -0,0 +1,91 @@
+package softnet.core;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+public class Threads
+{
+	private static volatile boolean virtualThreadsEnabled = false;
+	private static ThreadFactory virtualThreadFactory = null;
+	private static Method newThreadPerTaskExecutor = null;
+	private static boolean isResolved = false;
+
+	public static synchronized boolean enableVirtualThreads()
+	{
+		resolve();
+		if(virtualThreadFactory == null)
+			return false;
+		virtualThreadsEnabled = true;
+		return true;
+	}
+
+	public static void disableVirtualThreads()
+	{
+		virtualThreadsEnabled = false;
+	}
+
+	public static boolean virtualThreadsEnabled()
+	{
+		return virtualThreadsEnabled;
+	}
+
+	public static synchronized boolean virtualThreadsSupported()
+	{
+		resolve();
+		return virtualThreadFactory != null;
+	}
+
+	public static Thread start(Runnable runnable)
+	{
+		Thread thread;
+		if(virtualThreadsEnabled)
+			thread = virtualThreadFactory.newThread(runnable);
+		else
+			thread = new Thread(runnable);
+		thread.start();
+		return thread;
+	}
+
+	static ThreadFactory threadFactory()
+	{
+		if(virtualThreadsEnabled)
+			return virtualThreadFactory;
+		return null;
+	}
+
+	static ExecutorService newThreadPerTaskExecutor()
+	{
+		try
+		{
+			return (ExecutorService)newThreadPerTaskExecutor.invoke(null, virtualThreadFactory);
+		}
+		catch(ReflectiveOperationException ex)
+		{
+			throw new IllegalStateException(ex.getMessage());
+		}
+	}
+
+	private static void resolve()
+	{
+		if(isResolved)
+			return;
+		isResolved = true;
+
+		try
+		{
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "softnet-virtual-", 0L);
+			ThreadFactory factory = (ThreadFactory)builderClass.getMethod("factory").invoke(builder);
+			Method executorMethod = java.util.concurrent.Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+
+			newThreadPerTaskExecutor = executorMethod;
+			virtualThreadFactory = factory;
+		}
+		catch(ReflectiveOperationException | ClassCastException ex)
+		{
+			virtualThreadFactory = null;
+		}
+	}
+}
@@ -0,0 +1,221 @@
+package softnet.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+class TimingWheel extends Thread
+{
+	private final ThreadPool threadPool;
+	private final long tickNanos;
+	private final ScheduledTask[] buckets;
+	private final long[] bucketDeadlines;
+	private final int mask;
+	private final ArrayList<ScheduledTask> expiredTasks;
+	private final long startTime;
+	private long currentTick = 0;
+	private int taskCount = 0;
+	private boolean isSleeping = false;
+	private long wakeupTime = 0;
+	private volatile boolean isShutdown = false;
+	private final Object mutex = new Object();
+
+	public TimingWheel(ThreadPool threadPool, long tickMillis, int wheelSize)
+	{
+		if(Integer.bitCount(wheelSize) != 1)
+			throw new IllegalArgumentException("The value of 'wheelSize' must be a power of two.");
+		this.threadPool = threadPool;
+		this.tickNanos = tickMillis * 1000000L;
+		buckets = new ScheduledTask[wheelSize];
+		bucketDeadlines = new long[wheelSize];
+		Arrays.fill(bucketDeadlines, Long.MAX_VALUE);
+		mask = wheelSize - 1;
+		expiredTasks = new ArrayList<ScheduledTask>();
+		startTime = System.nanoTime();
+	}
+
+	public void add(ScheduledTask task, long delayMillis)
+	{
+		if(isShutdown)
+			return;
+		if(delayMillis < 0)
+			delayMillis = 0;
+
+		task.deadline = System.nanoTime() - startTime + delayMillis * 1000000L;
+		task.wheel = this;
+
+		synchronized(mutex)
+		{
+			if(isShutdown || task.isDone())
+				return;
+			link(task);
+
+			if(isSleeping && task.deadline < wakeupTime)
+			{
+				isSleeping = false;
+				mutex.notify();
+			}
+		}
+	}
+
+	void cancel(ScheduledTask task)
+	{
+		synchronized(mutex)
+		{
+			if(task.isLinked)
+				unlink(task);
+		}
+	}
+
+	public void shutdown()
+	{
+		isShutdown = true;
+		interrupt();
+	}
+
+	@Override
+	public void run()
+	{
+		try
+		{
+			while(isShutdown == false)
+			{
+				synchronized(mutex)
+				{
+					long now = System.nanoTime() - startTime;
+					long tick = now / tickNanos;
+
+					long lastTick = Math.min(tick, currentTick + buckets.length - 1);
+					for(; currentTick <= lastTick; currentTick++)
+						expireBucket((int)(currentTick & mask), now);
+					currentTick = tick;
+
+					if(expiredTasks.isEmpty())
+					{
+						long deadline = taskCount > 0 ? nextDeadline() : Long.MAX_VALUE;
+						isSleeping = true;
+						wakeupTime = deadline;
+						while(isSleeping && isShutdown == false)
+						{
+							if(deadline == Long.MAX_VALUE)
+							{
+								mutex.wait();
+								continue;
+							}
+							long sleepNanos = deadline - (System.nanoTime() - startTime);
+							if(sleepNanos <= 0)
+								break;
+							mutex.wait(sleepNanos / 1000000L, (int)(sleepNanos % 1000000L));
+						}
+						isSleeping = false;
+						continue;
+					}
+				}
+
+				for(ScheduledTask task: expiredTasks)
+					expire(task);
+				expiredTasks.clear();
+			}
+		}
+		catch(InterruptedException ex) {}
+		finally
+		{
+			synchronized(mutex)
+			{
+				for(int i = 0; i < buckets.length; i++)
+				{
+					buckets[i] = null;
+					bucketDeadlines[i] = Long.MAX_VALUE;
+				}
+				taskCount = 0;
+			}
+		}
+	}
+
+	private void link(ScheduledTask task)
+	{
+		long tick = task.deadline / tickNanos;
+		if(tick < currentTick)
+			tick = currentTick;
+
+		int index = (int)(tick & mask);
+		task.bucketIndex = index;
+		task.wheelNext = buckets[index];
+		task.wheelPrev = null;
+		if(buckets[index] != null)
+			buckets[index].wheelPrev = task;
+		buckets[index] = task;
+		task.isLinked = true;
+		taskCount++;
+
+		if(task.deadline < bucketDeadlines[index])
+			bucketDeadlines[index] = task.deadline;
+	}
+
+	private void expireBucket(int index, long now)
+	{
+		long bucketDeadline = Long.MAX_VALUE;
+		ScheduledTask task = buckets[index];
+		while(task != null)
+		{
+			ScheduledTask next = task.wheelNext;
+			if(task.deadline <= now)
+			{
+				unlink(task);
+				if(task.complete())
+					expiredTasks.add(task);
+			}
+			else if(task.isDone())
+			{
+				unlink(task);
+			}
+			else if(task.deadline < bucketDeadline)
+			{
+				bucketDeadline = task.deadline;
+			}
+			task = next;
+		}
+		bucketDeadlines[index] = bucketDeadline;
+	}
+
+	private long nextDeadline()
+	{
+		long deadline = Long.MAX_VALUE;
+		for(int i = 0; i < buckets.length; i++)
+		{
+			long bucketTick = currentTick + i;
+			long bucketDeadline = bucketDeadlines[(int)(bucketTick & mask)];
+			if(bucketDeadline < deadline)
+				deadline = bucketDeadline;
+			if(deadline < (bucketTick + 1) * tickNanos)
+				break;
+		}
+		return deadline;
+	}
+
+	private void unlink(ScheduledTask task)
+	{
+		if(task.wheelPrev != null)
+			task.wheelPrev.wheelNext = task.wheelNext;
+		else
+			buckets[task.bucketIndex] = task.wheelNext;
+		if(task.wheelNext != null)
+			task.wheelNext.wheelPrev = task.wheelPrev;
+		if(buckets[task.bucketIndex] == null)
+			bucketDeadlines[task.bucketIndex] = Long.MAX_VALUE;
+		task.wheelPrev = null;
+		task.wheelNext = null;
+		task.isLinked = false;
+		taskCount--;
+	}
+
+	private void expire(final ScheduledTask task)
+	{
+		threadPool.execute(new Runnable()
+		{
+			public void run()
+			{
+				task.acceptor.accept(task.state);
+			}
+		});
+	}
+}
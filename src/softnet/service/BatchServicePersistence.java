@@ -0,0 +1,14 @@
+package softnet.service;
+
+import java.util.List;
+import java.util.UUID;
+import softnet.exceptions.*;
+
+public interface BatchServicePersistence extends ServicePersistence
+{
+	List<ServiceEventPersistable> peek(int offset, int maxCount, int maxBytes) throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException;
+	void setAcknowledment(UUID instanceUid) throws PersistenceIOSoftnetException;
+	List<ServiceEventPersistable> peek(int eventKind, String eventName, int offset, int maxCount) throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException;
+	int cache(List<QueueingEvent> events) throws PersistenceIOSoftnetException;
+	int save(List<QueueingEvent> events) throws PersistenceIOSoftnetException;
+}
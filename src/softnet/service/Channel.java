@@ -5,7 +5,12 @@ import softnet.core.*;
 interface Channel
 {
 	void registerComponent(int componentId, MsgAcceptor<Channel> MessageReceivedHandler);
+	void registerBufferComponent(int componentId, MsgBufferAcceptor<Channel> MessageReceivedHandler);
 	void removeComponent(int componentId);
-	void send(SoftnetMessage message);
+	boolean send(SoftnetMessage message);
+	boolean sendDiscardable(SoftnetMessage message);
+	boolean isWritable();
+	void awaitWritable();
+	void setWritabilityListener(int componentId, Acceptor<Boolean> listener);
 	boolean isClosed();
 }
\ No newline at end of file
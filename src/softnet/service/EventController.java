@@ -1,8 +1,20 @@
 package softnet.service;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import softnet.asn.*;
 import softnet.core.*;
@@ -10,15 +22,19 @@ import softnet.exceptions.*;
 
 class EventController
 { 
-	public EventController(ServiceEndpoint serviceEndpoint, SiteStructureAdapter siteStructureAdapter, ServiceURI serviceURI)
+	public EventController(ServiceEndpoint serviceEndpoint, SiteStructureAdapter siteStructureAdapter, ServiceURI serviceURI, ChannelMetrics channelMetrics)
 	{
 		this.serviceEndpoint = serviceEndpoint;
 		this.scheduler = serviceEndpoint.scheduler;
 		this.siteStructure = siteStructureAdapter;
 		this.serviceURI = serviceURI;
+		roundTripEstimator = new RoundTripEstimator(Constants.EventDeliverySeconds * 1000L, Constants.EventDeliveryMinMillis, Constants.EventDeliveryMaxMillis);
+		channelMetrics.attach(roundTripEstimator);
 	}
 	
-	private Object mutex = new Object();
+	private ReentrantReadWriteLock stateLock = new ReentrantReadWriteLock();
+	private Lock readLock = stateLock.readLock();
+	private Lock writeLock = stateLock.writeLock();
 
 	private enum StatusEnum { 
 		Disconnected, Connected, Online
@@ -32,12 +48,17 @@ class EventController
 	private UUID lastStorageUid = null;
 	private Channel channel;
 	private Scheduler scheduler;
-	private ArrayList<String> regularEvents;
 	private ArrayList<DeliveryAgent> deliveryAgents; 
+	private HashMap<String, DeliveryAgent> deliveryAgentIndex;
 	private SuccessiveDeliveryAgent successiveDeliveryAgent;
+	private RoundTripEstimator roundTripEstimator;
 	private ServicePersistence servicePersistence;
 	private HashSet<ServiceEventListener> eventListeners;
+	private int eventDeliveryWindow = 1;
+	private int eventBatchThreshold = 0;
 	private long memoryBasedStorageCapacity = 16384;
+	private boolean memoryBasedStorageOffHeap = false;
+	private volatile EventWriter eventWriter = null;
 	private static final long fileBasedStorageCapacity = 1048576;
 	
 	public void init()
@@ -45,20 +66,20 @@ class EventController
 		status = StatusEnum.Disconnected;		
 		eventListeners = new HashSet<ServiceEventListener>(1);
 		
-		regularEvents = new ArrayList<String>();	
 		successiveDeliveryAgent = new SuccessiveDeliveryAgent();		
 		
 		int eventIndex = 0;
 		deliveryAgents = new ArrayList<DeliveryAgent>();
+		deliveryAgentIndex = new HashMap<String, DeliveryAgent>();
 		
 		if(siteStructure.containsReplacingEvents())
 		{
 			ArrayList<SiteStructureAdapter.REvent> rEvents = siteStructure.getReplacingEvents();
 			for(SiteStructureAdapter.REvent rEvent: rEvents)
 			{
-				regularEvents.add(rEvent.name);
 				DeliveryAgent agent = new DeliveryAgent(rEvent.name, eventIndex, 1); 
 				deliveryAgents.add(agent);
+				deliveryAgentIndex.put(agent.name, agent);
 				eventIndex++;
 			}
 		}
@@ -68,9 +89,9 @@ class EventController
 			ArrayList<SiteStructureAdapter.QEvent> qEvents = siteStructure.getQueueingEvents();
 			for(SiteStructureAdapter.QEvent qEvent: qEvents)
 			{
-				regularEvents.add(qEvent.name);
 				DeliveryAgent agent = new DeliveryAgent(qEvent.name, eventIndex, 2); 
 				deliveryAgents.add(agent);
+				deliveryAgentIndex.put(agent.name, agent);
 				eventIndex++;
 			}
 		}
@@ -80,9 +101,9 @@ class EventController
 			ArrayList<SiteStructureAdapter.PEvent> pEvents = siteStructure.getPrivateEvents();
 			for(SiteStructureAdapter.PEvent pEvent: pEvents)
 			{
-				regularEvents.add(pEvent.name);
 				DeliveryAgent agent = new DeliveryAgent(pEvent.name, eventIndex, 4); 
 				deliveryAgents.add(agent);
+				deliveryAgentIndex.put(agent.name, agent);
 				eventIndex++;
 			}
 		}
@@ -90,36 +111,53 @@ class EventController
 
 	public void setPersistenceL1()
 	{
-		synchronized(mutex)
+		writeLock.lock();
+		try
 		{
 			if(isInitialized)
 				throw new IllegalStateException("The persistence has already been set.");
 			isInitialized = true;
 									
-			servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity); 
+			servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity, memoryBasedStorageOffHeap); 
 			servicePersistence.setStorageMode();
 		}
+		finally
+		{
+			writeLock.unlock();
+		}
 	}
 
 	public void setPersistenceL1(long memoryBasedStorageCapacity)
 	{
-		synchronized(mutex)
+		setPersistenceL1(memoryBasedStorageCapacity, false);
+	}
+
+	public void setPersistenceL1(long memoryBasedStorageCapacity, boolean offHeap)
+	{
+		writeLock.lock();
+		try
 		{
 			if(isInitialized)
 				throw new IllegalStateException("The persistence has already been set.");
 			isInitialized = true;
+			memoryBasedStorageOffHeap = offHeap;
 						
 			if(memoryBasedStorageCapacity != 0)
 				this.memoryBasedStorageCapacity = memoryBasedStorageCapacity > 4096 ? memoryBasedStorageCapacity : 4096;
 			
-			servicePersistence = new ServiceMemoryPersistence(this.memoryBasedStorageCapacity); 
+			servicePersistence = new ServiceMemoryPersistence(this.memoryBasedStorageCapacity, memoryBasedStorageOffHeap); 
 			servicePersistence.setStorageMode();
 		}
+		finally
+		{
+			writeLock.unlock();
+		}
 	}
 	
 	public void setPersistenceL2()
 	{
-		synchronized(mutex)
+		writeLock.lock();
+		try
 		{
 			if(isInitialized)
 				throw new IllegalStateException("The persistence has already been set.");
@@ -142,16 +180,26 @@ class EventController
 			catch(PersistenceIOSoftnetException ex)
 			{
 				servicePersistence.close();
-				servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity); 
+				servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity, memoryBasedStorageOffHeap); 
 				servicePersistence.setStorageMode();			
 				raisePersistenceFailedEvent(ex);
 			}
 		}
+		finally
+		{
+			writeLock.unlock();
+		}
 	}
 
 	public void setPersistenceL2(String fileBasedStorageDirectory, long fileBasedStorageCapacity, long memoryBasedStorageCapacity)
 	{
-		synchronized(mutex)
+		setPersistenceL2(fileBasedStorageDirectory, fileBasedStorageCapacity, memoryBasedStorageCapacity, null);
+	}
+
+	public void setPersistenceL2(String fileBasedStorageDirectory, long fileBasedStorageCapacity, long memoryBasedStorageCapacity, FileStorageOptions fileStorageOptions)
+	{
+		writeLock.lock();
+		try
 		{
 			if(isInitialized)
 				throw new IllegalStateException("The persistence has already been set.");
@@ -167,10 +215,7 @@ class EventController
 					if(fileBasedStorageCapacity != 0 && fileBasedStorageCapacity < 8192)
 						fileBasedStorageCapacity = 8192;
 						
-					if(fileBasedStorageDirectory == null || fileBasedStorageDirectory.length() == 0)
-						servicePersistence = ServiceFilePersistence.create(serviceURI.serviceUid, fileBasedStorageCapacity);
-					else
-						servicePersistence = ServiceFilePersistence.create(serviceURI.serviceUid, fileBasedStorageCapacity, fileBasedStorageDirectory);
+					servicePersistence = ServiceFilePersistence.create(serviceURI.serviceUid, fileBasedStorageCapacity, fileBasedStorageDirectory, fileStorageOptions);
 					servicePersistence.setStorageMode();
 				}
 				catch(PersistenceDataFormatSoftnetException ex)
@@ -183,16 +228,70 @@ class EventController
 			catch(PersistenceIOSoftnetException ex)
 			{
 				servicePersistence.close();
-				servicePersistence = new ServiceMemoryPersistence(this.memoryBasedStorageCapacity); 
+				servicePersistence = new ServiceMemoryPersistence(this.memoryBasedStorageCapacity, memoryBasedStorageOffHeap); 
 				servicePersistence.setStorageMode();			
 				raisePersistenceFailedEvent(ex);
 			}
 		}
+		finally
+		{
+			writeLock.unlock();
+		}
+	}
+
+	public void setPersistenceTiered(String fileBasedStorageDirectory, long fileBasedStorageCapacity, long memoryBasedStorageCapacity)
+	{
+		setPersistenceTiered(fileBasedStorageDirectory, fileBasedStorageCapacity, memoryBasedStorageCapacity, null);
+	}
+
+	public void setPersistenceTiered(String fileBasedStorageDirectory, long fileBasedStorageCapacity, long memoryBasedStorageCapacity, FileStorageOptions fileStorageOptions)
+	{
+		writeLock.lock();
+		try
+		{
+			if(isInitialized)
+				throw new IllegalStateException("The persistence has already been set.");
+			isInitialized = true;
+
+			if(memoryBasedStorageCapacity != 0)
+				this.memoryBasedStorageCapacity = memoryBasedStorageCapacity > 4096 ? memoryBasedStorageCapacity : 4096;
+
+			try
+			{
+				try
+				{
+					if(fileBasedStorageCapacity != 0 && fileBasedStorageCapacity < 8192)
+						fileBasedStorageCapacity = 8192;
+
+					ServiceFilePersistence fileTier = ServiceFilePersistence.create(serviceURI.serviceUid, fileBasedStorageCapacity, fileBasedStorageDirectory, fileStorageOptions);
+					servicePersistence = new TieredServicePersistence(new ServiceMemoryPersistence(this.memoryBasedStorageCapacity, memoryBasedStorageOffHeap), fileTier);
+					servicePersistence.setStorageMode();
+				}
+				catch(PersistenceDataFormatSoftnetException ex)
+				{
+					servicePersistence.reset();
+					servicePersistence.setStorageMode();
+					raisePersistenceFailedEvent(ex);
+				}
+			}
+			catch(PersistenceIOSoftnetException ex)
+			{
+				servicePersistence.close();
+				servicePersistence = new ServiceMemoryPersistence(this.memoryBasedStorageCapacity, memoryBasedStorageOffHeap);
+				servicePersistence.setStorageMode();
+				raisePersistenceFailedEvent(ex);
+			}
+		}
+		finally
+		{
+			writeLock.unlock();
+		}
 	}
 
 	public void setPersistenceL2(ServicePersistence servicePersistence, long memoryBasedStorageCapacity)
 	{
-		synchronized(mutex)
+		writeLock.lock();
+		try
 		{
 			if(isInitialized)
 				throw new IllegalStateException("The persistence has already been set.");
@@ -208,14 +307,24 @@ class EventController
 			this.servicePersistence = servicePersistence;
 			this.servicePersistence.setStorageMode();			
 		}
+		finally
+		{
+			writeLock.unlock();
+		}
 	}
 	
 	public void onConnectCalled()
 	{
-		synchronized(mutex) {		
+		readLock.lock();
+		try
+		{
 			if(isInitialized == false)
 				throw new IllegalStateException("The persistence is not set.");
 		}
+		finally
+		{
+			readLock.unlock();
+		}
 	}
 		
 	public void onEndpointConnected(Channel channel)
@@ -229,16 +338,22 @@ class EventController
 				}
 			});		
 		
-		synchronized(mutex)
+		writeLock.lock();
+		try
 		{
 			status = StatusEnum.Connected;
 			this.channel = channel;
 		}
+		finally
+		{
+			writeLock.unlock();
+		}
 	}
 
 	public void onServiceOnline()
 	{
-		synchronized(mutex)
+		writeLock.lock();
+		try
 		{
 			status = StatusEnum.Online;	
 			
@@ -253,7 +368,7 @@ class EventController
 					catch(PersistenceIOSoftnetException ex)
 					{
 						servicePersistence.close();
-						servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity); 
+						servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity, memoryBasedStorageOffHeap); 
 						raisePersistenceFailedEvent(ex);						
 					}			
 					
@@ -269,54 +384,40 @@ class EventController
 			{				
 				try
 				{
-					while(servicePersistence.isInStorageMode())
+					sendSuccessiveEvents();
+					if(successiveDeliveryAgent.instanceUids.isEmpty() == false)
 					{
-						ServiceEventPersistable sep = servicePersistence.peek();
-						if(sep == null)
-							return;
-
-						if(validateEventName(sep.name))
-						{													
-							Acceptor<Object> acceptor = new Acceptor<Object>()
-							{
-								public void accept(Object noData) { verifyEventDelivery(); }
-							};
-							
-							successiveDeliveryAgent.task = new ScheduledTask(acceptor, null);
-							successiveDeliveryAgent.expirationTime = SystemClock.seconds() + Constants.EventDeliverySeconds;
-							successiveDeliveryAgent.instanceUid = sep.instanceUid;
-
-							channel.send(encodeMessage_RegularEvent(sep, 0));
-							scheduler.add(successiveDeliveryAgent.task, Constants.EventDeliverySeconds);
-							
-							return;
-						}
-						else
-						{
-							servicePersistence.setAcknowledment();
-						}					
+						successiveDeliveryAgent.expirationTime = SystemClock.milliSeconds() + roundTripEstimator.getTimeoutMillis();
+						scheduleDeliveryCheck(successiveDeliveryAgent, roundTripEstimator.getTimeoutMillis());
 					}
 				}
 				catch(PersistenceDataFormatSoftnetException ex)
 				{
 					servicePersistence.reset();
+					resetSuccessiveDeliveryAgent();
 					raisePersistenceFailedEvent(ex);
 				}							
 			}
 			catch(PersistenceIOSoftnetException ex)
 			{
 				servicePersistence.close();
+				resetSuccessiveDeliveryAgent();
 				raisePersistenceFailedEvent(ex);
 				
-				servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity); 
+				servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity, memoryBasedStorageOffHeap); 
 				channel.send(encodeMessage_NewStorageUid(servicePersistence.getUid()));
 			}
 		}
+		finally
+		{
+			writeLock.unlock();
+		}
 	}
 
 	public void onEndpointDisconnected()
 	{
-		synchronized(mutex)
+		writeLock.lock();
+		try
 		{
 			status = StatusEnum.Disconnected;
 			channel = null;
@@ -325,11 +426,78 @@ class EventController
 			resetDeliveryAgents();
 			resetSuccessiveDeliveryAgent();
 		}
+		finally
+		{
+			writeLock.unlock();
+		}
+	}
+	
+	public void setEventDeliveryWindow(int windowSize)
+	{
+		if(windowSize < 1 || windowSize > 1024)
+			throw new IllegalArgumentException("The value of 'windowSize' must be in the range [1, 1024].");
+		writeLock.lock();
+		try
+		{
+			if(status != StatusEnum.Disconnected)
+				throw new IllegalStateException("The delivery window cannot be changed while the endpoint is connected.");
+			eventDeliveryWindow = windowSize;
+		}
+		finally
+		{
+			writeLock.unlock();
+		}
 	}
 	
+	public void enableEventBatching(int backlogThreshold)
+	{
+		if(backlogThreshold < 2 || backlogThreshold > Constants.EventBatchMaxCount)
+			throw new IllegalArgumentException(String.format("The value of 'backlogThreshold' must be in the range [2, %d].", Constants.EventBatchMaxCount));
+		writeLock.lock();
+		try
+		{
+			if(status != StatusEnum.Disconnected)
+				throw new IllegalStateException("The event batching cannot be enabled while the endpoint is connected.");
+			eventBatchThreshold = backlogThreshold;
+		}
+		finally
+		{
+			writeLock.unlock();
+		}
+	}
+	
+	public void enableWriteBehind(int ringCapacity)
+	{
+		writeLock.lock();
+		try
+		{
+			if(isClosed)
+				return;
+			if(eventWriter != null)
+				throw new IllegalStateException("The write-behind mode has already been enabled.");
+			EventWriter writer = new EventWriter(ringCapacity);
+			writer.setName("softnet-event-writer");
+			writer.setDaemon(true);
+			writer.start();
+			eventWriter = writer;
+		}
+		finally
+		{
+			writeLock.unlock();
+		}
+	}
+
 	public void onEndpointClosed()
 	{
-		synchronized(mutex)
+		EventWriter writer = eventWriter;
+		if(writer != null)
+		{
+			writer.shutdown();
+			eventWriter = null;
+		}
+		
+		writeLock.lock();
+		try
 		{
 			isClosed = true;
 			status = StatusEnum.Disconnected;
@@ -337,6 +505,10 @@ class EventController
 			resetDeliveryAgents();
 			resetSuccessiveDeliveryAgent();
 		}
+		finally
+		{
+			writeLock.unlock();
+		}
 	}
 
 	public void addEventListener(ServiceEventListener listener)
@@ -355,399 +527,500 @@ class EventController
 		}
 	}	
 	
+	private void awaitChannelWritable()
+	{
+		Channel channel;
+		readLock.lock();
+		try
+		{
+			if(status != StatusEnum.Online)
+				return;
+			channel = this.channel;
+		}
+		finally
+		{
+			readLock.unlock();
+		}
+		channel.awaitWritable();
+	}
+	
 	public void raiseEvent(ReplacingEvent replacingEvent)
 	{
-		synchronized(mutex)
+		raiseEvent(replacingEvent, null);
+	}
+
+	public void raiseEvent(ReplacingEvent replacingEvent, Acceptor<Boolean> callback)
+	{
+		EventWriter writer = eventWriter;
+		if(writer != null)
 		{
-			if(isClosed) return;
-			
-			if(isInitialized == false)
-				throw new IllegalStateException("The persistence is not set.");
-								
-			if(status == StatusEnum.Online)
-			{				
-				DeliveryAgent deliveryAgent = findDeliveryAgent(1, replacingEvent.name);
-				if(deliveryAgent == null)
-					throw new IllegalArgumentException(String.format("The event name '%s' is illegal.", replacingEvent.name));
+			validateEvent(1, replacingEvent.name);
+			writer.enqueue(new PendingEvent(replacingEvent, callback));
+			return;
+		}
+
+		awaitChannelWritable();
+		boolean isStored = storeEvent(replacingEvent);
+		if(callback != null)
+			invokeCallback(callback, isStored);
+	}
+
+	private boolean storeEvent(ReplacingEvent replacingEvent)
+	{
+		while(true)
+		{
+			ServicePersistence failedPersistence;
+			PersistenceSoftnetException failure;
+			readLock.lock();
+			try
+			{
+				if(isClosed) return false;
 				
-				if(servicePersistence.isInCacheMode())
-				{					
-					try
+				if(isInitialized == false)
+					throw new IllegalStateException("The persistence is not set.");
+				
+				failedPersistence = servicePersistence;
+				try
+				{
+					if(status == StatusEnum.Online)
 					{
-						try
-						{
-							servicePersistence.cache(replacingEvent);
-						}		
-						catch(PersistenceIOSoftnetException ex)
-						{
-							servicePersistence.close();
-							resetDeliveryAgents();
-							raisePersistenceFailedEvent(ex);
-							
-							servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity); 
-							((ServiceMemoryPersistence)servicePersistence).cache(replacingEvent);
-							channel.send(encodeMessage_NewStorageUid(servicePersistence.getUid()));
-						}
+						DeliveryAgent deliveryAgent = findDeliveryAgent(1, replacingEvent.name);
+						if(deliveryAgent == null)
+							throw new IllegalArgumentException(String.format("The event name '%s' is illegal.", replacingEvent.name));
 						
-						if(deliveryAgent.instanceUid == null)
+						if(servicePersistence.isInCacheMode())
 						{
-							Acceptor<Object> acceptor = new Acceptor<Object>()
+							synchronized(deliveryAgent)
 							{
-								public void accept(Object state) { verifyEventDelivery(state); }
-							};
-							deliveryAgent.task = new ScheduledTask(acceptor, deliveryAgent);
-							deliveryAgent.expirationTime = SystemClock.seconds() + Constants.EventDeliverySeconds;							
-							deliveryAgent.instanceUid = replacingEvent.uid;
-
-							scheduler.add(deliveryAgent.task, Constants.EventDeliverySeconds);							
-							channel.send(encodeMessage_ReplacingEvent(replacingEvent, deliveryAgent.index));
+								servicePersistence.cache(replacingEvent);
+								
+								if(deliveryAgent.instanceUids.isEmpty())
+								{
+									deliveryAgent.expirationTime = SystemClock.milliSeconds() + roundTripEstimator.getTimeoutMillis();
+									deliveryAgent.addInstance(replacingEvent.uid);
+									
+									scheduleDeliveryCheck(deliveryAgent, roundTripEstimator.getTimeoutMillis());
+									channel.sendDiscardable(encodeMessage_ReplacingEvent(replacingEvent, deliveryAgent.index));
+								}
+							}
 						}
-					}
-					catch(PersistenceStorageFullSoftnetException ex)
-					{
-						raisePersistenceFailedEvent(ex);						
-					}
-				}
-				else
-				{
-					try
-					{
-						try
+						else
 						{
 							servicePersistence.save(replacingEvent);
-						}		
-						catch(PersistenceIOSoftnetException ex)
-						{
-							servicePersistence.close();
-							resetSuccessiveDeliveryAgent();							
-							raisePersistenceFailedEvent(ex);
-
-							servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity); 
-							((ServiceMemoryPersistence)servicePersistence).cache(replacingEvent);
-							channel.send(encodeMessage_NewStorageUid(servicePersistence.getUid()));
-							
-							Acceptor<Object> acceptor = new Acceptor<Object>()
-							{
-								public void accept(Object state) { verifyEventDelivery(state); }
-							};
-							deliveryAgent.task = new ScheduledTask(acceptor, deliveryAgent);
-							deliveryAgent.expirationTime = SystemClock.seconds() + Constants.EventDeliverySeconds;							
-							deliveryAgent.instanceUid = replacingEvent.uid;
-
-							scheduler.add(deliveryAgent.task, Constants.EventDeliverySeconds);							
-							channel.send(encodeMessage_ReplacingEvent(replacingEvent, deliveryAgent.index));
 						}
 					}
-					catch(PersistenceStorageFullSoftnetException ex)
-					{
-						raisePersistenceFailedEvent(ex);
-					}
-				}
-			}
-			else
-			{
-				if(validateEventName(replacingEvent.name) == false)
-					throw new IllegalArgumentException(String.format("The event name '%s' is illegal.", replacingEvent.name));
-				
-				try
-				{
-					try
+					else
 					{
+						if(validateEventName(replacingEvent.name) == false)
+							throw new IllegalArgumentException(String.format("The event name '%s' is illegal.", replacingEvent.name));
+						
 						servicePersistence.save(replacingEvent);
-					}		
-					catch(PersistenceIOSoftnetException ex)
-					{
-						servicePersistence.close();
-						raisePersistenceFailedEvent(ex);
-
-						servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity); 
-						servicePersistence.setStorageMode();
-						((ServiceMemoryPersistence)servicePersistence).save(replacingEvent);												
 					}
+					return true;
 				}
 				catch(PersistenceStorageFullSoftnetException ex)
 				{
 					raisePersistenceFailedEvent(ex);
+					return false;
+				}
+				catch(PersistenceIOSoftnetException ex)
+				{
+					failure = ex;
 				}
 			}
+			finally
+			{
+				readLock.unlock();
+			}
+			recoverPersistence(failedPersistence, failure);
 		}
 	}
-	
+
 	public void raiseEvent(QueueingEvent queueingEvent)
 	{
-		synchronized(mutex)
+		raiseEvent(queueingEvent, null);
+	}
+
+	public void raiseEvent(QueueingEvent queueingEvent, Acceptor<Boolean> callback)
+	{
+		EventWriter writer = eventWriter;
+		if(writer != null)
 		{
-			if(isClosed) return;			
-			
-			if(isInitialized == false)
-				throw new IllegalStateException("The persistence is not set.");
+			validateEvent(2, queueingEvent.name);
+			writer.enqueue(new PendingEvent(queueingEvent, callback));
+			return;
+		}
 
-			if(status == StatusEnum.Online)
-			{				
-				DeliveryAgent deliveryAgent = findDeliveryAgent(2, queueingEvent.name);
-				if(deliveryAgent == null)
-					throw new IllegalArgumentException(String.format("The event name '%s' is illegal.", queueingEvent.name));
+		awaitChannelWritable();
+		boolean isStored = storeEvent(queueingEvent);
+		if(callback != null)
+			invokeCallback(callback, isStored);
+	}
+
+	private boolean storeEvent(QueueingEvent queueingEvent)
+	{
+		while(true)
+		{
+			ServicePersistence failedPersistence;
+			PersistenceSoftnetException failure;
+			readLock.lock();
+			try
+			{
+				if(isClosed) return false;
 				
-				if(servicePersistence.isInCacheMode())
+				if(isInitialized == false)
+					throw new IllegalStateException("The persistence is not set.");
+				
+				failedPersistence = servicePersistence;
+				try
 				{
-					try
+					if(status == StatusEnum.Online)
 					{
-						try
-						{
-							servicePersistence.cache(queueingEvent);
-						}		
-						catch(PersistenceIOSoftnetException ex)
-						{
-							servicePersistence.close();
-							resetDeliveryAgents();
-							raisePersistenceFailedEvent(ex);
-							
-							servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity); 
-							((ServiceMemoryPersistence)servicePersistence).cache(queueingEvent);
-							channel.send(encodeMessage_NewStorageUid(servicePersistence.getUid()));
-						}
+						DeliveryAgent deliveryAgent = findDeliveryAgent(2, queueingEvent.name);
+						if(deliveryAgent == null)
+							throw new IllegalArgumentException(String.format("The event name '%s' is illegal.", queueingEvent.name));
 						
-						if(deliveryAgent.instanceUid == null)
+						if(servicePersistence.isInCacheMode())
 						{
-							Acceptor<Object> acceptor = new Acceptor<Object>()
+							synchronized(deliveryAgent)
 							{
-								public void accept(Object state) { verifyEventDelivery(state); }
-							};
-							deliveryAgent.task = new ScheduledTask(acceptor, deliveryAgent);
-							deliveryAgent.expirationTime = SystemClock.seconds() + Constants.EventDeliverySeconds;							
-							deliveryAgent.instanceUid = queueingEvent.uid;
-
-							scheduler.add(deliveryAgent.task, Constants.EventDeliverySeconds);
-							channel.send(encodeMessage_QueueingEvent(queueingEvent, deliveryAgent.index));
+								servicePersistence.cache(queueingEvent);
+								
+								if(deliveryAgent.instanceUids.isEmpty())
+								{
+									deliveryAgent.expirationTime = SystemClock.milliSeconds() + roundTripEstimator.getTimeoutMillis();
+									deliveryAgent.addInstance(queueingEvent.uid);
+									
+									scheduleDeliveryCheck(deliveryAgent, roundTripEstimator.getTimeoutMillis());
+									channel.send(encodeMessage_QueueingEvent(queueingEvent, deliveryAgent.index));
+								}
+								else if(deliveryAgent.instanceUids.size() < getDeliveryWindow(deliveryAgent))
+								{
+									deliveryAgent.addInstance(queueingEvent.uid);
+									channel.send(encodeMessage_QueueingEvent(queueingEvent, deliveryAgent.index));
+								}
+							}
 						}
-					}
-					catch(PersistenceStorageFullSoftnetException ex)
-					{
-						raisePersistenceFailedEvent(ex);
-					}					
-				}
-				else
-				{
-					try
-					{
-						try
+						else
 						{
 							servicePersistence.save(queueingEvent);
-						}		
-						catch(PersistenceIOSoftnetException ex)
-						{
-							servicePersistence.close();
-							resetSuccessiveDeliveryAgent();							
-							raisePersistenceFailedEvent(ex);
-
-							servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity); 
-							((ServiceMemoryPersistence)servicePersistence).cache(queueingEvent);
-							channel.send(encodeMessage_NewStorageUid(servicePersistence.getUid()));
-							
-							Acceptor<Object> acceptor = new Acceptor<Object>()
-							{
-								public void accept(Object state) { verifyEventDelivery(state); }
-							};
-							deliveryAgent.task = new ScheduledTask(acceptor, deliveryAgent);
-							deliveryAgent.expirationTime = SystemClock.seconds() + Constants.EventDeliverySeconds;							
-							deliveryAgent.instanceUid = queueingEvent.uid;
-
-							scheduler.add(deliveryAgent.task, Constants.EventDeliverySeconds);							
-							channel.send(encodeMessage_QueueingEvent(queueingEvent, deliveryAgent.index));
 						}
 					}
-					catch(PersistenceStorageFullSoftnetException ex)
-					{
-						raisePersistenceFailedEvent(ex);
-					}
-				}
-			}
-			else
-			{
-				if(validateEventName(queueingEvent.name) == false)
-					throw new IllegalArgumentException(String.format("The event name '%s' is illegal.", queueingEvent.name));
-				
-				try
-				{
-					try
-					{
-						servicePersistence.save(queueingEvent);
-					}		
-					catch(PersistenceIOSoftnetException ex)
+					else
 					{
-						servicePersistence.close();
-						raisePersistenceFailedEvent(ex);
+						if(validateEventName(queueingEvent.name) == false)
+							throw new IllegalArgumentException(String.format("The event name '%s' is illegal.", queueingEvent.name));
 						
-						servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity); 
-						servicePersistence.setStorageMode();
-						((ServiceMemoryPersistence)servicePersistence).save(queueingEvent);
+						servicePersistence.save(queueingEvent);
 					}
+					return true;
 				}
 				catch(PersistenceStorageFullSoftnetException ex)
 				{
 					raisePersistenceFailedEvent(ex);
+					return false;
+				}
+				catch(PersistenceIOSoftnetException ex)
+				{
+					failure = ex;
 				}
 			}
+			finally
+			{
+				readLock.unlock();
+			}
+			recoverPersistence(failedPersistence, failure);
 		}
 	}
 
-	public void raiseEvent(PrivateEvent privateEvent)
+	public void raiseEvents(Collection<QueueingEvent> queueingEvents)
+	{
+		raiseEvents(queueingEvents, null);
+	}
+
+	public void raiseEvents(Collection<QueueingEvent> queueingEvents, Acceptor<Integer> callback)
 	{
-		synchronized(mutex)
+		ArrayList<QueueingEvent> events = new ArrayList<QueueingEvent>(queueingEvents);
+		EventWriter writer = eventWriter;
+		if(writer != null)
 		{
-			if(isClosed) return;
-								
 			if(isInitialized == false)
 				throw new IllegalStateException("The persistence is not set.");
+			findDeliveryAgents(events);
+			writer.enqueue(new PendingEvent(events, callback));
+			return;
+		}
 
-			if(status == StatusEnum.Online)
-			{		
-				DeliveryAgent deliveryAgent = findDeliveryAgent(4, privateEvent.name);
-				if(deliveryAgent == null)
-					throw new IllegalArgumentException(String.format("The event name '%s' is illegal.", privateEvent.name));
+		awaitChannelWritable();
+		int storedCount = storeEvents(events);
+		if(callback != null)
+			invokeCallback(callback, storedCount);
+	}
 
-				if(servicePersistence.isInCacheMode())
+	private int storeEvents(List<QueueingEvent> queueingEvents)
+	{
+		DeliveryAgent[] agents = findDeliveryAgents(queueingEvents);
+		if(queueingEvents.isEmpty())
+			return 0;
+		
+		while(true)
+		{
+			ServicePersistence failedPersistence;
+			PersistenceSoftnetException failure;
+			readLock.lock();
+			try
+			{
+				if(isClosed) return 0;
+				
+				if(isInitialized == false)
+					throw new IllegalStateException("The persistence is not set.");
+				
+				failedPersistence = servicePersistence;
+				try
 				{
-					try
-					{
-						try
-						{
-							servicePersistence.cache(privateEvent);
-						}		
-						catch(PersistenceIOSoftnetException ex)
-						{
-							servicePersistence.close();
-							resetDeliveryAgents();
-							raisePersistenceFailedEvent(ex);
-
-							servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity); 
-							((ServiceMemoryPersistence)servicePersistence).cache(privateEvent);
-							channel.send(encodeMessage_NewStorageUid(servicePersistence.getUid()));
-						}
-						
-						if(deliveryAgent.instanceUid == null)
-						{
-							Acceptor<Object> acceptor = new Acceptor<Object>()
-							{
-								public void accept(Object state) { verifyEventDelivery(state); }
-							};
-							deliveryAgent.task = new ScheduledTask(acceptor, deliveryAgent);
-							deliveryAgent.expirationTime = SystemClock.seconds() + Constants.EventDeliverySeconds;							
-							deliveryAgent.instanceUid = privateEvent.uid;
-
-							scheduler.add(deliveryAgent.task, Constants.EventDeliverySeconds);							
-							channel.send(encodeMessage_PrivateEvent(privateEvent, deliveryAgent.index));
-						}						
-					}
-					catch(PersistenceStorageFullSoftnetException ex)
-					{
-						raisePersistenceFailedEvent(ex);
-					}					
+					int storedCount;
+					if(status == StatusEnum.Online && servicePersistence.isInCacheMode())
+						storedCount = cacheEvents(queueingEvents, agents, 0);
+					else
+						storedCount = saveEvents(queueingEvents);
+					
+					if(storedCount < queueingEvents.size())
+						raisePersistenceFailedEvent(new PersistenceStorageFullSoftnetException(String.format("The persistence storage is full. %d of %d events have been stored.", storedCount, queueingEvents.size())));
+					return storedCount;
 				}
-				else
+				catch(PersistenceIOSoftnetException ex)
 				{
-					try
-					{
-						try
-						{
-							servicePersistence.save(privateEvent);
-						}		
-						catch(PersistenceIOSoftnetException ex)
-						{
-							servicePersistence.close();
-							resetSuccessiveDeliveryAgent();
-							raisePersistenceFailedEvent(ex);
-							
-							servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity); 
-							((ServiceMemoryPersistence)servicePersistence).cache(privateEvent);
-							channel.send(encodeMessage_NewStorageUid(servicePersistence.getUid()));
-							
-							Acceptor<Object> acceptor = new Acceptor<Object>()
-							{
-								public void accept(Object state) { verifyEventDelivery(state); }
-							};
-							deliveryAgent.task = new ScheduledTask(acceptor, deliveryAgent);
-							deliveryAgent.expirationTime = SystemClock.seconds() + Constants.EventDeliverySeconds;							
-							deliveryAgent.instanceUid = privateEvent.uid;
-
-							scheduler.add(deliveryAgent.task, Constants.EventDeliverySeconds);							
-							channel.send(encodeMessage_PrivateEvent(privateEvent, deliveryAgent.index));
-						}
-					}
-					catch(PersistenceStorageFullSoftnetException ex)
-					{
-						raisePersistenceFailedEvent(ex);
-					}
+					failure = ex;
 				}
 			}
-			else
+			finally
+			{
+				readLock.unlock();
+			}
+			recoverPersistence(failedPersistence, failure);
+		}
+	}
+
+	private int cacheEvents(List<QueueingEvent> queueingEvents, DeliveryAgent[] agents, int lockedAgents) throws PersistenceIOSoftnetException
+	{
+		if(lockedAgents < agents.length)
+		{
+			synchronized(agents[lockedAgents])
 			{
-				if(validateEventName(privateEvent.name) == false)
-					throw new IllegalArgumentException(String.format("The event name '%s' is illegal.", privateEvent.name));
+				return cacheEvents(queueingEvents, agents, lockedAgents + 1);
+			}
+		}
+		
+		int storedCount = 0;
+		if(servicePersistence instanceof BatchServicePersistence)
+		{
+			storedCount = ((BatchServicePersistence)servicePersistence).cache(queueingEvents);
+		}
+		else
+		{
+			try
+			{
+				for(QueueingEvent queueingEvent: queueingEvents)
+				{
+					servicePersistence.cache(queueingEvent);
+					storedCount++;
+				}
+			}
+			catch(PersistenceStorageFullSoftnetException ex) {}
+		}
+		
+		for(int i = 0; i < storedCount; i++)
+		{
+			QueueingEvent queueingEvent = queueingEvents.get(i);
+			DeliveryAgent deliveryAgent = deliveryAgentIndex.get(queueingEvent.name);
+			if(deliveryAgent.instanceUids.isEmpty())
+			{
+				deliveryAgent.expirationTime = SystemClock.milliSeconds() + roundTripEstimator.getTimeoutMillis();
+				deliveryAgent.addInstance(queueingEvent.uid);
 				
+				scheduleDeliveryCheck(deliveryAgent, roundTripEstimator.getTimeoutMillis());
+				channel.send(encodeMessage_QueueingEvent(queueingEvent, deliveryAgent.index));
+			}
+			else if(deliveryAgent.instanceUids.size() < getDeliveryWindow(deliveryAgent))
+			{
+				deliveryAgent.addInstance(queueingEvent.uid);
+				channel.send(encodeMessage_QueueingEvent(queueingEvent, deliveryAgent.index));
+			}
+		}
+		return storedCount;
+	}
+
+	private int saveEvents(List<QueueingEvent> queueingEvents) throws PersistenceIOSoftnetException
+	{
+		if(servicePersistence instanceof BatchServicePersistence)
+			return ((BatchServicePersistence)servicePersistence).save(queueingEvents);
+		
+		int storedCount = 0;
+		try
+		{
+			for(QueueingEvent queueingEvent: queueingEvents)
+			{
+				servicePersistence.save(queueingEvent);
+				storedCount++;
+			}
+		}
+		catch(PersistenceStorageFullSoftnetException ex) {}
+		return storedCount;
+	}
+
+	private DeliveryAgent[] findDeliveryAgents(List<QueueingEvent> queueingEvents)
+	{
+		HashMap<String, DeliveryAgent> agents = new HashMap<String, DeliveryAgent>();
+		for(QueueingEvent queueingEvent: queueingEvents)
+		{
+			if(queueingEvent == null)
+				throw new IllegalArgumentException("The collection of events contains a null element.");
+			if(agents.containsKey(queueingEvent.name))
+				continue;
+			DeliveryAgent deliveryAgent = findDeliveryAgent(2, queueingEvent.name);
+			if(deliveryAgent == null)
+				throw new IllegalArgumentException(String.format("The event name '%s' is illegal.", queueingEvent.name));
+			agents.put(deliveryAgent.name, deliveryAgent);
+		}
+		
+		DeliveryAgent[] sortedAgents = agents.values().toArray(new DeliveryAgent[agents.size()]);
+		Arrays.sort(sortedAgents, new Comparator<DeliveryAgent>()
+		{
+			public int compare(DeliveryAgent x, DeliveryAgent y) { return x.index - y.index; }
+		});
+		return sortedAgents;
+	}
+
+	public void raiseEvent(PrivateEvent privateEvent)
+	{
+		raiseEvent(privateEvent, null);
+	}
+
+	public void raiseEvent(PrivateEvent privateEvent, Acceptor<Boolean> callback)
+	{
+		EventWriter writer = eventWriter;
+		if(writer != null)
+		{
+			validateEvent(4, privateEvent.name);
+			writer.enqueue(new PendingEvent(privateEvent, callback));
+			return;
+		}
+
+		awaitChannelWritable();
+		boolean isStored = storeEvent(privateEvent);
+		if(callback != null)
+			invokeCallback(callback, isStored);
+	}
+
+	private boolean storeEvent(PrivateEvent privateEvent)
+	{
+		while(true)
+		{
+			ServicePersistence failedPersistence;
+			PersistenceSoftnetException failure;
+			readLock.lock();
+			try
+			{
+				if(isClosed) return false;
+				
+				if(isInitialized == false)
+					throw new IllegalStateException("The persistence is not set.");
+				
+				failedPersistence = servicePersistence;
 				try
 				{
-					try
+					if(status == StatusEnum.Online)
 					{
-						servicePersistence.save(privateEvent);
-					}		
-					catch(PersistenceIOSoftnetException ex)
+						DeliveryAgent deliveryAgent = findDeliveryAgent(4, privateEvent.name);
+						if(deliveryAgent == null)
+							throw new IllegalArgumentException(String.format("The event name '%s' is illegal.", privateEvent.name));
+						
+						if(servicePersistence.isInCacheMode())
+						{
+							synchronized(deliveryAgent)
+							{
+								servicePersistence.cache(privateEvent);
+								
+								if(deliveryAgent.instanceUids.isEmpty())
+								{
+									deliveryAgent.expirationTime = SystemClock.milliSeconds() + roundTripEstimator.getTimeoutMillis();
+									deliveryAgent.addInstance(privateEvent.uid);
+									
+									scheduleDeliveryCheck(deliveryAgent, roundTripEstimator.getTimeoutMillis());
+									channel.send(encodeMessage_PrivateEvent(privateEvent, deliveryAgent.index));
+								}
+								else if(deliveryAgent.instanceUids.size() < getDeliveryWindow(deliveryAgent))
+								{
+									deliveryAgent.addInstance(privateEvent.uid);
+									channel.send(encodeMessage_PrivateEvent(privateEvent, deliveryAgent.index));
+								}
+							}
+						}
+						else
+						{
+							servicePersistence.save(privateEvent);
+						}
+					}
+					else
 					{
-						servicePersistence.close();
-						raisePersistenceFailedEvent(ex);
+						if(validateEventName(privateEvent.name) == false)
+							throw new IllegalArgumentException(String.format("The event name '%s' is illegal.", privateEvent.name));
 						
-						servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity); 
-						servicePersistence.setStorageMode();
-						((ServiceMemoryPersistence)servicePersistence).save(privateEvent);
+						servicePersistence.save(privateEvent);
 					}
+					return true;
 				}
 				catch(PersistenceStorageFullSoftnetException ex)
 				{
 					raisePersistenceFailedEvent(ex);
+					return false;
+				}
+				catch(PersistenceIOSoftnetException ex)
+				{
+					failure = ex;
 				}
 			}
+			finally
+			{
+				readLock.unlock();
+			}
+			recoverPersistence(failedPersistence, failure);
 		}
 	}
 
-	private void verifyEventDelivery()
+	private void verifySuccessiveDelivery(Object state)
 	{
-		synchronized(mutex)
+		DeliveryCheck deliveryCheck = (DeliveryCheck)state;
+		writeLock.lock();
+		try
 		{
 			if(status != StatusEnum.Online)
 				return;
-			if(successiveDeliveryAgent.instanceUid == null || servicePersistence.isInCacheMode())
+			if(successiveDeliveryAgent.task != deliveryCheck.task)
+				return;
+			if(successiveDeliveryAgent.instanceUids.isEmpty() || servicePersistence.isInCacheMode())
 				return;
 			
 			try
 			{
 				try
 				{
-					long currentTime = SystemClock.seconds();
+					long currentTime = SystemClock.milliSeconds();
 					
 					if(successiveDeliveryAgent.expirationTime <= currentTime)
 					{
-						ServiceEventPersistable sep = servicePersistence.peek();
-						if(sep == null || successiveDeliveryAgent.instanceUid.equals(sep.instanceUid) == false)
-							throw new PersistenceIllegalStateSoftnetException();
+						List<ServiceEventPersistable> instances = peekSuccessiveInstances();
+						successiveDeliveryAgent.cancelTiming();
+						roundTripEstimator.backOff();
 																		
-						Acceptor<Object> acceptor = new Acceptor<Object>()
-						{
-							public void accept(Object noData) { verifyEventDelivery(); }
-						};
-						successiveDeliveryAgent.task = new ScheduledTask(acceptor, null);
-						successiveDeliveryAgent.expirationTime = SystemClock.seconds() + Constants.EventDeliverySeconds;
-						scheduler.add(successiveDeliveryAgent.task, Constants.EventDeliverySeconds);
+						successiveDeliveryAgent.expirationTime = SystemClock.milliSeconds() + roundTripEstimator.getTimeoutMillis();
+						scheduleDeliveryCheck(successiveDeliveryAgent, roundTripEstimator.getTimeoutMillis());
 						
-						channel.send(encodeMessage_RegularEvent(sep, 0));
+						resendSuccessiveMessages(instances);
 					}
 					else
 					{
-						Acceptor<Object> acceptor = new Acceptor<Object>()
-						{
-							public void accept(Object noData) { verifyEventDelivery(); }
-						};
-						successiveDeliveryAgent.task = new ScheduledTask(acceptor, null);						
-						scheduler.add(successiveDeliveryAgent.task, successiveDeliveryAgent.expirationTime - currentTime);
+						scheduleDeliveryCheck(successiveDeliveryAgent, successiveDeliveryAgent.expirationTime - currentTime);
 					}
 				}
 				catch(PersistenceDataFormatSoftnetException ex)
@@ -761,165 +1034,221 @@ class EventController
 			{
 				servicePersistence.close();
 				resetSuccessiveDeliveryAgent();
-				servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity); 
+				servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity, memoryBasedStorageOffHeap); 
 				channel.send(encodeMessage_NewStorageUid(servicePersistence.getUid()));
 				raisePersistenceFailedEvent(ex);
 			}			
 		}
+		finally
+		{
+			writeLock.unlock();
+		}
 	}
 	
 	private void verifyEventDelivery(Object state)
 	{
-		DeliveryAgent deliveryAgent = (DeliveryAgent)state;
-		synchronized(mutex)
+		DeliveryCheck deliveryCheck = (DeliveryCheck)state;
+		DeliveryAgent deliveryAgent = (DeliveryAgent)deliveryCheck.inFlightInstances;
+		ServicePersistence failedPersistence;
+		PersistenceSoftnetException failure;
+		readLock.lock();
+		try
 		{
-			if(status != StatusEnum.Online)
-				return;
-			if(deliveryAgent.instanceUid == null || servicePersistence.isInStorageMode())
+			if(status != StatusEnum.Online || servicePersistence.isInStorageMode())
 				return;
-
-			try
+			
+			failedPersistence = servicePersistence;
+			synchronized(deliveryAgent)
 			{
+				if(deliveryAgent.task != deliveryCheck.task)
+					return;
+				if(deliveryAgent.instanceUids.isEmpty())
+					return;
+				
 				try
 				{
-					long currentTime = SystemClock.seconds();
+					long currentTime = SystemClock.milliSeconds();
 					
 					if(deliveryAgent.expirationTime <= currentTime)
 					{
-						ServiceEventPersistable sep = servicePersistence.peek(deliveryAgent.kind, deliveryAgent.name);							
-						if(sep == null || deliveryAgent.instanceUid.equals(sep.instanceUid) == false)
-							throw new PersistenceIllegalStateSoftnetException();
+						List<ServiceEventPersistable> instances = peekInstances(deliveryAgent);
+						deliveryAgent.cancelTiming();
+						roundTripEstimator.backOff();
 						
-						Acceptor<Object> acceptor = new Acceptor<Object>()
-						{
-							public void accept(Object state) { verifyEventDelivery(state); }
-						};
-						deliveryAgent.task = new ScheduledTask(acceptor, deliveryAgent);
-						deliveryAgent.expirationTime = SystemClock.seconds() + Constants.EventDeliverySeconds;
-						scheduler.add(deliveryAgent.task, Constants.EventDeliverySeconds);
+						deliveryAgent.expirationTime = SystemClock.milliSeconds() + roundTripEstimator.getTimeoutMillis();
+						scheduleDeliveryCheck(deliveryAgent, roundTripEstimator.getTimeoutMillis());
 						
-						channel.send(encodeMessage_RegularEvent(sep, deliveryAgent.index));
+						for(ServiceEventPersistable sep: instances)
+						{
+							if(channel.send(encodeMessage_RegularEvent(sep, deliveryAgent.index)) == false)
+								break;
+						}
 					}
 					else
 					{
-						Acceptor<Object> acceptor = new Acceptor<Object>()
-						{
-							public void accept(Object state) { verifyEventDelivery(state); }
-						};
-						deliveryAgent.task = new ScheduledTask(acceptor, deliveryAgent);						
-						scheduler.add(deliveryAgent.task, deliveryAgent.expirationTime - currentTime);
+						scheduleDeliveryCheck(deliveryAgent, deliveryAgent.expirationTime - currentTime);
 					}
+					return;
 				}
-				catch(PersistenceDataFormatSoftnetException ex)
+				catch(PersistenceIOSoftnetException | PersistenceDataFormatSoftnetException | PersistenceIllegalStateSoftnetException ex)
 				{
-					servicePersistence.reset();
-					resetDeliveryAgents();	
-					raisePersistenceFailedEvent(ex);
+					failure = ex;
 				}
 			}
-			catch(PersistenceIOSoftnetException | PersistenceIllegalStateSoftnetException ex)
-			{
-				servicePersistence.close();
-				resetDeliveryAgents();
-				servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity); 
-				channel.send(encodeMessage_NewStorageUid(servicePersistence.getUid()));
-				raisePersistenceFailedEvent(ex);
-			}
 		}
+		finally
+		{
+			readLock.unlock();
+		}
+		recoverPersistence(failedPersistence, failure);
 	}
 		
-	private void processMessage_EventAck(byte[] message, Channel channel) throws AsnException, SoftnetException
+	private void processMessage_EventAck(byte[] message, Channel channel) throws AsnException, FormatException, SoftnetException
 	{		
 		SequenceDecoder sequenceDecoder = ASNDecoder.Sequence(message, 2);		
 		int index = sequenceDecoder.Int32();
 		UUID instanceUid = sequenceDecoder.OctetStringToUUID();
 		sequenceDecoder.end();		
 		
-		if(servicePersistence.isInCacheMode())
+		if(acknowledgeCachedEvent(index, instanceUid, channel) == false)
+			acknowledgeStoredEvent(instanceUid, channel);
+	}
+
+	private void processMessage_EventBatchAck(byte[] message, Channel channel) throws AsnException, FormatException, SoftnetException
+	{		
+		SequenceDecoder sequenceDecoder = ASNDecoder.Sequence(message, 2);		
+		UUID instanceUid = sequenceDecoder.OctetStringToUUID();
+		sequenceDecoder.end();		
+		
+		acknowledgeStoredEvent(instanceUid, channel);
+	}
+
+	private void processMessage_IllegalEventName(byte[] message, Channel channel) throws AsnException, FormatException, SoftnetException
+	{
+		SequenceDecoder sequenceDecoder = ASNDecoder.Sequence(message, 2);		
+		int index = sequenceDecoder.Int32();
+		UUID instanceUid = sequenceDecoder.OctetStringToUUID();
+		sequenceDecoder.end();
+				
+		if(acknowledgeCachedEvent(index, instanceUid, channel) == false)
+			acknowledgeStoredEvent(instanceUid, channel);
+	}
+
+	private boolean acknowledgeCachedEvent(int index, UUID instanceUid, Channel channel) throws FormatException, SoftnetException
+	{
+		ServicePersistence failedPersistence;
+		PersistenceSoftnetException failure;
+		readLock.lock();
+		try
 		{
+			if(channel.isClosed())
+				return true;
+			if(status != StatusEnum.Online)
+				throw new FormatException();
+			if(servicePersistence.isInStorageMode())
+				return false;
+			
 			if(!(0 <= index && index < deliveryAgents.size()))
 				throw new InputDataFormatSoftnetException();
 			
 			DeliveryAgent deliveryAgent = deliveryAgents.get(index);
-			if(deliveryAgent.instanceUid == null)
-				return;
-			if(instanceUid.equals(deliveryAgent.instanceUid) == false)
-				return;
-						
-			try
+			failedPersistence = servicePersistence;
+			synchronized(deliveryAgent)
 			{
+				if(deliveryAgent.instanceUids.contains(instanceUid) == false)
+					return true;
+				
 				try
 				{
-					ServiceEventPersistable sep = servicePersistence.setAcknowledment(deliveryAgent.kind, deliveryAgent.name);
-					if(sep != null)
+					ServiceEventPersistable sep;
+					UUID acknowledgedUid;
+					do
 					{
-						deliveryAgent.instanceUid = sep.instanceUid;
-						deliveryAgent.expirationTime = SystemClock.seconds() + Constants.EventDeliverySeconds;
-						
+						acknowledgedUid = deliveryAgent.instanceUids.poll();
+						sep = servicePersistence.setAcknowledment(deliveryAgent.kind, deliveryAgent.name);
+					}
+					while(instanceUid.equals(acknowledgedUid) == false);
+					addRoundTripSample(deliveryAgent);
+					
+					if(sep != null && deliveryAgent.instanceUids.isEmpty())
+					{
+						deliveryAgent.addInstance(sep.instanceUid);
 						channel.send(encodeMessage_RegularEvent(sep, deliveryAgent.index));					
 					}
-					else
+					fillDeliveryWindow(deliveryAgent);
+					
+					if(deliveryAgent.instanceUids.isEmpty())
 					{
-						deliveryAgent.instanceUid = null;
 						deliveryAgent.task.cancel();
 						deliveryAgent.task = null;						
 					}
+					else
+					{
+						deliveryAgent.expirationTime = SystemClock.milliSeconds() + roundTripEstimator.getTimeoutMillis();
+						if(deliveryAgent.expirationTime < deliveryAgent.taskTime)
+						{
+							deliveryAgent.task.cancel();
+							scheduleDeliveryCheck(deliveryAgent, roundTripEstimator.getTimeoutMillis());
+						}
+					}
+					return true;
 				}
-				catch(PersistenceDataFormatSoftnetException ex)
+				catch(PersistenceIOSoftnetException | PersistenceDataFormatSoftnetException ex)
 				{
-					servicePersistence.reset();
-					resetDeliveryAgents();
-					raisePersistenceFailedEvent(ex);
+					failure = ex;
 				}
 			}
-			catch(PersistenceIOSoftnetException ex)
-			{
-				servicePersistence.close();
-				resetDeliveryAgents();
-				servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity); 
-				channel.send(encodeMessage_NewStorageUid(servicePersistence.getUid()));
-				raisePersistenceFailedEvent(ex);
-			}			
 		}
-		else
+		finally
 		{
-			if(successiveDeliveryAgent.instanceUid == null)
+			readLock.unlock();
+		}
+		recoverPersistence(failedPersistence, failure);
+		return true;
+	}
+
+	private void acknowledgeStoredEvent(UUID instanceUid, Channel channel) throws FormatException
+	{
+		writeLock.lock();
+		try
+		{
+			if(channel.isClosed())
+				return;
+			if(status != StatusEnum.Online)
+				throw new FormatException();
+			if(servicePersistence.isInCacheMode())
 				return;
-			if(instanceUid.equals(successiveDeliveryAgent.instanceUid) == false)
+			if(successiveDeliveryAgent.instanceUids.contains(instanceUid) == false)
 				return;
 			
-			successiveDeliveryAgent.instanceUid = null;
-			
 			try
 			{
 				try
 				{
-					servicePersistence.setAcknowledment();
+					if(servicePersistence instanceof BatchServicePersistence)
+						((BatchServicePersistence)servicePersistence).setAcknowledment(instanceUid);
+					else
+						servicePersistence.setAcknowledment();
+					while(instanceUid.equals(successiveDeliveryAgent.instanceUids.poll()) == false);
+					successiveDeliveryAgent.removeAcknowledgedMessages();
+					addRoundTripSample(successiveDeliveryAgent);
 					
-					while(servicePersistence.isInStorageMode())
-					{					
-						ServiceEventPersistable sep = servicePersistence.peek();
-						if(sep == null)
-							break;
-						if(validateEventName(sep.name))
-						{
-							successiveDeliveryAgent.instanceUid = sep.instanceUid;
-							successiveDeliveryAgent.expirationTime = SystemClock.seconds() + Constants.EventDeliverySeconds;
-							
-							channel.send(encodeMessage_RegularEvent(sep, 0));
-							return;
-						}
-						else
-						{
-							servicePersistence.setAcknowledment();
-						}
-					}
+					sendSuccessiveEvents();
 					
-					if(servicePersistence.isInCacheMode())
+					if(successiveDeliveryAgent.instanceUids.isEmpty())
 					{
 						successiveDeliveryAgent.task.cancel();
 						successiveDeliveryAgent.task = null;
 					}
+					else
+					{
+						successiveDeliveryAgent.expirationTime = SystemClock.milliSeconds() + roundTripEstimator.getTimeoutMillis();
+						if(successiveDeliveryAgent.expirationTime < successiveDeliveryAgent.taskTime)
+						{
+							successiveDeliveryAgent.task.cancel();
+							scheduleDeliveryCheck(successiveDeliveryAgent, roundTripEstimator.getTimeoutMillis());
+						}
+					}
 				}
 				catch(PersistenceDataFormatSoftnetException ex)
 				{
@@ -932,129 +1261,296 @@ class EventController
 			{
 				servicePersistence.close();
 				resetSuccessiveDeliveryAgent();
-				servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity); 
+				servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity, memoryBasedStorageOffHeap); 
 				channel.send(encodeMessage_NewStorageUid(servicePersistence.getUid()));
 				raisePersistenceFailedEvent(ex);
 			}
 		}
+		finally
+		{
+			writeLock.unlock();
+		}
 	}
 
-	private void processMessage_IllegalEventName(byte[] message) throws AsnException, SoftnetException
+	private void recoverPersistence(ServicePersistence failedPersistence, PersistenceSoftnetException ex)
 	{
-		SequenceDecoder sequenceDecoder = ASNDecoder.Sequence(message, 2);		
-		int index = sequenceDecoder.Int32();
-		UUID instanceUid = sequenceDecoder.OctetStringToUUID();
-		sequenceDecoder.end();
-				
-		if(servicePersistence.isInCacheMode())
+		writeLock.lock();
+		try
 		{
-			if(!(0 <= index && index < deliveryAgents.size()))
-				throw new InputDataFormatSoftnetException();
-			
-			DeliveryAgent deliveryAgent = deliveryAgents.get(index);
-			if(deliveryAgent.instanceUid == null)
-				return;
-			if(instanceUid.equals(deliveryAgent.instanceUid) == false)
+			if(isClosed || servicePersistence != failedPersistence)
 				return;
 			
-			try
+			resetDeliveryAgents();
+			resetSuccessiveDeliveryAgent();
+			if(ex instanceof PersistenceDataFormatSoftnetException)
 			{
 				try
-				{
-					ServiceEventPersistable sep = servicePersistence.setAcknowledment(deliveryAgent.kind, deliveryAgent.name);
-					if(sep != null)
-					{
-						deliveryAgent.instanceUid = sep.instanceUid;
-						deliveryAgent.expirationTime = SystemClock.seconds() + Constants.EventDeliverySeconds;
-						
-						channel.send(encodeMessage_RegularEvent(sep, deliveryAgent.index));					
-					}
-					else
-					{
-						deliveryAgent.instanceUid = null;
-						deliveryAgent.task.cancel();
-						deliveryAgent.task = null;
-					}
-				}
-				catch(PersistenceDataFormatSoftnetException ex)
 				{
 					servicePersistence.reset();
-					resetDeliveryAgents();
 					raisePersistenceFailedEvent(ex);
+					return;
+				}
+				catch(PersistenceIOSoftnetException ioEx)
+				{
+					ex = ioEx;
 				}
 			}
-			catch(PersistenceIOSoftnetException ex)
-			{
-				servicePersistence.close();
-				resetDeliveryAgents();
-				servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity); 
+			
+			servicePersistence.close();
+			raisePersistenceFailedEvent(ex);
+			servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity, memoryBasedStorageOffHeap); 
+			if(status == StatusEnum.Online)
 				channel.send(encodeMessage_NewStorageUid(servicePersistence.getUid()));
-				raisePersistenceFailedEvent(ex);
-			}
+			else
+				servicePersistence.setStorageMode();
 		}
-		else
+		finally
 		{
-			if(successiveDeliveryAgent.instanceUid == null)
-				return;
-			if(instanceUid.equals(successiveDeliveryAgent.instanceUid) == false)
-				return;
-			
-			successiveDeliveryAgent.instanceUid = null;
-			
-			try
+			writeLock.unlock();
+		}
+	}
+
+	private void sendSuccessiveEvents() throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException
+	{
+		if(servicePersistence instanceof BatchServicePersistence)
+		{
+			BatchServicePersistence batchPersistence = (BatchServicePersistence)servicePersistence;
+			while(servicePersistence.isInStorageMode())
 			{
-				try
+				int inFlight = successiveDeliveryAgent.instanceUids.size();
+				int freeMessages = eventDeliveryWindow - successiveDeliveryAgent.messageUids.size();
+				if(freeMessages <= 0)
+					return;
+				
+				int maxCount = eventBatchThreshold > 0 ? freeMessages * Constants.EventBatchMaxCount : freeMessages;
+				List<ServiceEventPersistable> batch = batchPersistence.peek(inFlight, maxCount, Integer.MAX_VALUE);
+				if(batch.isEmpty())
+					return;
+				
+				ArrayList<ServiceEventPersistable> pending = new ArrayList<ServiceEventPersistable>();
+				boolean skipped = false;
+				for(int i = 0; i < batch.size(); i++)
 				{
-					servicePersistence.setAcknowledment();
-					
-					while(servicePersistence.isInStorageMode())
-					{					
-						ServiceEventPersistable sep = servicePersistence.peek();
-						if(sep == null)
-							break;
-						if(validateEventName(sep.name))
+					ServiceEventPersistable sep = batch.get(i);
+					if(validateEventName(sep.name) == false)
+					{
+						if(inFlight == 0 && pending.isEmpty())
 						{
-							successiveDeliveryAgent.instanceUid = sep.instanceUid;
-							successiveDeliveryAgent.expirationTime = SystemClock.seconds() + Constants.EventDeliverySeconds;
-							
-							channel.send(encodeMessage_RegularEvent(sep, 0));
-							return;
+							batchPersistence.setAcknowledment(sep.instanceUid);
+							skipped = true;
 						}
-						else
-						{
-							servicePersistence.setAcknowledment();
-						}					
+						break;
 					}
-					
-					if(servicePersistence.isInCacheMode())
+					pending.add(sep);
+				}
+				
+				if(skipped)
+					continue;
+				
+				if(eventBatchThreshold > 0 && (pending.size() >= eventBatchThreshold || pending.size() > freeMessages))
+				{
+					int index = 0;
+					while(index < pending.size() && freeMessages > 0)
 					{
-						successiveDeliveryAgent.task.cancel();
-						successiveDeliveryAgent.task = null;
+						int count = 0;
+						int bytes = 0;
+						while(index + count < pending.size() && count < Constants.EventBatchMaxCount)
+						{
+							int size = getEncodedSize(pending.get(index + count));
+							if(count > 0 && bytes + size > Constants.EventBatchMaxBytes)
+								break;
+							bytes += size;
+							count++;
+						}
+						if(sendSuccessiveMessage(pending.subList(index, index + count)) == false)
+							return;
+						index += count;
+						freeMessages--;
 					}
 				}
-				catch(PersistenceDataFormatSoftnetException ex)
+				else
 				{
-					servicePersistence.reset();
-					resetSuccessiveDeliveryAgent();
-					raisePersistenceFailedEvent(ex);
+					for(int i = 0; i < pending.size() && i < freeMessages; i++)
+					{
+						if(sendSuccessiveMessage(pending.subList(i, i + 1)) == false)
+							return;
+					}
 				}
+				return;
 			}
-			catch(PersistenceIOSoftnetException ex)
-			{
-				servicePersistence.close();
-				resetSuccessiveDeliveryAgent();
-				servicePersistence = new ServiceMemoryPersistence(memoryBasedStorageCapacity); 
-				channel.send(encodeMessage_NewStorageUid(servicePersistence.getUid()));
-				raisePersistenceFailedEvent(ex);
+		}
+		else
+		{
+			while(servicePersistence.isInStorageMode())
+			{					
+				ServiceEventPersistable sep = servicePersistence.peek();
+				if(sep == null)
+					return;
+				if(validateEventName(sep.name))
+				{
+					sendSuccessiveMessage(Collections.singletonList(sep));
+					return;
+				}
+				servicePersistence.setAcknowledment();
 			}
 		}
 	}
 
-	private void processMessage_LastStorageUid(byte[] message) throws AsnException
+	private boolean sendSuccessiveMessage(List<ServiceEventPersistable> events)
 	{
-		SequenceDecoder sequenceDecoder = ASNDecoder.Sequence(message, 2);		
-		lastStorageUid = sequenceDecoder.OctetStringToUUID();
-		sequenceDecoder.end();		
+		for(ServiceEventPersistable sep: events)
+			successiveDeliveryAgent.addInstance(sep.instanceUid);
+		successiveDeliveryAgent.messageUids.add(events.get(events.size() - 1).instanceUid);
+		
+		if(events.size() == 1)
+			return channel.send(encodeMessage_RegularEvent(events.get(0), 0));
+		else
+			return channel.send(encodeMessage_EventBatch(events));
+	}
+
+	private void resendSuccessiveMessages(List<ServiceEventPersistable> instances)
+	{
+		Iterator<UUID> boundaries = successiveDeliveryAgent.messageUids.iterator();
+		UUID boundary = boundaries.next();
+		int first = 0;
+		for(int i = 0; i < instances.size(); i++)
+		{
+			if(instances.get(i).instanceUid.equals(boundary) == false)
+				continue;
+			boolean isSent;
+			if(i == first)
+				isSent = channel.send(encodeMessage_RegularEvent(instances.get(i), 0));
+			else
+				isSent = channel.send(encodeMessage_EventBatch(instances.subList(first, i + 1)));
+			if(isSent == false || boundaries.hasNext() == false)
+				return;
+			boundary = boundaries.next();
+			first = i + 1;
+		}
+	}
+
+	private List<ServiceEventPersistable> peekSuccessiveInstances() throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException, PersistenceIllegalStateSoftnetException
+	{
+		List<ServiceEventPersistable> instances;
+		if(servicePersistence instanceof BatchServicePersistence)
+		{
+			instances = ((BatchServicePersistence)servicePersistence).peek(0, Math.max(eventDeliveryWindow, successiveDeliveryAgent.instanceUids.size()), Integer.MAX_VALUE);
+		}
+		else
+		{
+			instances = new ArrayList<ServiceEventPersistable>(1);
+			ServiceEventPersistable sep = servicePersistence.peek();
+			if(sep != null)
+				instances.add(sep);
+		}
+		return matchInstances(instances, successiveDeliveryAgent.instanceUids);
+	}
+
+	private List<ServiceEventPersistable> peekInstances(DeliveryAgent deliveryAgent) throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException, PersistenceIllegalStateSoftnetException
+	{
+		List<ServiceEventPersistable> instances;
+		if(servicePersistence instanceof BatchServicePersistence)
+		{
+			instances = ((BatchServicePersistence)servicePersistence).peek(deliveryAgent.kind, deliveryAgent.name, 0, deliveryAgent.instanceUids.size());
+		}
+		else
+		{
+			instances = new ArrayList<ServiceEventPersistable>(1);
+			ServiceEventPersistable sep = servicePersistence.peek(deliveryAgent.kind, deliveryAgent.name);
+			if(sep != null)
+				instances.add(sep);
+		}
+		return matchInstances(instances, deliveryAgent.instanceUids);
+	}
+
+	private List<ServiceEventPersistable> matchInstances(List<ServiceEventPersistable> instances, ArrayDeque<UUID> instanceUids) throws PersistenceIllegalStateSoftnetException
+	{
+		if(instances.size() < instanceUids.size())
+			throw new PersistenceIllegalStateSoftnetException();
+		int index = 0;
+		for(UUID instanceUid: instanceUids)
+		{
+			if(instanceUid.equals(instances.get(index).instanceUid) == false)
+				throw new PersistenceIllegalStateSoftnetException();
+			index++;
+		}
+		return instances.subList(0, index);
+	}
+
+	private void fillDeliveryWindow(DeliveryAgent deliveryAgent) throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException
+	{
+		int inFlight = deliveryAgent.instanceUids.size();
+		int window = getDeliveryWindow(deliveryAgent);
+		if(inFlight == 0 || inFlight >= window)
+			return;
+		
+		List<ServiceEventPersistable> instances = ((BatchServicePersistence)servicePersistence).peek(deliveryAgent.kind, deliveryAgent.name, inFlight, window - inFlight);
+		for(ServiceEventPersistable sep: instances)
+		{
+			deliveryAgent.addInstance(sep.instanceUid);
+			if(channel.send(encodeMessage_RegularEvent(sep, deliveryAgent.index)) == false)
+				return;
+		}
+	}
+
+	private void scheduleDeliveryCheck(DeliveryAgent deliveryAgent, long delayMillis)
+	{
+		Acceptor<Object> acceptor = new Acceptor<Object>()
+		{
+			public void accept(Object state) { verifyEventDelivery(state); }
+		};
+		DeliveryCheck deliveryCheck = new DeliveryCheck(deliveryAgent);
+		deliveryCheck.task = new ScheduledTask(acceptor, deliveryCheck);
+		deliveryAgent.task = deliveryCheck.task;
+		deliveryAgent.taskTime = SystemClock.milliSeconds() + delayMillis;
+		scheduler.addMillis(deliveryAgent.task, delayMillis);
+	}
+
+	private void scheduleDeliveryCheck(SuccessiveDeliveryAgent successiveDeliveryAgent, long delayMillis)
+	{
+		Acceptor<Object> acceptor = new Acceptor<Object>()
+		{
+			public void accept(Object state) { verifySuccessiveDelivery(state); }
+		};
+		DeliveryCheck deliveryCheck = new DeliveryCheck(successiveDeliveryAgent);
+		deliveryCheck.task = new ScheduledTask(acceptor, deliveryCheck);
+		successiveDeliveryAgent.task = deliveryCheck.task;
+		successiveDeliveryAgent.taskTime = SystemClock.milliSeconds() + delayMillis;
+		scheduler.addMillis(successiveDeliveryAgent.task, delayMillis);
+	}
+
+	private void addRoundTripSample(InFlightInstances inFlightInstances)
+	{
+		long roundTrip = inFlightInstances.takeRoundTrip();
+		if(roundTrip >= 0)
+			roundTripEstimator.addSample(roundTrip);
+	}
+
+	private int getDeliveryWindow(DeliveryAgent deliveryAgent)
+	{
+		if(deliveryAgent.kind == 1 || (servicePersistence instanceof BatchServicePersistence) == false)
+			return 1;
+		return eventDeliveryWindow;
+	}
+
+	private void processMessage_LastStorageUid(byte[] message, Channel channel) throws AsnException, FormatException
+	{
+		writeLock.lock();
+		try
+		{
+			if(channel.isClosed())
+				return;
+			if(status != StatusEnum.Connected)
+				throw new FormatException();
+			
+			SequenceDecoder sequenceDecoder = ASNDecoder.Sequence(message, 2);		
+			lastStorageUid = sequenceDecoder.OctetStringToUUID();
+			sequenceDecoder.end();		
+		}
+		finally
+		{
+			writeLock.unlock();
+		}
 	}
 
 	private SoftnetMessage encodeMessage_ReplacingEvent(ReplacingEvent rEvent, int index)
@@ -1173,6 +1669,38 @@ class EventController
 		}
 	}
 	
+	private SoftnetMessage encodeMessage_EventBatch(List<ServiceEventPersistable> events)
+	{
+		ASNEncoder asnEncoder = new ASNEncoder();
+        SequenceEncoder asnSequence = asnEncoder.Sequence();
+        SequenceEncoder asnEvents = asnSequence.Sequence();
+        for(ServiceEventPersistable sep: events)
+        {
+        	SequenceEncoder asnEvent = asnEvents.Sequence();
+        	if(sep.kind == 1)
+        		asnEvent.Int32(sep.isNull ? Constants.Service.EventController.REPLACING_NULL_EVENT : Constants.Service.EventController.REPLACING_EVENT);
+        	else if(sep.kind == 2)
+        		asnEvent.Int32(Constants.Service.EventController.QUEUEING_EVENT);
+        	else
+        		asnEvent.Int32(Constants.Service.EventController.PRIVATE_EVENT);
+        	asnEvent.IA5String(sep.name);
+        	asnEvent.OctetString(sep.instanceUid);
+        	if(sep.kind == 4)
+        		asnEvent.Int64(sep.clientId);
+        	if(sep.argumentsEncoding != null)
+        		asnEvent.OctetString(1, sep.argumentsEncoding);
+        }
+        return MsgBuilder.Create(Constants.Service.EventController.ModuleId, Constants.Service.EventController.EVENT_BATCH, asnEncoder);
+	}
+
+	private int getEncodedSize(ServiceEventPersistable sep)
+	{
+		int size = 32 + sep.name.length();
+		if(sep.argumentsEncoding != null)
+			size += sep.argumentsEncoding.length + 6;
+		return size;
+	}
+	
 	private SoftnetMessage encodeMessage_NewStorageUid(UUID storageUid)
 	{
 		ASNEncoder asnEncoder = new ASNEncoder();
@@ -1183,37 +1711,25 @@ class EventController
 
 	private void onMessageReceived(byte[] message, Channel channel) throws AsnException, FormatException, SoftnetException
 	{
-		synchronized(mutex)
+		byte messageTag = message[1]; 
+		if(messageTag == Constants.Service.EventController.EVENT_ACK)
 		{
-			if(channel.isClosed()) 
-				return;
-			
-			byte messageTag = message[1]; 
-			if(status == StatusEnum.Online)
-			{	
-				if(messageTag == Constants.Service.EventController.EVENT_ACK)
-				{
-					processMessage_EventAck(message, channel);	
-				}								
-				else if(messageTag == Constants.Service.EventController.ILLEGAL_EVENT_NAME)
-				{
-					processMessage_IllegalEventName(message);
-				}
-				else
-					throw new FormatException();
-			}
-			else if(status == StatusEnum.Connected)
-			{
-				if(messageTag == Constants.Service.EventController.LAST_STORAGE_UID)
-				{
-					processMessage_LastStorageUid(message);
-				}
-				else
-					throw new FormatException();
-			}
-			else
-				throw new FormatException();
+			processMessage_EventAck(message, channel);	
+		}								
+		else if(messageTag == Constants.Service.EventController.ILLEGAL_EVENT_NAME)
+		{
+			processMessage_IllegalEventName(message, channel);
+		}
+		else if(messageTag == Constants.Service.EventController.EVENT_BATCH_ACK)
+		{
+			processMessage_EventBatchAck(message, channel);
 		}
+		else if(messageTag == Constants.Service.EventController.LAST_STORAGE_UID)
+		{
+			processMessage_LastStorageUid(message, channel);
+		}
+		else if(channel.isClosed() == false)
+			throw new FormatException();
 	}
 	
 	private void raisePersistenceFailedEvent(PersistenceSoftnetException ex)
@@ -1236,36 +1752,93 @@ class EventController
 		}
 	}
 	
-	private class DeliveryAgent
+	private class InFlightInstances
+	{
+		public ArrayDeque<UUID> instanceUids = new ArrayDeque<UUID>();
+		public long expirationTime;
+		public ScheduledTask task;
+		public long taskTime;
+		private UUID timedUid = null;
+		private long timedSendTime;
+		
+		public void addInstance(UUID instanceUid)
+		{
+			instanceUids.add(instanceUid);
+			if(timedUid == null)
+			{
+				timedUid = instanceUid;
+				timedSendTime = SystemClock.milliSeconds();
+			}
+		}
+		
+		public long takeRoundTrip()
+		{
+			if(timedUid == null || instanceUids.contains(timedUid))
+				return -1;
+			timedUid = null;
+			return SystemClock.milliSeconds() - timedSendTime;
+		}
+		
+		public void cancelTiming()
+		{
+			timedUid = null;
+		}
+		
+		public void clear()
+		{
+			instanceUids.clear();
+			timedUid = null;
+		}
+	}
+	
+	private class DeliveryCheck
+	{
+		public final InFlightInstances inFlightInstances;
+		public ScheduledTask task;
+		
+		public DeliveryCheck(InFlightInstances inFlightInstances)
+		{
+			this.inFlightInstances = inFlightInstances;
+		}
+	}
+	
+	private class DeliveryAgent extends InFlightInstances
 	{
 		public final String name;
 		public final int index;
 		public final int kind;
-		public UUID instanceUid;
-		public long expirationTime;
-		public ScheduledTask task;
 		
 		public DeliveryAgent(String name, int index, int kind)
 		{
 			this.name = name;
 			this.index = index;
 			this.kind = kind;
-			instanceUid = null;
 		}		
 	}
 	
-	private class SuccessiveDeliveryAgent
+	private class SuccessiveDeliveryAgent extends InFlightInstances
 	{
-		public UUID instanceUid;
-		public long expirationTime;
-		public ScheduledTask task;
+		public ArrayDeque<UUID> messageUids = new ArrayDeque<UUID>();
+		
+		public void removeAcknowledgedMessages()
+		{
+			while(messageUids.isEmpty() == false && instanceUids.contains(messageUids.peek()) == false)
+				messageUids.poll();
+		}
+		
+		@Override
+		public void clear()
+		{
+			super.clear();
+			messageUids.clear();
+		}
 	}
 	
 	private void resetDeliveryAgents()
 	{
 		for(DeliveryAgent agent: deliveryAgents)
 		{
-			agent.instanceUid = null;
+			agent.clear();
 			if(agent.task != null)
 			{
 				agent.task.cancel();
@@ -1276,7 +1849,7 @@ class EventController
 	
 	private void resetSuccessiveDeliveryAgent()
 	{
-		successiveDeliveryAgent.instanceUid = null;
+		successiveDeliveryAgent.clear();
 		if(successiveDeliveryAgent.task != null)
 		{
 			successiveDeliveryAgent.task.cancel();
@@ -1284,21 +1857,228 @@ class EventController
 		}
 	}
 	
+	private void validateEvent(int kind, String name)
+	{
+		if(isInitialized == false)
+			throw new IllegalStateException("The persistence is not set.");
+		if(findDeliveryAgent(kind, name) == null)
+			throw new IllegalArgumentException(String.format("The event name '%s' is illegal.", name));
+	}
+
+	private void invokeCallback(final Acceptor<Boolean> callback, final boolean isStored)
+	{
+		serviceEndpoint.threadPool.execute(new Runnable()
+		{
+			public void run()
+			{
+				callback.accept(isStored);
+			}
+		});
+	}
+
+	private void invokeCallback(final Acceptor<Integer> callback, final int storedCount)
+	{
+		serviceEndpoint.threadPool.execute(new Runnable()
+		{
+			public void run()
+			{
+				callback.accept(storedCount);
+			}
+		});
+	}
+
 	private boolean validateEventName(String name)
 	{
-		for(String eventName: regularEvents)
-			if(eventName.equals(name))
-				return true;
-		return false;		
+		return deliveryAgentIndex.containsKey(name);
 	}
 	
 	private DeliveryAgent findDeliveryAgent(int kind, String name)
 	{
-		for(DeliveryAgent aEvent: deliveryAgents)
-			if(aEvent.kind == kind && aEvent.name.equals(name))
-				return aEvent;
+		DeliveryAgent agent = deliveryAgentIndex.get(name);
+		if(agent != null && agent.kind == kind)
+			return agent;
 		return null;
 	}
+
+	private class PendingEvent
+	{
+		public final Object event;
+		public final Acceptor<Boolean> callback;
+		public final List<QueueingEvent> events;
+		public final Acceptor<Integer> batchCallback;
+		public PendingEvent(Object event, Acceptor<Boolean> callback)
+		{
+			this.event = event;
+			this.callback = callback;
+			this.events = null;
+			this.batchCallback = null;
+		}
+		public PendingEvent(List<QueueingEvent> events, Acceptor<Integer> batchCallback)
+		{
+			this.event = null;
+			this.callback = null;
+			this.events = events;
+			this.batchCallback = batchCallback;
+		}
+	}
+
+	private void rejectPendingEvent(PendingEvent pendingEvent)
+	{
+		if(pendingEvent.callback != null)
+			invokeCallback(pendingEvent.callback, false);
+		else if(pendingEvent.batchCallback != null)
+			invokeCallback(pendingEvent.batchCallback, 0);
+	}
+
+	private class EventWriter extends Thread
+	{
+		private static final int BatchSize = 256;
+		
+		private final MpscRing<PendingEvent> ring;
+		private final AtomicInteger activeProducers = new AtomicInteger(0);
+		private volatile boolean isWaiting = false;
+		private volatile boolean isShutdown = false;
+		
+		public EventWriter(int ringCapacity)
+		{
+			ring = new MpscRing<PendingEvent>(ringCapacity);
+		}
+		
+		public void enqueue(PendingEvent pendingEvent)
+		{
+			activeProducers.incrementAndGet();
+			try
+			{
+				if(isShutdown)
+				{
+					rejectPendingEvent(pendingEvent);
+					return;
+				}
+				while(ring.offer(pendingEvent) == false)
+				{
+					if(isWaiting)
+						LockSupport.unpark(this);
+					LockSupport.parkNanos(100000);
+				}
+			}
+			finally
+			{
+				activeProducers.decrementAndGet();
+			}
+			if(isWaiting)
+				LockSupport.unpark(this);
+		}
+		
+		public void shutdown()
+		{
+			isShutdown = true;
+			LockSupport.unpark(this);
+			if(Thread.currentThread() == this)
+				return;
+			try
+			{
+				join();
+			}
+			catch(InterruptedException ex)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+		
+		@Override
+		public void run()
+		{
+			PendingEvent[] batch = new PendingEvent[BatchSize];
+			int[] results = new int[BatchSize];
+			while(true)
+			{
+				int count = 0;
+				PendingEvent pendingEvent;
+				while(count < BatchSize && (pendingEvent = ring.poll()) != null)
+					batch[count++] = pendingEvent;
+				
+				if(count == 0)
+				{
+					if(isShutdown && activeProducers.get() == 0 && ring.isEmpty())
+						return;
+					isWaiting = true;
+					if(ring.peek() == null)
+						LockSupport.parkNanos(this, isShutdown ? 100000 : 100000000);
+					isWaiting = false;
+					continue;
+				}
+				
+				awaitChannelWritable();
+				int index = 0;
+				while(index < count)
+				{
+					int end = index;
+					while(end < count && (batch[end].events != null || batch[end].event instanceof QueueingEvent))
+						end++;
+					if(end > index)
+					{
+						storeQueueingEvents(batch, results, index, end);
+						index = end;
+						continue;
+					}
+					
+					try
+					{
+						Object event = batch[index].event;
+						if(event instanceof ReplacingEvent)
+							results[index] = storeEvent((ReplacingEvent)event) ? 1 : 0;
+						else
+							results[index] = storeEvent((PrivateEvent)event) ? 1 : 0;
+					}
+					catch(RuntimeException ex)
+					{
+						results[index] = 0;
+						raisePersistenceFailedEvent(new PersistenceSoftnetException(String.format("The write-behind event writer failed to store an event: %s", ex)));
+					}
+					index++;
+				}
+				
+				for(int i = 0; i < count; i++)
+				{
+					if(batch[i].callback != null)
+						invokeCallback(batch[i].callback, results[i] > 0);
+					else if(batch[i].batchCallback != null)
+						invokeCallback(batch[i].batchCallback, results[i]);
+					batch[i] = null;
+				}
+			}
+		}
+		
+		private void storeQueueingEvents(PendingEvent[] batch, int[] results, int from, int to)
+		{
+			ArrayList<QueueingEvent> queueingEvents = new ArrayList<QueueingEvent>(to - from);
+			for(int i = from; i < to; i++)
+			{
+				if(batch[i].events != null)
+					queueingEvents.addAll(batch[i].events);
+				else
+					queueingEvents.add((QueueingEvent)batch[i].event);
+			}
+			
+			int storedCount;
+			try
+			{
+				storedCount = storeEvents(queueingEvents);
+			}
+			catch(RuntimeException ex)
+			{
+				storedCount = 0;
+				raisePersistenceFailedEvent(new PersistenceSoftnetException(String.format("The write-behind event writer failed to store an event: %s", ex)));
+			}
+			
+			for(int i = from; i < to; i++)
+			{
+				int size = batch[i].events != null ? batch[i].events.size() : 1;
+				results[i] = Math.min(storedCount, size);
+				storedCount -= results[i];
+			}
+		}
+	}
 }
 
 
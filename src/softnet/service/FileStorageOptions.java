@@ -0,0 +1,10 @@
+package softnet.service;
+
+public class FileStorageOptions
+{
+	public boolean memoryMapped = false;
+	public StorageDurability durability = StorageDurability.Sync;
+	public long groupCommitIntervalMillis = 10;
+	public int groupCommitRecords = 256;
+	public long checkpointIntervalBytes = 1048576;
+}
@@ -0,0 +1,264 @@
+package softnet.service;
+
+import java.io.IOException;
+
+class GroupCommitStorageFile implements StorageFile
+{
+	private StorageFile file;
+	private long commitIntervalMillis;
+	private int commitRecords;
+
+	private Object mutex = new Object();
+	private byte[] pending;
+	private int pendingSize = 0;
+	private long pendingPosition = 0;
+	private int pendingRecords = 0;
+	private boolean isModified = false;
+	private boolean isClosed = false;
+	private IOException failure = null;
+	private WriterThread writerThread;
+
+	public GroupCommitStorageFile(StorageFile file, long commitIntervalMillis, int commitRecords)
+	{
+		if(commitIntervalMillis < 1)
+			throw new IllegalArgumentException("The value of 'commitIntervalMillis' must be greater than 0.");
+		if(commitRecords < 1)
+			throw new IllegalArgumentException("The value of 'commitRecords' must be greater than 0.");
+
+		this.file = file;
+		this.commitIntervalMillis = commitIntervalMillis;
+		this.commitRecords = commitRecords;
+		pending = new byte[4096];
+
+		writerThread = new WriterThread();
+		writerThread.setName("softnet-persistence-writer");
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	public long length() throws IOException
+	{
+		synchronized(mutex)
+		{
+			checkState();
+			return Math.max(file.length(), pendingPosition + pendingSize);
+		}
+	}
+
+	public void setLength(long newLength) throws IOException
+	{
+		synchronized(mutex)
+		{
+			checkState();
+			if(pendingSize > 0 && newLength <= pendingPosition)
+			{
+				pendingSize = 0;
+				pendingRecords = 0;
+			}
+			else
+				writePending();
+			file.setLength(newLength);
+			setModified();
+		}
+	}
+
+	public void read(long position, byte[] buffer, int offset, int length) throws IOException
+	{
+		synchronized(mutex)
+		{
+			checkState();
+			if(pendingSize > 0 && position + length > pendingPosition && position < pendingPosition + pendingSize)
+			{
+				if(position >= pendingPosition && position + length <= pendingPosition + pendingSize)
+				{
+					System.arraycopy(pending, (int)(position - pendingPosition), buffer, offset, length);
+					return;
+				}
+				writePending();
+			}
+			file.read(position, buffer, offset, length);
+		}
+	}
+
+	public int readByte(long position) throws IOException
+	{
+		synchronized(mutex)
+		{
+			checkState();
+			if(pendingSize > 0 && position >= pendingPosition && position < pendingPosition + pendingSize)
+				return pending[(int)(position - pendingPosition)];
+			return file.readByte(position);
+		}
+	}
+
+	public void write(long position, byte[] buffer, int offset, int length) throws IOException
+	{
+		synchronized(mutex)
+		{
+			checkState();
+			if(pendingSize == 0)
+			{
+				pendingPosition = position;
+				append(buffer, offset, length);
+			}
+			else if(position == pendingPosition + pendingSize)
+			{
+				append(buffer, offset, length);
+			}
+			else if(position >= pendingPosition && position + length <= pendingPosition + pendingSize)
+			{
+				System.arraycopy(buffer, offset, pending, (int)(position - pendingPosition), length);
+			}
+			else
+			{
+				writePending();
+				file.write(position, buffer, offset, length);
+			}
+
+			setModified();
+			pendingRecords++;
+			if(pendingRecords >= commitRecords)
+				mutex.notify();
+		}
+	}
+
+	public void writeByte(long position, int value) throws IOException
+	{
+		synchronized(mutex)
+		{
+			checkState();
+			if(pendingSize > 0 && position >= pendingPosition && position < pendingPosition + pendingSize)
+				pending[(int)(position - pendingPosition)] = (byte)value;
+			else
+				file.writeByte(position, value);
+			setModified();
+		}
+	}
+
+	public void flush() throws IOException
+	{
+		synchronized(mutex)
+		{
+			checkState();
+			writePending();
+		}
+	}
+
+	public void force() throws IOException
+	{
+		synchronized(mutex)
+		{
+			checkState();
+			writePending();
+			isModified = false;
+		}
+		file.force();
+	}
+
+	public void close() throws IOException
+	{
+		synchronized(mutex)
+		{
+			if(isClosed)
+				return;
+			isClosed = true;
+			mutex.notify();
+		}
+
+		try
+		{
+			writerThread.join();
+		}
+		catch(InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		try
+		{
+			if(failure == null)
+			{
+				writePending();
+				file.force();
+			}
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
+	private void setModified()
+	{
+		if(isModified)
+			return;
+		isModified = true;
+		mutex.notify();
+	}
+
+	private void append(byte[] buffer, int offset, int length)
+	{
+		if(pendingSize + length > pending.length)
+		{
+			byte[] newPending = new byte[Math.max(pending.length * 2, pendingSize + length)];
+			System.arraycopy(pending, 0, newPending, 0, pendingSize);
+			pending = newPending;
+		}
+		System.arraycopy(buffer, offset, pending, pendingSize, length);
+		pendingSize += length;
+	}
+
+	private void writePending() throws IOException
+	{
+		if(pendingSize == 0)
+			return;
+		file.write(pendingPosition, pending, 0, pendingSize);
+		pendingPosition += pendingSize;
+		pendingSize = 0;
+		pendingRecords = 0;
+	}
+
+	private void checkState() throws IOException
+	{
+		if(failure != null)
+			throw new IOException(failure.getMessage());
+		if(isClosed)
+			throw new IOException("The storage file has been closed.");
+	}
+
+	private class WriterThread extends Thread
+	{
+		@Override
+		public void run()
+		{
+			try
+			{
+				while(true)
+				{
+					synchronized(mutex)
+					{
+						while(isModified == false && isClosed == false)
+							mutex.wait();
+						if(isClosed)
+							return;
+						if(pendingRecords < commitRecords)
+							mutex.wait(commitIntervalMillis);
+						if(isClosed)
+							return;
+						writePending();
+						isModified = false;
+					}
+					file.force();
+				}
+			}
+			catch(IOException ex)
+			{
+				synchronized(mutex)
+				{
+					failure = ex;
+				}
+			}
+			catch(InterruptedException ex) {}
+		}
+	}
+}
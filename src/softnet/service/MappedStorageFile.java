@@ -0,0 +1,145 @@
+package softnet.service;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+class MappedStorageFile implements StorageFile
+{
+	private static final int InitialMappingSize = 65536;
+
+	private RandomAccessFile file;
+	private FileChannel fileChannel;
+	private MappedByteBuffer buffer;
+	private long mappingSize;
+	private long mappingLimit;
+	private long length;
+
+	private boolean synchronous;
+
+	public MappedStorageFile(File file, long capacity, boolean synchronous) throws IOException
+	{
+		this.file = new RandomAccessFile(file, "rw");
+		this.synchronous = synchronous;
+		try
+		{
+			fileChannel = this.file.getChannel();
+			length = fileChannel.size();
+			if(length > Integer.MAX_VALUE)
+				throw new IOException(String.format("The file '%s' is too large to be memory-mapped.", file.getPath()));
+
+			mappingLimit = Math.max(Math.min(capacity, Integer.MAX_VALUE - 2) + 2, length);
+			map(Math.max(Math.min(InitialMappingSize, mappingLimit), length));
+		}
+		catch(IOException ex)
+		{
+			this.file.close();
+			throw ex;
+		}
+	}
+
+	public long length()
+	{
+		return length;
+	}
+
+	public void setLength(long newLength) throws IOException
+	{
+		if(newLength > length)
+		{
+			ensureMapped(newLength);
+			fill(length, newLength);
+		}
+		else if(newLength < length)
+		{
+			fill(newLength, Math.min(newLength + 2, length));
+		}
+		length = newLength;
+		onModified();
+	}
+
+	public void read(long position, byte[] buffer, int offset, int length) throws IOException
+	{
+		if(position + length > this.length)
+			throw new EOFException();
+		this.buffer.position((int)position);
+		this.buffer.get(buffer, offset, length);
+	}
+
+	public int readByte(long position) throws IOException
+	{
+		if(position >= length)
+			throw new EOFException();
+		return buffer.get((int)position);
+	}
+
+	public void write(long position, byte[] buffer, int offset, int length) throws IOException
+	{
+		long end = position + length;
+		ensureMapped(end + 2);
+		this.buffer.position((int)position);
+		this.buffer.put(buffer, offset, length);
+		extendTo(end);
+		onModified();
+	}
+
+	public void writeByte(long position, int value) throws IOException
+	{
+		ensureMapped(position + 3);
+		buffer.put((int)position, (byte)value);
+		extendTo(position + 1);
+		onModified();
+	}
+
+	public void flush() {}
+
+	public void force()
+	{
+		buffer.force();
+	}
+
+	public void close() throws IOException
+	{
+		buffer = null;
+		file.close();
+	}
+
+	private void extendTo(long end)
+	{
+		if(end <= length)
+			return;
+		length = end;
+		fill(end, Math.min(end + 2, mappingSize));
+	}
+
+	private void fill(long from, long to)
+	{
+		for(long i = from; i < to; i++)
+			buffer.put((int)i, (byte)0);
+	}
+
+	private void onModified()
+	{
+		if(synchronous)
+			buffer.force();
+	}
+
+	private void ensureMapped(long size) throws IOException
+	{
+		if(size <= mappingSize)
+			return;
+		if(size > Integer.MAX_VALUE)
+			throw new IOException("The storage file has reached the maximum size of the memory mapping.");
+
+		map(Math.max(size, Math.min(mappingSize * 2, mappingLimit)));
+	}
+
+	private void map(long size) throws IOException
+	{
+		buffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		mappingSize = size;
+	}
+}
@@ -11,11 +11,12 @@ public class PrivateEvent
 	public final SequenceEncoder arguments;
 	
 	private ASNEncoder asnEncoder;
+	private byte[] argumentsEncoding;
 	public byte[] getEncoding()
 	{
 		if(arguments.count() > 0)
 			return asnEncoder.getEncoding();
-		return null;		
+		return argumentsEncoding;		
 	}	
 
 	public PrivateEvent(String name, long clientId)
@@ -26,4 +27,14 @@ public class PrivateEvent
 		asnEncoder = new ASNEncoder();
 		arguments = asnEncoder.Sequence();
 	}	
+
+	PrivateEvent(ServiceEventPersistable sep)
+	{
+		this.name = sep.name;
+		this.clientId = sep.clientId;
+		uid = sep.instanceUid;
+		asnEncoder = new ASNEncoder();
+		arguments = asnEncoder.Sequence();
+		argumentsEncoding = sep.argumentsEncoding;
+	}
 }
@@ -10,11 +10,12 @@ public class QueueingEvent
 	public final SequenceEncoder arguments;
 		
 	private ASNEncoder asnEncoder;
+	private byte[] argumentsEncoding;
 	public byte[] getEncoding()
 	{
 		if(arguments.count() > 0)
 			return asnEncoder.getEncoding();
-		return null;
+		return argumentsEncoding;
 	}	
 
 	public QueueingEvent(String name)
@@ -24,4 +25,13 @@ public class QueueingEvent
 		asnEncoder = new ASNEncoder();
 		arguments = asnEncoder.Sequence();
 	}
+
+	QueueingEvent(ServiceEventPersistable sep)
+	{
+		this.name = sep.name;
+		uid = sep.instanceUid;
+		asnEncoder = new ASNEncoder();
+		arguments = asnEncoder.Sequence();
+		argumentsEncoding = sep.argumentsEncoding;
+	}
 }
@@ -0,0 +1,61 @@
+package softnet.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+class RandomAccessStorageFile implements StorageFile
+{
+	private RandomAccessFile file;
+
+	public RandomAccessStorageFile(File file, boolean synchronous) throws IOException
+	{
+		this.file = new RandomAccessFile(file, synchronous ? "rwd" : "rw");
+	}
+
+	public long length() throws IOException
+	{
+		return file.length();
+	}
+
+	public void setLength(long newLength) throws IOException
+	{
+		file.setLength(newLength);
+	}
+
+	public void read(long position, byte[] buffer, int offset, int length) throws IOException
+	{
+		file.seek(position);
+		file.read(buffer, offset, length);
+	}
+
+	public int readByte(long position) throws IOException
+	{
+		file.seek(position);
+		return file.readByte();
+	}
+
+	public void write(long position, byte[] buffer, int offset, int length) throws IOException
+	{
+		file.seek(position);
+		file.write(buffer, offset, length);
+	}
+
+	public void writeByte(long position, int value) throws IOException
+	{
+		file.seek(position);
+		file.writeByte(value);
+	}
+
+	public void flush() {}
+
+	public void force() throws IOException
+	{
+		file.getChannel().force(false);
+	}
+
+	public void close() throws IOException
+	{
+		file.close();
+	}
+}
@@ -11,11 +11,12 @@ public class ReplacingEvent
 	public final boolean isNull;
 
 	private ASNEncoder asnEncoder;	
+	private byte[] argumentsEncoding;
 	public byte[] getEncoding()
 	{
 		if(arguments != null && arguments.count() > 0)
 			return asnEncoder.getEncoding(); 
-		return null;
+		return argumentsEncoding;
 	}
 
 	public ReplacingEvent(String name)
@@ -41,4 +42,13 @@ public class ReplacingEvent
 			this.isNull = false;
 		}
 	}
+
+	ReplacingEvent(ServiceEventPersistable sep)
+	{
+		this.name = sep.name;
+		uid = sep.instanceUid;
+		arguments = null;
+		isNull = sep.isNull;
+		argumentsEncoding = sep.argumentsEncoding;
+	}
 }
@@ -1,5 +1,6 @@
 package softnet.service;
 
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.regex.Pattern;
 
@@ -15,6 +16,11 @@ public class ServiceEndpoint
 	}
 	
 	public static ServiceEndpoint create(SiteStructure siteStructure, String serviceVersion, ServiceURI serviceURI, String password) throws HostFunctionalitySoftnetException
+	{
+		return create(siteStructure, serviceVersion, serviceURI, password, null);
+	}
+	
+	public static ServiceEndpoint create(SiteStructure siteStructure, String serviceVersion, ServiceURI serviceURI, String password, EndpointRuntime runtime) throws HostFunctionalitySoftnetException
 	{
 		if(siteStructure == null)
 			throw new IllegalArgumentException("'siteStructure' must not be null.");
@@ -36,27 +42,39 @@ public class ServiceEndpoint
 		if (password.length() > 256)
 			throw new IllegalArgumentException("The length of 'password' must not be greater than 256.");
 		
-		ServiceEndpoint service = new ServiceEndpoint();
-		service.initialize((SiteStructureAdapter)siteStructure, serviceVersion, serviceURI, password);
+		if(runtime == null)
+			runtime = EndpointRuntime.create();
+		
+		ServiceEndpoint service = new ServiceEndpoint(runtime);
+		try
+		{
+			service.initialize((SiteStructureAdapter)siteStructure, serviceVersion, serviceURI, password);
+		}
+		catch(HostFunctionalitySoftnetException | RuntimeException ex)
+		{
+			runtime.detach(service);
+			throw ex;
+		}
 		return service;
 	}
 		
-	private ServiceEndpoint()
+	private ServiceEndpoint(EndpointRuntime runtime)
 	{
-		threadPool = new ThreadPool();
-		scheduler = new Scheduler(threadPool);
+		runtime.attach(this);
+		this.runtime = runtime;
+		threadPool = runtime.getThreadPool();
+		scheduler = runtime.getScheduler();
+		reactor = runtime.getReactor();
 	}
 
 	private void initialize(SiteStructureAdapter siteStructure, String serviceVersion, ServiceURI serviceURI, String password) throws HostFunctionalitySoftnetException
 	{
 		siteStructure.commit();
 		
-		threadPool.init();
-		scheduler.init();
-				
 		endpointConnectivity = new EndpointConnectivity(ConnectivityStatus.Disconnected);
 		
 		endpointConnector = new EndpointConnector(serviceURI, password, endpoint_mutex, this);
+		endpointConnector.metrics.register(getClass().getSimpleName(), serviceURI.value);
 		endpointConnector.connectedEventCallback = new Acceptor<Channel>()
 		{
 			public void accept(Channel channel)
@@ -102,7 +120,7 @@ public class ServiceEndpoint
 		
 		if(siteStructure.areEventsSupported())
 		{
-			eventController = new EventController(this, siteStructure, serviceURI);
+			eventController = new EventController(this, siteStructure, serviceURI, endpointConnector.metrics);
 			eventController.init();
 		}
 
@@ -181,8 +199,8 @@ public class ServiceEndpoint
 	{
 		is_closed = true;
 		endpointConnector.Close();
-		scheduler.shutdown();
-		threadPool.shutdown();
+		endpointConnector.metrics.unregister();
+		runtime.detach(this);
 	}
 
 	public void setPingPeriod(int seconds)
@@ -190,6 +208,16 @@ public class ServiceEndpoint
 		endpointConnector.setLocalPingPeriod(seconds);
 	}
 	
+	public void setSendQueueLimits(int lowWatermark, int highWatermark, SendQueuePolicy policy)
+	{
+		endpointConnector.setSendQueueLimits(lowWatermark, highWatermark, policy);
+	}
+	
+	public ChannelMetricsMBean getChannelMetrics()
+	{
+		return endpointConnector.metrics;
+	}
+	
 	public boolean isGuestAllowed()
 	{
 		return membership.isGuestAllowed(); 
@@ -223,6 +251,13 @@ public class ServiceEndpoint
 			throw new IllegalStateException("Events are not supported.");
 		eventController.setPersistenceL1(memoryStorageCapacity);				
 	}
+
+	public void setPersistenceL1(long memoryStorageCapacity, boolean offHeap)
+	{
+		if(eventController == null)
+			throw new IllegalStateException("Events are not supported.");
+		eventController.setPersistenceL1(memoryStorageCapacity, offHeap);
+	}
 	
 	public void setPersistenceL2()
 	{
@@ -237,6 +272,13 @@ public class ServiceEndpoint
 			throw new IllegalStateException("Events are not supported.");
 		eventController.setPersistenceL2(fileStorageDirectory, fileStorageCapacity, memoryStorageCapacity);
 	}
+
+	public void setPersistenceL2(String fileStorageDirectory, long fileStorageCapacity, long memoryStorageCapacity, FileStorageOptions fileStorageOptions)
+	{
+		if(eventController == null)
+			throw new IllegalStateException("Events are not supported.");
+		eventController.setPersistenceL2(fileStorageDirectory, fileStorageCapacity, memoryStorageCapacity, fileStorageOptions);
+	}
 		
 	public void setPersistenceL2(ServicePersistence servicePersistence, long memoryStorageCapacity)
 	{
@@ -244,6 +286,20 @@ public class ServiceEndpoint
 			throw new IllegalStateException("Events are not supported.");
 		eventController.setPersistenceL2(servicePersistence, memoryStorageCapacity);
 	}
+
+	public void setPersistenceTiered(String fileStorageDirectory, long fileStorageCapacity, long memoryStorageCapacity)
+	{
+		if(eventController == null)
+			throw new IllegalStateException("Events are not supported.");
+		eventController.setPersistenceTiered(fileStorageDirectory, fileStorageCapacity, memoryStorageCapacity);
+	}
+
+	public void setPersistenceTiered(String fileStorageDirectory, long fileStorageCapacity, long memoryStorageCapacity, FileStorageOptions fileStorageOptions)
+	{
+		if(eventController == null)
+			throw new IllegalStateException("Events are not supported.");
+		eventController.setPersistenceTiered(fileStorageDirectory, fileStorageCapacity, memoryStorageCapacity, fileStorageOptions);
+	}
 	
 	public void addEventListener(ServiceEventListener listener)
 	{
@@ -289,6 +345,62 @@ public class ServiceEndpoint
 			throw new IllegalStateException("Events are not supported.");
 		eventController.raiseEvent(event);
 	}
+
+	public void raiseEvent(ReplacingEvent event, Acceptor<Boolean> callback)
+	{
+		if(eventController == null)
+			throw new IllegalStateException("Events are not supported.");
+		eventController.raiseEvent(event, callback);
+	}
+
+	public void raiseEvent(QueueingEvent event, Acceptor<Boolean> callback)
+	{
+		if(eventController == null)
+			throw new IllegalStateException("Events are not supported.");
+		eventController.raiseEvent(event, callback);
+	}
+
+	public void raiseEvent(PrivateEvent event, Acceptor<Boolean> callback)
+	{
+		if(eventController == null)
+			throw new IllegalStateException("Events are not supported.");
+		eventController.raiseEvent(event, callback);
+	}
+
+	public void raiseEvents(Collection<QueueingEvent> events)
+	{
+		if(eventController == null)
+			throw new IllegalStateException("Events are not supported.");
+		eventController.raiseEvents(events);
+	}
+
+	public void raiseEvents(Collection<QueueingEvent> events, Acceptor<Integer> callback)
+	{
+		if(eventController == null)
+			throw new IllegalStateException("Events are not supported.");
+		eventController.raiseEvents(events, callback);
+	}
+
+	public void enableEventWriteBehind(int ringCapacity)
+	{
+		if(eventController == null)
+			throw new IllegalStateException("Events are not supported.");
+		eventController.enableWriteBehind(ringCapacity);
+	}
+	
+	public void enableEventBatching(int backlogThreshold)
+	{
+		if(eventController == null)
+			throw new IllegalStateException("Events are not supported.");
+		eventController.enableEventBatching(backlogThreshold);
+	}
+	
+	public void setEventDeliveryWindow(int windowSize)
+	{
+		if(eventController == null)
+			throw new IllegalStateException("Events are not supported.");
+		eventController.setEventDeliveryWindow(windowSize);
+	}
 	
 	public void registerProcedure(String procedureName, RPCRequestHandler requestHandler, int concurrencyLimit)
 	{
@@ -356,8 +468,10 @@ public class ServiceEndpoint
 	}
 
 	protected Object endpoint_mutex = new Object();
+	protected EndpointRuntime runtime;
 	protected ThreadPool threadPool;
 	protected Scheduler scheduler;
+	protected Reactor reactor;
 	private StateController stateController;
 	private Membership membership;
 	private ServiceInstaller serviceInstaller;
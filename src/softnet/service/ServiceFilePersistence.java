@@ -1,28 +1,44 @@
 package softnet.service;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.TreeMap;
 import java.util.UUID;
 
 import softnet.asn.*;
 import softnet.exceptions.*;
 import softnet.utils.ByteConverter;
 
-class ServiceFilePersistence implements ServicePersistence
+class ServiceFilePersistence implements BatchServicePersistence
 {
+	private static final int EventNameDefinition = 8;
+	private static final int EventNameIdFlag = 16;
+	private static final int MaxEventNameIds = 4096;
+	private static final int CompactionChunkSize = 65536;
+
 	private ServiceFilePersistence(UUID serviceUid, long storageCapacity)
 	{
 		this.serviceUid = serviceUid;
 		this.storageCapacity = storageCapacity;
-		replacingEvents = new LinkedList<REvent>();
-		queueingEvents = new LinkedList<QEvent>();
-		privateEvents = new LinkedList<PEvent>();
+		replacingEvents = new HashMap<String, REvent>();
+		queueingEvents = new HashMap<String, QEvent>();
+		privateEvents = new HashMap<String, PEvent>();
 		isInStorageMode = true;
 		storageUid = null;
 	}
@@ -32,49 +48,63 @@ class ServiceFilePersistence implements ServicePersistence
 	private UUID serviceUid;
 	private UUID storageUid;
 	private String filePath;
-	private RandomAccessFile storageFile;	
+	private StorageFile storageFile;	
 	private long storageCapacity;
 	private boolean isClosed = false;
 	
-	private LinkedList<REvent> replacingEvents;
-	private LinkedList<QEvent> queueingEvents;
-	private LinkedList<PEvent> privateEvents;
+	private HashMap<String, REvent> replacingEvents;
+	private HashMap<String, QEvent> queueingEvents;
+	private HashMap<String, PEvent> privateEvents;
 	
 	private boolean isInStorageMode;
 	private long tailPosition;
 	private long headPosition;
 	private long ancientDataTailPosition;
 	private PeekedRecord peekedRecord;
+	private ArrayList<BatchRecord> peekedBatch = new ArrayList<BatchRecord>();
 	private int unacknowledgedEvents;	
+	private long deadBytes = 0;
+	private FileStorageOptions fileStorageOptions;
+	private boolean hasCheckpoint = false;
+	private long checkpointTailPosition = 32;
+	private long checkpointGeneration = 0;
+	private byte[] pendingCheckpoint = null;
+	private long pendingCheckpointTail;
+	private long pendingCheckpointGeneration;
+	private boolean isCheckpointing = false;
+	private boolean isCompacting = false;
+	private boolean isCompactionRequested = false;
+	private long compactionGeneration = 0;
+	private long compactedPosition = 32;
+	private ArrayList<Long> compactionAcks = new ArrayList<Long>();
+	private IOException maintenanceFailure = null;
+	private MaintenanceThread maintenanceThread = null;
+	private HashMap<String, Integer> eventNameIds = new HashMap<String, Integer>();
+	private ArrayList<String> eventNames = new ArrayList<String>();
 	
 	public static ServiceFilePersistence create(UUID serviceUid, long storageCapacity) throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException
+	{
+		return create(serviceUid, storageCapacity, null, null);
+	}
+
+	public static ServiceFilePersistence create(UUID serviceUid, long storageCapacity, String directory) throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException
+	{
+		return create(serviceUid, storageCapacity, directory, null);
+	}
+
+	public static ServiceFilePersistence create(UUID serviceUid, long storageCapacity, String directory, FileStorageOptions options) throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException
 	{
 		try
 		{
-			Class<softnet.service.ServiceEndpoint> serviceClass = softnet.service.ServiceEndpoint.class;
-			java.security.CodeSource codeSource = serviceClass.getProtectionDomain().getCodeSource();
-	
-			File jarFile;
-			URL url = codeSource.getLocation();
-			if (url != null) {
-				jarFile = new File(url.toURI());
-			}
-			else {
-			    String path = serviceClass.getResource(serviceClass.getSimpleName() + ".class").getPath();
-			    String jarFilePath = path.substring(path.indexOf(":") + 1, path.indexOf("!"));
-			    jarFilePath = URLDecoder.decode(jarFilePath, "UTF-8");
-			    jarFile = new File(jarFilePath);
-			}
-			
-			String directory = jarFile.getParentFile().getAbsolutePath();			
+			if(directory == null || directory.length() == 0)
+				directory = getDefaultDirectory();
 			
 			String fileName = "softnet.service.persistence_" + serviceUid.toString() + ".ssp";			
 			String filePath = directory + File.separator + fileName;
 			
-			RandomAccessFile file = new RandomAccessFile(new File(filePath), "rwd");
-			
 			ServiceFilePersistence sfp = new ServiceFilePersistence(serviceUid, storageCapacity);
-			sfp.load(file, filePath);
+			sfp.fileStorageOptions = options != null ? options : new FileStorageOptions();
+			sfp.load(sfp.openStorageFile(filePath), filePath);
 			return sfp;
 		}
 		catch(IOException ex)
@@ -95,34 +125,49 @@ class ServiceFilePersistence implements ServicePersistence
 		}
 	}
 
-	public static ServiceFilePersistence create(UUID serviceUid, long storageCapacity, String directory) throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException
+	private StorageFile openStorageFile(String filePath) throws IOException
 	{
-		try
-		{			
-			String fileName = "softnet.service.persistence_" + serviceUid.toString() + ".ssp";			
-			String filePath = directory + File.separator + fileName;			
-			RandomAccessFile file = new RandomAccessFile(new File(filePath), "rwd");
-			ServiceFilePersistence sfp = new ServiceFilePersistence(serviceUid, storageCapacity);
-			sfp.load(file, filePath);
-			return sfp;
-		}
-		catch(IOException ex)
-		{
-			throw new PersistenceIOSoftnetException(ex.getMessage());
+		boolean synchronous = fileStorageOptions.durability == StorageDurability.Sync;
+		
+		StorageFile file;
+		if(fileStorageOptions.memoryMapped)
+			file = new MappedStorageFile(new File(filePath), storageCapacity, synchronous);
+		else
+			file = new RandomAccessStorageFile(new File(filePath), synchronous);
+		
+		if(fileStorageOptions.durability == StorageDurability.GroupCommit)
+			file = new GroupCommitStorageFile(file, fileStorageOptions.groupCommitIntervalMillis, fileStorageOptions.groupCommitRecords);
+		return file;
+	}
+
+	private static String getDefaultDirectory() throws IOException, URISyntaxException
+	{
+		Class<softnet.service.ServiceEndpoint> serviceClass = softnet.service.ServiceEndpoint.class;
+		java.security.CodeSource codeSource = serviceClass.getProtectionDomain().getCodeSource();
+
+		File jarFile;
+		URL url = codeSource.getLocation();
+		if (url != null) {
+			jarFile = new File(url.toURI());
 		}
-		catch(SecurityException ex)
-		{
-			throw new PersistenceIOSoftnetException(ex.getMessage());			
+		else {
+		    String path = serviceClass.getResource(serviceClass.getSimpleName() + ".class").getPath();
+		    String jarFilePath = path.substring(path.indexOf(":") + 1, path.indexOf("!"));
+		    jarFilePath = URLDecoder.decode(jarFilePath, "UTF-8");
+		    jarFile = new File(jarFilePath);
 		}
+		
+		return jarFile.getParentFile().getAbsolutePath();
 	}
 	
-	private void load(RandomAccessFile file, String filePath) throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException
+	private void load(StorageFile file, String filePath) throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException
 	{
 		try		
 		{
 			this.storageFile = file;
 			this.filePath = filePath;									
 			peekedRecord = null;
+			hasCheckpoint = new File(filePath + ".ckpt").exists();
 
 			long fileLength = storageFile.length();
 			
@@ -132,37 +177,35 @@ class ServiceFilePersistence implements ServicePersistence
 			
 			if(fileLength < 32)
 			{
-				storageFile.setLength(32);
+				truncateStorage();
 				
 				byte[] uidBytes = ByteConverter.getBytes(serviceUid);
-				storageFile.seek(0);
-				storageFile.write(uidBytes);
+				storageFile.write(0, uidBytes, 0, uidBytes.length);
 
 				storageUid = UUID.randomUUID();
 				uidBytes = ByteConverter.getBytes(storageUid);
-				storageFile.seek(16);
-				storageFile.write(uidBytes);									
+				storageFile.write(16, uidBytes, 0, uidBytes.length);									
 								
 				return;
 			}			
 
 			byte[] uidBytes = new byte[16];
-			storageFile.seek(0);
-			storageFile.read(uidBytes);
+			storageFile.read(0, uidBytes, 0, uidBytes.length);
 			UUID serviceUid = ByteConverter.toUuid(uidBytes);
 			if(serviceUid.equals(this.serviceUid) == false)
 				throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", filePath));
 			
-			storageFile.seek(16);
-			storageFile.read(uidBytes);
+			storageFile.read(16, uidBytes, 0, uidBytes.length);
 			storageUid = ByteConverter.toUuid(uidBytes);
 			
 			if(fileLength == 32)
 				return;
 						
-			byte[] buffer = new byte[128];			
 			long currentPosition = 32;
+			if(loadCheckpoint(fileLength))
+				currentPosition = checkpointTailPosition;
 			
+			SequentialReader reader = new SequentialReader(fileLength);
 			try
 			{
 				while(true)
@@ -173,9 +216,8 @@ class ServiceFilePersistence implements ServicePersistence
 						return;
 					}
 	
-					storageFile.seek(currentPosition);
-					storageFile.read(buffer, 0, 2);
-					int recordSize = ByteConverter.toInt32FromInt16(buffer, 0);
+					int offset = reader.read(currentPosition, 2);
+					int recordSize = ByteConverter.toInt32FromInt16(reader.buffer, offset);
 					if(recordSize == 0)
 					{
 						tailPosition = currentPosition;
@@ -187,16 +229,16 @@ class ServiceFilePersistence implements ServicePersistence
 	
 					if(recordSize < 6)
 						throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", filePath));
-									
-					if(buffer.length < recordSize)
-						buffer = new byte[recordSize];
 					
-					storageFile.seek(currentPosition + 2);
-					int isAcknowledged = storageFile.readByte();							
+					offset = reader.read(currentPosition, recordSize);
+					byte[] buffer = reader.buffer;
+					
+					int isAcknowledged = buffer[offset + 2];
 					if(isAcknowledged != 0)
 					{
 						if(isAcknowledged == 1)
 						{
+							deadBytes += recordSize;
 							currentPosition += recordSize;
 							continue;
 						}
@@ -204,72 +246,38 @@ class ServiceFilePersistence implements ServicePersistence
 							throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", filePath));
 					}
 									
-					storageFile.seek(currentPosition + 3);
-					int messageKind = storageFile.readByte();
-					if(!(messageKind == 1 || messageKind == 5 || messageKind == 2 || messageKind == 4))
-						throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", filePath));
-					 
-					storageFile.seek(currentPosition + 4);
-					storageFile.read(buffer, 0, 2);
-					int nameBytesCount = ByteConverter.toInt32FromInt16(buffer, 0);
-					if(nameBytesCount < 1 || nameBytesCount > 512 || 8 + nameBytesCount > recordSize)
-						throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", filePath));				
-					
-					storageFile.seek(currentPosition + 6);
-					storageFile.read(buffer, 0, nameBytesCount);
-					String eventName = new String(buffer, 0, nameBytesCount, java.nio.charset.StandardCharsets.UTF_16BE);
-					
-					int headerSize = 6 + nameBytesCount;
+					int messageKind = buffer[offset + 3];
+					String eventName = readEventName(buffer, offset, recordSize);
+					int headerSize = getHeaderSize(buffer, offset);
 					
-					if(messageKind == 1)
+					if(messageKind == EventNameDefinition)
 					{
-						REvent rEvent = null;
-						for(REvent listElement: replacingEvents)
-						{
-							if(listElement.name.equals(eventName))
-							{
-								rEvent = listElement;
-								break;
-							}
-						}		
-						
-						if(rEvent == null)
-						{
-							rEvent = new REvent(eventName);
-							replacingEvents.add(rEvent);						
-							rEvent.lastInstance = new RERecord(currentPosition, recordSize, headerSize, false);
-						}
-						else
-						{
-							storageFile.seek(rEvent.lastInstance.position + 2);
-							storageFile.writeByte(1);
-							rEvent.lastInstance = new RERecord(currentPosition, recordSize, headerSize, false);						
-						}
+						int nameId = recordSize == headerSize + 2 ? ByteConverter.toInt32FromUInt16(buffer, offset + headerSize) : MaxEventNameIds;
+						if(nameId >= MaxEventNameIds)
+							throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", filePath));
+						registerEventName(nameId, eventName);
+						currentPosition += recordSize;
+						continue;
 					}
-					else if(messageKind == 5)
+					
+					messageKind = messageKind & ~EventNameIdFlag;
+					if(!(messageKind == 1 || messageKind == 5 || messageKind == 2 || messageKind == 4))
+						throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", filePath));
+					
+					if(messageKind == 1 || messageKind == 5)
 					{
-						REvent rEvent = null;
-						for(REvent listElement: replacingEvents)
-						{
-							if(listElement.name.equals(eventName))
-							{
-								rEvent = listElement;
-								break;
-							}
-						}		
+						REvent rEvent = replacingEvents.get(eventName);
 						
 						if(rEvent == null)
 						{
 							rEvent = new REvent(eventName);
-							replacingEvents.add(rEvent);						
-							rEvent.lastInstance = new RERecord(currentPosition, recordSize, headerSize, true);
+							replacingEvents.put(rEvent.name, rEvent);						
 						}
 						else
 						{
-							storageFile.seek(rEvent.lastInstance.position + 2);
-							storageFile.writeByte(1);
-							rEvent.lastInstance = new RERecord(currentPosition, recordSize, headerSize, true);						
+							acknowledgeRecord(rEvent.lastInstance.position, rEvent.lastInstance.size);
 						}
+						rEvent.lastInstance = new RERecord(currentPosition, recordSize, headerSize, messageKind == 5);
 					}
 					
 					currentPosition += recordSize;
@@ -291,6 +299,14 @@ class ServiceFilePersistence implements ServicePersistence
 		return storageUid;
 	}
 
+	boolean isEmpty()
+	{
+		synchronized(mutex)
+		{
+			return tailPosition <= 32;
+		}
+	}
+
 	public void invalidateAncientData() throws PersistenceIOSoftnetException
 	{
 		synchronized(mutex)
@@ -308,7 +324,7 @@ class ServiceFilePersistence implements ServicePersistence
 			{
 				if(ancientDataTailPosition == tailPosition)
 				{
-					storageFile.setLength(32);
+					truncateStorage();
 				
 					headPosition = 32;
 					tailPosition = 32;
@@ -320,16 +336,15 @@ class ServiceFilePersistence implements ServicePersistence
 				}
 				else
 				{
-					byte[] buffer = new byte[2];
+					byte[] buffer = new byte[4];
 					long currentPosition = 32;
 
 					while(currentPosition < ancientDataTailPosition)
 					{
-						storageFile.seek(currentPosition);
-						storageFile.read(buffer, 0, 2);
+						storageFile.read(currentPosition, buffer, 0, 4);
 						int recordSize = ByteConverter.toInt32FromInt16(buffer, 0);
-						storageFile.seek(currentPosition + 2);
-						storageFile.writeByte(1);
+						if(buffer[2] == 0 && buffer[3] != EventNameDefinition)
+							acknowledgeRecord(currentPosition, recordSize);
 						currentPosition += recordSize;
 					}
 						
@@ -350,7 +365,7 @@ class ServiceFilePersistence implements ServicePersistence
 		{
 			synchronized(mutex)
 			{
-				storageFile.setLength(32);
+				truncateStorage();
 				headPosition = 32;
 				tailPosition = 32;
 				ancientDataTailPosition = 32;
@@ -371,17 +386,15 @@ class ServiceFilePersistence implements ServicePersistence
 		{
 			synchronized(mutex)
 			{
-				storageFile.setLength(32);
+				truncateStorage();
 
 				byte[] uidBytes = ByteConverter.getBytes(serviceUid);
-				storageFile.seek(0);
-				storageFile.write(uidBytes);
+				storageFile.write(0, uidBytes, 0, uidBytes.length);
 
 				if(storageUid == null)
 					storageUid = UUID.randomUUID();
 				uidBytes = ByteConverter.getBytes(storageUid);
-				storageFile.seek(16);
-				storageFile.write(uidBytes);
+				storageFile.write(16, uidBytes, 0, uidBytes.length);
 				
 				headPosition = 32;
 				tailPosition = 32;
@@ -435,7 +448,7 @@ class ServiceFilePersistence implements ServicePersistence
 			try
 			{
 				byte[] nameBytes = replacingEvent.name.getBytes(java.nio.charset.StandardCharsets.UTF_16BE);				
-				int headerSize = 6 + nameBytes.length;
+				int headerSize = getHeaderSize(replacingEvent.name, nameBytes);
 				
 				byte[] bodyEncoding = null;				
 				if(replacingEvent.isNull == false)
@@ -457,55 +470,19 @@ class ServiceFilePersistence implements ServicePersistence
 				}
 				
 				int recordSize = headerSize + bodyEncoding.length;
-				if(tailPosition + recordSize > storageCapacity)					
+				int appendSize = getNameDefinitionSize(replacingEvent.name, nameBytes, headerSize) + recordSize;
+				prepareAppend(appendSize);
+				if(tailPosition + appendSize > storageCapacity)					
 					throw new PersistenceStorageFullSoftnetException(String.format("The persistance storage '%s' has reached the maximum size limit.", filePath));
 				
-				storageFile.seek(tailPosition);
-				byte[] sizeBytes = new byte[2];
-				ByteConverter.writeAsInt16(recordSize, sizeBytes, 0);
-				storageFile.write(sizeBytes);
-				
-				storageFile.seek(tailPosition + 2);
-				storageFile.writeByte(0);
-
-				storageFile.seek(tailPosition + 3);
-				storageFile.writeByte(replacingEvent.isNull == false ? 1 : 5);
-
-				storageFile.seek(tailPosition + 4);
-				ByteConverter.writeAsInt16(nameBytes.length, sizeBytes, 0);
-				storageFile.write(sizeBytes);
-
-				storageFile.seek(tailPosition + 6);
-				storageFile.write(nameBytes);
-
-				storageFile.seek(tailPosition + headerSize);
-				storageFile.write(bodyEncoding);				
-
-				long recordPosition = tailPosition;
-				tailPosition += recordSize;				
-
-				if(storageFile.length() > tailPosition)
-				{
-					storageFile.seek(tailPosition);
-					storageFile.writeByte(0);
-					storageFile.seek(tailPosition + 1);
-					storageFile.writeByte(0);
-				}
+				long recordPosition = appendRecord(replacingEvent.isNull == false ? 1 : 5, replacingEvent.name, nameBytes, headerSize, bodyEncoding);
 				
-				REvent rEvent = null;
-				for(REvent listElement: replacingEvents)
-				{
-					if(listElement.name.equals(replacingEvent.name))
-					{
-						rEvent = listElement;
-						break;
-					}
-				}		
+				REvent rEvent = replacingEvents.get(replacingEvent.name);
 				
 				if(rEvent == null)
 				{
 					rEvent = new REvent(replacingEvent.name);
-					replacingEvents.add(rEvent);
+					replacingEvents.put(rEvent.name, rEvent);
 					
 					rEvent.currentInstance = new RERecord(recordPosition, recordSize, headerSize, replacingEvent.isNull);						
 					unacknowledgedEvents++;
@@ -521,8 +498,7 @@ class ServiceFilePersistence implements ServicePersistence
 				}
 				else
 				{
-					storageFile.seek(rEvent.lastInstance.position + 2);
-					storageFile.writeByte(1);
+					acknowledgeRecord(rEvent.lastInstance.position, rEvent.lastInstance.size);
 					rEvent.lastInstance = new RERecord(recordPosition, recordSize, headerSize, replacingEvent.isNull);
 				}
 			}
@@ -546,7 +522,7 @@ class ServiceFilePersistence implements ServicePersistence
 			try
 			{
 				byte[] nameBytes = queueingEvent.name.getBytes(java.nio.charset.StandardCharsets.UTF_16BE);				
-				int headerSize = 6 + nameBytes.length;
+				int headerSize = getHeaderSize(queueingEvent.name, nameBytes);
 				
 				ASNEncoder asnEncoder = new ASNEncoder();
 				SequenceEncoder asnSequence = asnEncoder.Sequence();
@@ -557,55 +533,19 @@ class ServiceFilePersistence implements ServicePersistence
 				byte[] bodyEncoding = asnEncoder.getEncoding();
 				
 				int recordSize = headerSize + bodyEncoding.length;
-				if(tailPosition + recordSize > storageCapacity)					
+				int appendSize = getNameDefinitionSize(queueingEvent.name, nameBytes, headerSize) + recordSize;
+				prepareAppend(appendSize);
+				if(tailPosition + appendSize > storageCapacity)					
 					throw new PersistenceStorageFullSoftnetException(String.format("The persistance storage '%s' has reached the maximum size limit.", filePath));
 
-				storageFile.seek(tailPosition);
-				byte[] sizeBytes = new byte[2];
-				ByteConverter.writeAsInt16(recordSize, sizeBytes, 0);
-				storageFile.write(sizeBytes);
-				
-				storageFile.seek(tailPosition + 2);
-				storageFile.writeByte(0);
-
-				storageFile.seek(tailPosition + 3);
-				storageFile.writeByte(2); // Softnet.Core.Constants.Service.EventController.QUEUEING_EVENT
-
-				storageFile.seek(tailPosition + 4);
-				ByteConverter.writeAsInt16(nameBytes.length, sizeBytes, 0);
-				storageFile.write(sizeBytes);
-
-				storageFile.seek(tailPosition + 6);
-				storageFile.write(nameBytes);
-
-				storageFile.seek(tailPosition + headerSize);
-				storageFile.write(bodyEncoding);				
-
-				long recordPosition = tailPosition;
-				tailPosition += recordSize;				
-
-				if(storageFile.length() > tailPosition)
-				{
-					storageFile.seek(tailPosition);
-					storageFile.writeByte(0);
-					storageFile.seek(tailPosition + 1);
-					storageFile.writeByte(0);
-				}
+				long recordPosition = appendRecord(2, queueingEvent.name, nameBytes, headerSize, bodyEncoding); // Softnet.Core.Constants.Service.EventController.QUEUEING_EVENT
 							
-				QEvent qEvent = null;
-				for(QEvent listElement: queueingEvents)
-				{
-					if(listElement.name.equals(queueingEvent.name))
-					{
-						qEvent = listElement;
-						break;
-					}
-				}		
+				QEvent qEvent = queueingEvents.get(queueingEvent.name);
 				
 				if(qEvent == null)
 				{
 					qEvent = new QEvent(queueingEvent.name);
-					queueingEvents.add(qEvent);
+					queueingEvents.put(qEvent.name, qEvent);
 					
 					qEvent.instanceQueue.add(new QERecord(recordPosition, recordSize, headerSize));						
 					unacknowledgedEvents++;						
@@ -627,6 +567,40 @@ class ServiceFilePersistence implements ServicePersistence
 		}
 	}
 
+	public int cache(List<QueueingEvent> events) throws PersistenceIOSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isClosed) 
+				throw new IllegalStateException("The storage has been closed.");
+			
+			if(isInStorageMode) 
+				throw new IllegalStateException("The storage is in synchronous mode.");
+			
+			try
+			{
+				ArrayList<QERecord> records = appendQueueingRecords(events);
+				for(int i = 0; i < records.size(); i++)
+				{
+					QEvent qEvent = queueingEvents.get(events.get(i).name);
+					if(qEvent == null)
+					{
+						qEvent = new QEvent(events.get(i).name);
+						queueingEvents.put(qEvent.name, qEvent);
+					}
+					if(qEvent.instanceQueue.isEmpty())
+						unacknowledgedEvents++;
+					qEvent.instanceQueue.add(records.get(i));
+				}
+				return records.size();
+			}
+			catch(IOException ex)
+			{
+				throw new PersistenceIOSoftnetException(ex.getMessage());
+			}
+		}
+	}
+
 	public void cache(PrivateEvent privateEvent) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
 	{
 		synchronized(mutex)
@@ -640,7 +614,7 @@ class ServiceFilePersistence implements ServicePersistence
 			try
 			{
 				byte[] nameBytes = privateEvent.name.getBytes(java.nio.charset.StandardCharsets.UTF_16BE);				
-				int headerSize = 6 + nameBytes.length;
+				int headerSize = getHeaderSize(privateEvent.name, nameBytes);
 				
 				ASNEncoder asnEncoder = new ASNEncoder();
 				SequenceEncoder asnSequence = asnEncoder.Sequence();
@@ -652,55 +626,19 @@ class ServiceFilePersistence implements ServicePersistence
 				byte[] bodyEncoding = asnEncoder.getEncoding();
 				
 				int recordSize = headerSize + bodyEncoding.length;
-				if(tailPosition + recordSize > storageCapacity)					
+				int appendSize = getNameDefinitionSize(privateEvent.name, nameBytes, headerSize) + recordSize;
+				prepareAppend(appendSize);
+				if(tailPosition + appendSize > storageCapacity)					
 					throw new PersistenceStorageFullSoftnetException(String.format("The persistance storage '%s' has reached the maximum size limit.", filePath));
 
-				storageFile.seek(tailPosition);
-				byte[] sizeBytes = new byte[2];
-				ByteConverter.writeAsInt16(recordSize, sizeBytes, 0);
-				storageFile.write(sizeBytes);
-				
-				storageFile.seek(tailPosition + 2);
-				storageFile.writeByte(0);
-
-				storageFile.seek(tailPosition + 3);
-				storageFile.writeByte(4); // Softnet.Core.Constants.Service.EventController.PRIVATE_EVENT
-
-				storageFile.seek(tailPosition + 4);
-				ByteConverter.writeAsInt16(nameBytes.length, sizeBytes, 0);
-				storageFile.write(sizeBytes);
-
-				storageFile.seek(tailPosition + 6);
-				storageFile.write(nameBytes);
-
-				storageFile.seek(tailPosition + headerSize);
-				storageFile.write(bodyEncoding);				
-
-				long recordPosition = tailPosition;
-				tailPosition += recordSize;				
-
-				if(storageFile.length() > tailPosition)
-				{
-					storageFile.seek(tailPosition);
-					storageFile.writeByte(0);
-					storageFile.seek(tailPosition + 1);
-					storageFile.writeByte(0);
-				}
+				long recordPosition = appendRecord(4, privateEvent.name, nameBytes, headerSize, bodyEncoding); // Softnet.Core.Constants.Service.EventController.PRIVATE_EVENT
 								
-				PEvent pEvent = null;
-				for(PEvent listElement: privateEvents)
-				{
-					if(listElement.name.equals(privateEvent.name))
-					{
-						pEvent = listElement;
-						break;
-					}
-				}		
+				PEvent pEvent = privateEvents.get(privateEvent.name);
 
 				if(pEvent == null)
 				{
 					pEvent = new PEvent(privateEvent.name);
-					privateEvents.add(pEvent);
+					privateEvents.put(pEvent.name, pEvent);
 					
 					pEvent.instanceQueue.add(new PERecord(recordPosition, recordSize, headerSize));						
 					unacknowledgedEvents++;						
@@ -741,15 +679,7 @@ class ServiceFilePersistence implements ServicePersistence
 				{
 					if(eventKind == 1)
 					{
-						REvent rEvent = null;
-						for(REvent listElement: replacingEvents)
-						{
-							if(listElement.name.equals(eventName))
-							{
-								rEvent = listElement;
-								break;
-							}
-						}		
+						REvent rEvent = replacingEvents.get(eventName);
 						
 						if(rEvent == null)
 							throw new IllegalStateException(String.format("There are no events of the type '%s' to be acknowledged.", eventName));
@@ -757,8 +687,7 @@ class ServiceFilePersistence implements ServicePersistence
 						if(rEvent.currentInstance == null)
 							throw new IllegalStateException(String.format("There are no events of the type '%s' to be acknowledged.", eventName));
 						
-						storageFile.seek(rEvent.currentInstance.position + 2);
-						storageFile.writeByte(1);
+						acknowledgeRecord(rEvent.currentInstance.position, rEvent.currentInstance.size);
 						rEvent.currentInstance = null;
 						
 						if(rEvent.lastInstance == null)
@@ -766,7 +695,7 @@ class ServiceFilePersistence implements ServicePersistence
 							unacknowledgedEvents--;						
 							if(unacknowledgedEvents == 0)
 							{							
-								storageFile.setLength(32);
+								truncateStorage();
 								headPosition = 32;
 								tailPosition = 32;
 							}
@@ -778,8 +707,7 @@ class ServiceFilePersistence implements ServicePersistence
 						
 						int bodySize = rEvent.currentInstance.size - rEvent.currentInstance.headerSize;
 						byte[] bodyBuffer = new byte[bodySize];
-						storageFile.seek(rEvent.currentInstance.position + rEvent.currentInstance.headerSize);
-						storageFile.read(bodyBuffer);
+						storageFile.read(rEvent.currentInstance.position + rEvent.currentInstance.headerSize, bodyBuffer, 0, bodyBuffer.length);
 											
 						if(rEvent.currentInstance.isNull == false)
 						{
@@ -801,15 +729,7 @@ class ServiceFilePersistence implements ServicePersistence
 					}
 					else if(eventKind == 2)
 					{
-						QEvent qEvent = null;
-						for(QEvent listElement: queueingEvents)
-						{
-							if(listElement.name.equals(eventName))
-							{
-								qEvent = listElement;
-								break;
-							}
-						}		
+						QEvent qEvent = queueingEvents.get(eventName);
 						
 						if(qEvent == null)
 							throw new IllegalStateException(String.format("There are no events of the type '%s' to be acknowledged.", eventName));
@@ -818,15 +738,14 @@ class ServiceFilePersistence implements ServicePersistence
 							throw new IllegalStateException(String.format("There are no events of the type '%s' to be acknowledged.", eventName));
 						
 						QERecord qeRecord = qEvent.instanceQueue.remove();
-						storageFile.seek(qeRecord.position + 2);
-						storageFile.writeByte(1);
+						acknowledgeRecord(qeRecord.position, qeRecord.size);
 						
 						if(qEvent.instanceQueue.isEmpty())
 						{
 							unacknowledgedEvents--;						
 							if(unacknowledgedEvents == 0)
 							{							
-								storageFile.setLength(32);
+								truncateStorage();
 								headPosition = 32;
 								tailPosition = 32;
 							}
@@ -837,8 +756,7 @@ class ServiceFilePersistence implements ServicePersistence
 						
 						int bodySize = qeRecord.size - qeRecord.headerSize;
 						byte[] bodyBuffer = new byte[bodySize];
-						storageFile.seek(qeRecord.position + qeRecord.headerSize);
-						storageFile.read(bodyBuffer);
+						storageFile.read(qeRecord.position + qeRecord.headerSize, bodyBuffer, 0, bodyBuffer.length);
 						
 						SequenceDecoder asnSequence = ASNDecoder.Sequence(bodyBuffer);
 						UUID instanceUid = asnSequence.OctetStringToUUID();
@@ -850,15 +768,7 @@ class ServiceFilePersistence implements ServicePersistence
 					}
 					else if(eventKind == 4)
 					{
-						PEvent pEvent = null;
-						for(PEvent listElement: privateEvents)
-						{
-							if(listElement.name.equals(eventName))
-							{
-								pEvent = listElement;
-								break;
-							}
-						}		
+						PEvent pEvent = privateEvents.get(eventName);
 						
 						if(pEvent == null)
 							throw new IllegalStateException(String.format("There are no events of the type '%s' to be acknowledged.", eventName));
@@ -867,15 +777,14 @@ class ServiceFilePersistence implements ServicePersistence
 							throw new IllegalStateException(String.format("There are no events of the type '%s' to be acknowledged.", eventName));
 						
 						PERecord peRecord = pEvent.instanceQueue.remove();
-						storageFile.seek(peRecord.position + 2);
-						storageFile.writeByte(1);
+						acknowledgeRecord(peRecord.position, peRecord.size);
 						
 						if(pEvent.instanceQueue.isEmpty())
 						{
 							unacknowledgedEvents--;						
 							if(unacknowledgedEvents == 0)
 							{							
-								storageFile.setLength(32);
+								truncateStorage();
 								headPosition = 32;
 								tailPosition = 32;
 							}
@@ -886,8 +795,7 @@ class ServiceFilePersistence implements ServicePersistence
 						
 						int bodySize = peRecord.size - peRecord.headerSize;
 						byte[] bodyBuffer = new byte[bodySize];
-						storageFile.seek(peRecord.position + peRecord.headerSize);
-						storageFile.read(bodyBuffer);
+						storageFile.read(peRecord.position + peRecord.headerSize, bodyBuffer, 0, bodyBuffer.length);
 						
 						SequenceDecoder asnSequence = ASNDecoder.Sequence(bodyBuffer);
 						UUID instanceUid = asnSequence.OctetStringToUUID();
@@ -932,15 +840,7 @@ class ServiceFilePersistence implements ServicePersistence
 				{
 					if(eventKind == 1)
 					{
-						REvent rEvent = null;
-						for(REvent listElement: replacingEvents)
-						{
-							if(listElement.name.equals(eventName))
-							{
-								rEvent = listElement;
-								break;
-							}
-						}		
+						REvent rEvent = replacingEvents.get(eventName);
 						
 						if(rEvent == null)
 							return null;
@@ -950,8 +850,7 @@ class ServiceFilePersistence implements ServicePersistence
 						
 						int bodySize = rEvent.currentInstance.size - rEvent.currentInstance.headerSize;
 						byte[] bodyBuffer = new byte[bodySize];
-						storageFile.seek(rEvent.currentInstance.position + rEvent.currentInstance.headerSize);
-						storageFile.read(bodyBuffer);
+						storageFile.read(rEvent.currentInstance.position + rEvent.currentInstance.headerSize, bodyBuffer, 0, bodyBuffer.length);
 						
 						if(rEvent.currentInstance.isNull == false)
 						{
@@ -973,15 +872,7 @@ class ServiceFilePersistence implements ServicePersistence
 					}
 					else if(eventKind == 2)
 					{
-						QEvent qEvent = null;
-						for(QEvent listElement: queueingEvents)
-						{
-							if(listElement.name.equals(eventName))
-							{
-								qEvent = listElement;
-								break;
-							}
-						}		
+						QEvent qEvent = queueingEvents.get(eventName);
 						
 						if(qEvent == null)
 							return null;
@@ -993,8 +884,7 @@ class ServiceFilePersistence implements ServicePersistence
 						
 						int bodySize = qeRecord.size - qeRecord.headerSize;
 						byte[] bodyBuffer = new byte[bodySize];
-						storageFile.seek(qeRecord.position + qeRecord.headerSize);
-						storageFile.read(bodyBuffer);
+						storageFile.read(qeRecord.position + qeRecord.headerSize, bodyBuffer, 0, bodyBuffer.length);
 						
 						SequenceDecoder asnSequence = ASNDecoder.Sequence(bodyBuffer);
 						UUID instanceUid = asnSequence.OctetStringToUUID();
@@ -1006,15 +896,7 @@ class ServiceFilePersistence implements ServicePersistence
 					}
 					else if(eventKind == 4)
 					{
-						PEvent pEvent = null;
-						for(PEvent listElement: privateEvents)
-						{
-							if(listElement.name.equals(eventName))
-							{
-								pEvent = listElement;
-								break;
-							}
-						}		
+						PEvent pEvent = privateEvents.get(eventName);
 						
 						if(pEvent == null)
 							return null;
@@ -1026,8 +908,7 @@ class ServiceFilePersistence implements ServicePersistence
 						
 						int bodySize = peRecord.size - peRecord.headerSize;
 						byte[] bodyBuffer = new byte[bodySize];
-						storageFile.seek(peRecord.position + peRecord.headerSize);
-						storageFile.read(bodyBuffer);
+						storageFile.read(peRecord.position + peRecord.headerSize, bodyBuffer, 0, bodyBuffer.length);
 						
 						SequenceDecoder asnSequence = ASNDecoder.Sequence(bodyBuffer);
 						UUID instanceUid = asnSequence.OctetStringToUUID();
@@ -1053,6 +934,88 @@ class ServiceFilePersistence implements ServicePersistence
 		}
 	}
 
+	public List<ServiceEventPersistable> peek(int eventKind, String eventName, int offset, int maxCount) throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isClosed) 
+				throw new IllegalStateException("The storage has been closed.");
+
+			if(isInStorageMode) 
+				throw new IllegalStateException("The storage is in synchronous mode.");			
+
+			if(eventName == null)
+				throw new NullPointerException("The value of eventName is null.");
+			
+			List<ServiceEventPersistable> batch = new ArrayList<ServiceEventPersistable>();
+			if(eventKind == 1)
+			{
+				if(offset == 0 && maxCount > 0)
+				{
+					ServiceEventPersistable sep = peek(eventKind, eventName);
+					if(sep != null)
+						batch.add(sep);
+				}
+				return batch;
+			}
+			
+			try
+			{
+				try
+				{
+					if(eventKind == 2)
+					{
+						QEvent qEvent = queueingEvents.get(eventName);						
+						if(qEvent == null)
+							return batch;
+	
+						int index = 0;
+						for(QERecord qeRecord: qEvent.instanceQueue)
+						{
+							if(batch.size() >= maxCount)
+								break;
+							if(index++ < offset)
+								continue;
+							byte[] bodyBuffer = new byte[qeRecord.size - qeRecord.headerSize];
+							storageFile.read(qeRecord.position + qeRecord.headerSize, bodyBuffer, 0, bodyBuffer.length);
+							batch.add(decodeRecord(2, eventName, bodyBuffer));
+						}
+						return batch;
+					}
+					else if(eventKind == 4)
+					{
+						PEvent pEvent = privateEvents.get(eventName);						
+						if(pEvent == null)
+							return batch;
+	
+						int index = 0;
+						for(PERecord peRecord: pEvent.instanceQueue)
+						{
+							if(batch.size() >= maxCount)
+								break;
+							if(index++ < offset)
+								continue;
+							byte[] bodyBuffer = new byte[peRecord.size - peRecord.headerSize];
+							storageFile.read(peRecord.position + peRecord.headerSize, bodyBuffer, 0, bodyBuffer.length);
+							batch.add(decodeRecord(4, eventName, bodyBuffer));
+						}
+						return batch;
+					}
+					else 
+						throw new IllegalArgumentException("The value of eventKind is illegal.");
+				}
+				catch(AsnException ex)
+				{					
+					throw new PersistenceDataFormatSoftnetException(ex.getMessage());
+				}
+			}
+			catch(IOException ex)
+			{
+				throw new PersistenceIOSoftnetException(ex.getMessage());
+			}
+		}
+	}
+
 	public void save(ReplacingEvent replacingEvent) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
 	{
 		synchronized(mutex)
@@ -1066,7 +1029,7 @@ class ServiceFilePersistence implements ServicePersistence
 			try
 			{
 				byte[] nameBytes = replacingEvent.name.getBytes(java.nio.charset.StandardCharsets.UTF_16BE);				
-				int headerSize = 6 + nameBytes.length;
+				int headerSize = getHeaderSize(replacingEvent.name, nameBytes);
 				
 				byte[] bodyEncoding = null;				
 				if(replacingEvent.isNull == false)
@@ -1088,61 +1051,24 @@ class ServiceFilePersistence implements ServicePersistence
 				}
 				
 				int recordSize = headerSize + bodyEncoding.length;
-				if(tailPosition + recordSize > storageCapacity)					
+				int appendSize = getNameDefinitionSize(replacingEvent.name, nameBytes, headerSize) + recordSize;
+				prepareAppend(appendSize);
+				if(tailPosition + appendSize > storageCapacity)					
 					throw new PersistenceStorageFullSoftnetException(String.format("The persistance storage '%s' has reached the maximum size limit.", filePath));
 				
-				storageFile.seek(tailPosition);
-				byte[] sizeBytes = new byte[2];
-				ByteConverter.writeAsInt16(recordSize, sizeBytes, 0);
-				storageFile.write(sizeBytes);
-				
-				storageFile.seek(tailPosition + 2);
-				storageFile.writeByte(0);
-
-				storageFile.seek(tailPosition + 3);
-				storageFile.writeByte(replacingEvent.isNull == false ? 1 : 5);
-
-				storageFile.seek(tailPosition + 4);
-				ByteConverter.writeAsInt16(nameBytes.length, sizeBytes, 0);
-				storageFile.write(sizeBytes);
-
-				storageFile.seek(tailPosition + 6);
-				storageFile.write(nameBytes);
-
-				storageFile.seek(tailPosition + headerSize);
-				storageFile.write(bodyEncoding);				
-
-				long recordPosition = tailPosition;
-				tailPosition += recordSize;				
-
-				if(storageFile.length() > tailPosition)
-				{
-					storageFile.seek(tailPosition);
-					storageFile.writeByte(0);
-					storageFile.seek(tailPosition + 1);
-					storageFile.writeByte(0);
-				}
+				long recordPosition = appendRecord(replacingEvent.isNull == false ? 1 : 5, replacingEvent.name, nameBytes, headerSize, bodyEncoding);
 				
-				REvent rEvent = null;
-				for(REvent listElement: replacingEvents)
-				{
-					if(listElement.name.equals(replacingEvent.name))
-					{
-						rEvent = listElement;
-						break;
-					}
-				}		
+				REvent rEvent = replacingEvents.get(replacingEvent.name);
 				
 				if(rEvent == null)
 				{
 					rEvent = new REvent(replacingEvent.name);
-					replacingEvents.add(rEvent);						
+					replacingEvents.put(rEvent.name, rEvent);						
 					rEvent.lastInstance = new RERecord(recordPosition, recordSize, headerSize, replacingEvent.isNull);
 				}
 				else if(rEvent.lastInstance != null)
 				{
-					storageFile.seek(rEvent.lastInstance.position + 2);
-					storageFile.writeByte(1);
+					acknowledgeRecord(rEvent.lastInstance.position, rEvent.lastInstance.size);
 					rEvent.lastInstance = new RERecord(recordPosition, recordSize, headerSize, replacingEvent.isNull);
 				}
 				else
@@ -1170,7 +1096,7 @@ class ServiceFilePersistence implements ServicePersistence
 			try
 			{
 				byte[] nameBytes = queueingEvent.name.getBytes(java.nio.charset.StandardCharsets.UTF_16BE);				
-				int headerSize = 6 + nameBytes.length;
+				int headerSize = getHeaderSize(queueingEvent.name, nameBytes);
 				
 				ASNEncoder asnEncoder = new ASNEncoder();
 				SequenceEncoder asnSequence = asnEncoder.Sequence();
@@ -1181,39 +1107,33 @@ class ServiceFilePersistence implements ServicePersistence
 				byte[] bodyEncoding = asnEncoder.getEncoding();
 				
 				int recordSize = headerSize + bodyEncoding.length;
-				if(tailPosition + recordSize > storageCapacity)					
+				int appendSize = getNameDefinitionSize(queueingEvent.name, nameBytes, headerSize) + recordSize;
+				prepareAppend(appendSize);
+				if(tailPosition + appendSize > storageCapacity)					
 					throw new PersistenceStorageFullSoftnetException(String.format("The persistance storage '%s' has reached the maximum size limit.", filePath));
 
-				storageFile.seek(tailPosition);
-				byte[] sizeBytes = new byte[2];
-				ByteConverter.writeAsInt16(recordSize, sizeBytes, 0);
-				storageFile.write(sizeBytes);
-				
-				storageFile.seek(tailPosition + 2);
-				storageFile.writeByte(0);
-
-				storageFile.seek(tailPosition + 3);
-				storageFile.writeByte(2); // Softnet.Core.Constants.Service.EventController.QUEUEING_EVENT
-
-				storageFile.seek(tailPosition + 4);
-				ByteConverter.writeAsInt16(nameBytes.length, sizeBytes, 0);
-				storageFile.write(sizeBytes);
-
-				storageFile.seek(tailPosition + 6);
-				storageFile.write(nameBytes);
-
-				storageFile.seek(tailPosition + headerSize);
-				storageFile.write(bodyEncoding);				
-
-				tailPosition += recordSize;				
+				appendRecord(2, queueingEvent.name, nameBytes, headerSize, bodyEncoding); // Softnet.Core.Constants.Service.EventController.QUEUEING_EVENT
+			}
+			catch(IOException ex)
+			{
+				throw new PersistenceIOSoftnetException(ex.getMessage());
+			}
+		}
+	}
 
-				if(storageFile.length() > tailPosition)
-				{
-					storageFile.seek(tailPosition);
-					storageFile.writeByte(0);
-					storageFile.seek(tailPosition + 1);
-					storageFile.writeByte(0);
-				}							
+	public int save(List<QueueingEvent> events) throws PersistenceIOSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isClosed) 
+				throw new IllegalStateException("The storage has been closed.");
+			
+			if(isInStorageMode == false) 
+				throw new IllegalStateException("The storage is in asynchronous mode.");
+			
+			try
+			{
+				return appendQueueingRecords(events).size();
 			}
 			catch(IOException ex)
 			{
@@ -1235,7 +1155,7 @@ class ServiceFilePersistence implements ServicePersistence
 			try
 			{
 				byte[] nameBytes = privateEvent.name.getBytes(java.nio.charset.StandardCharsets.UTF_16BE);				
-				int headerSize = 6 + nameBytes.length;
+				int headerSize = getHeaderSize(privateEvent.name, nameBytes);
 				
 				ASNEncoder asnEncoder = new ASNEncoder();
 				SequenceEncoder asnSequence = asnEncoder.Sequence();
@@ -1247,39 +1167,12 @@ class ServiceFilePersistence implements ServicePersistence
 				byte[] bodyEncoding = asnEncoder.getEncoding();
 				
 				int recordSize = headerSize + bodyEncoding.length;
-				if(tailPosition + recordSize > storageCapacity)					
+				int appendSize = getNameDefinitionSize(privateEvent.name, nameBytes, headerSize) + recordSize;
+				prepareAppend(appendSize);
+				if(tailPosition + appendSize > storageCapacity)					
 					throw new PersistenceStorageFullSoftnetException(String.format("The persistance storage '%s' has reached the maximum size limit.", filePath));
 
-				storageFile.seek(tailPosition);
-				byte[] sizeBytes = new byte[2];
-				ByteConverter.writeAsInt16(recordSize, sizeBytes, 0);
-				storageFile.write(sizeBytes);
-				
-				storageFile.seek(tailPosition + 2);
-				storageFile.writeByte(0);
-
-				storageFile.seek(tailPosition + 3);
-				storageFile.writeByte(4); // Softnet.Core.Constants.Service.EventController.PRIVATE_EVENT
-
-				storageFile.seek(tailPosition + 4);
-				ByteConverter.writeAsInt16(nameBytes.length, sizeBytes, 0);
-				storageFile.write(sizeBytes);
-
-				storageFile.seek(tailPosition + 6);
-				storageFile.write(nameBytes);
-
-				storageFile.seek(tailPosition + headerSize);
-				storageFile.write(bodyEncoding);				
-
-				tailPosition += recordSize;				
-
-				if(storageFile.length() > tailPosition)
-				{
-					storageFile.seek(tailPosition);
-					storageFile.writeByte(0);
-					storageFile.seek(tailPosition + 1);
-					storageFile.writeByte(0);
-				}								
+				appendRecord(4, privateEvent.name, nameBytes, headerSize, bodyEncoding); // Softnet.Core.Constants.Service.EventController.PRIVATE_EVENT
 			}
 			catch(IOException ex)
 			{
@@ -1303,11 +1196,11 @@ class ServiceFilePersistence implements ServicePersistence
 			
 			try
 			{
-				storageFile.seek(peekedRecord.position + 2);
-				storageFile.writeByte(1);
+				acknowledgeRecord(peekedRecord.position, peekedRecord.size);
 				
 				headPosition += peekedRecord.size;
 				peekedRecord = null;
+				peekedBatch.clear();
 			}
 			catch(IOException ex)
 			{
@@ -1333,57 +1226,19 @@ class ServiceFilePersistence implements ServicePersistence
 					if(peekedRecord != null)
 					{
 						byte[] bodyBuffer = new byte[peekedRecord.size - peekedRecord.headerSize];
-						storageFile.seek(peekedRecord.position + peekedRecord.headerSize);
-						storageFile.read(bodyBuffer);
+						storageFile.read(peekedRecord.position + peekedRecord.headerSize, bodyBuffer, 0, bodyBuffer.length);
 						
-						if(peekedRecord.messageKind == 1)
-						{
-							SequenceDecoder asnSequence = ASNDecoder.Sequence(bodyBuffer);
-							UUID instanceUid = asnSequence.OctetStringToUUID();
-							byte[] argumentsEncoding = null;
-							if(asnSequence.exists(1))
-								argumentsEncoding = asnSequence.OctetString();
-							
-							return ServiceEventPersistable.createReplacingEvent(peekedRecord.eventName, instanceUid, argumentsEncoding);
-						}
-						else if(peekedRecord.messageKind == 5)
-						{
-							SequenceDecoder asnSequence = ASNDecoder.Sequence(bodyBuffer);
-							UUID instanceUid = asnSequence.OctetStringToUUID();
-							
-							return ServiceEventPersistable.createReplacingNullEvent(peekedRecord.eventName, instanceUid);
-						}
-						else if(peekedRecord.messageKind == 2)
-						{
-							SequenceDecoder asnSequence = ASNDecoder.Sequence(bodyBuffer);
-							UUID instanceUid = asnSequence.OctetStringToUUID();
-							byte[] argumentsEncoding = null;
-							if(asnSequence.exists(1))
-								argumentsEncoding = asnSequence.OctetString();
-							
-							return ServiceEventPersistable.createQueueingEvent(peekedRecord.eventName, instanceUid, argumentsEncoding);
-						}
-						else // peekedRecord.messageKind == 4
-						{
-							SequenceDecoder asnSequence = ASNDecoder.Sequence(bodyBuffer);
-							UUID instanceUid = asnSequence.OctetStringToUUID();
-							long clientId = asnSequence.Int64();
-							byte[] argumentsEncoding = null;
-							if(asnSequence.exists(1))
-								argumentsEncoding = asnSequence.OctetString();
-							
-							return ServiceEventPersistable.createPrivateEvent(peekedRecord.eventName, instanceUid, clientId, argumentsEncoding);
-						}
-					}
-					else
-					{
-						byte[] buffer = new byte[128];
-						long fileLength = storageFile.length();
-						while(true)
+						return decodeRecord(peekedRecord.messageKind, peekedRecord.eventName, bodyBuffer);
+					}
+					else
+					{
+						byte[] buffer = new byte[128];
+						long fileLength = storageFile.length();
+						while(true)
 						{
 							if(fileLength - headPosition < 2)
 							{
-								storageFile.setLength(32);
+								truncateStorage();
 								headPosition = 32;
 								tailPosition = 32;
 								ancientDataTailPosition = 32;
@@ -1393,12 +1248,11 @@ class ServiceFilePersistence implements ServicePersistence
 								return null;
 							}
 												
-							storageFile.seek(headPosition);
-							storageFile.read(buffer, 0, 2);
+							storageFile.read(headPosition, buffer, 0, 2);
 							int recordSize = ByteConverter.toInt32FromInt16(buffer, 0);
 							if(recordSize == 0)
 							{
-								storageFile.setLength(32);
+								truncateStorage();
 								headPosition = 32;
 								tailPosition = 32;
 								ancientDataTailPosition = 32;
@@ -1414,8 +1268,7 @@ class ServiceFilePersistence implements ServicePersistence
 							if(recordSize < 6)
 								throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", filePath));
 															
-							storageFile.seek(headPosition + 2);
-							int isAcknowledged = storageFile.readByte();
+							int isAcknowledged = storageFile.readByte(headPosition + 2);
 							if(isAcknowledged != 0)
 							{
 								if(isAcknowledged == 1)
@@ -1427,74 +1280,110 @@ class ServiceFilePersistence implements ServicePersistence
 									throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", filePath));	
 							}
 																				
-							storageFile.seek(headPosition + 3);
-							int messageKind = storageFile.readByte();
+							int messageKind = storageFile.readByte(headPosition + 3);
+							if(messageKind == EventNameDefinition)
+							{
+								headPosition += recordSize;
+								continue;
+							}
+							messageKind = messageKind & ~EventNameIdFlag;
 							
 							if(buffer.length < recordSize)
 								buffer = new byte[recordSize];
 							
-							storageFile.seek(headPosition + 4);
-							storageFile.read(buffer, 0, 2);
-							int nameBytesCount = ByteConverter.toInt32FromInt16(buffer, 0);
-							if(nameBytesCount < 1 || nameBytesCount > 512 || 8 + nameBytesCount > recordSize)
-								throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", filePath));					
-							
-							storageFile.seek(headPosition + 6);
-							storageFile.read(buffer, 0, nameBytesCount);				
-							String eventName = new String(buffer, 0, nameBytesCount, java.nio.charset.StandardCharsets.UTF_16BE);
+							storageFile.read(headPosition, buffer, 0, recordSize);
+							String eventName = readEventName(buffer, 0, recordSize);
 							
-							int headerSize = 6 + nameBytesCount;										
+							int headerSize = getHeaderSize(buffer, 0);
 							peekedRecord = new PeekedRecord(headPosition, recordSize, headerSize, eventName, messageKind);
 							
 							byte[] bodyBuffer = new byte[recordSize - headerSize];
-							storageFile.seek(headPosition + headerSize);
-							storageFile.read(bodyBuffer);
+							System.arraycopy(buffer, headerSize, bodyBuffer, 0, bodyBuffer.length);
 							
-							if(messageKind == 1)
-							{
-								SequenceDecoder asnSequence = ASNDecoder.Sequence(bodyBuffer);
-								UUID instanceUid = asnSequence.OctetStringToUUID();
-								byte[] argumentsEncoding = null;
-								if(asnSequence.exists(1))
-									argumentsEncoding = asnSequence.OctetString();
-								
-								return ServiceEventPersistable.createReplacingEvent(eventName, instanceUid, argumentsEncoding);
-							}
-							
-							if(messageKind == 5)
-							{
-								SequenceDecoder asnSequence = ASNDecoder.Sequence(bodyBuffer);
-								UUID instanceUid = asnSequence.OctetStringToUUID();
-								
-								return ServiceEventPersistable.createReplacingNullEvent(eventName, instanceUid);
-							}
-							
-							if(messageKind == 2)
-							{
-								SequenceDecoder asnSequence = ASNDecoder.Sequence(bodyBuffer);
-								UUID instanceUid = asnSequence.OctetStringToUUID();
-								byte[] argumentsEncoding = null;
-								if(asnSequence.exists(1))
-									argumentsEncoding = asnSequence.OctetString();
-								
-								return ServiceEventPersistable.createQueueingEvent(eventName, instanceUid, argumentsEncoding);
-							}
-							
-							if(messageKind == 4)
+							return decodeRecord(messageKind, eventName, bodyBuffer);
+						}
+					}
+				}
+				catch(AsnException ex)
+				{
+					throw new PersistenceDataFormatSoftnetException(ex.getMessage());
+				}
+			}
+			catch(IOException ex)
+			{
+				throw new PersistenceIOSoftnetException(ex.getMessage());
+			}
+		}		
+	}
+
+	public List<ServiceEventPersistable> peek(int offset, int maxCount, int maxBytes) throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(offset < 0)
+				throw new IllegalArgumentException("The value of 'offset' must not be negative.");
+			if(maxCount < 1)
+				throw new IllegalArgumentException("The value of 'maxCount' must be greater than 0.");
+			
+			ArrayList<ServiceEventPersistable> batch = new ArrayList<ServiceEventPersistable>();
+			long batchBytes = 0;
+			long position;
+			if(offset > 0 && offset <= peekedBatch.size() && peekedBatch.get(offset - 1).position >= 0)
+			{
+				BatchRecord lastRecord = peekedBatch.get(offset - 1);
+				peekedBatch.subList(offset, peekedBatch.size()).clear();
+				position = lastRecord.position + lastRecord.size;
+			}
+			else
+			{
+				peekedBatch.clear();
+				ServiceEventPersistable sep = peek();
+				if(sep == null)
+					return batch;
+				
+				peekedBatch.add(new BatchRecord(peekedRecord.position, peekedRecord.size, sep.instanceUid));
+				if(offset == 0)
+				{
+					batch.add(sep);
+					batchBytes = peekedRecord.size;
+				}
+				position = peekedRecord.position + peekedRecord.size;
+			}
+			
+			try
+			{
+				try
+				{
+					SequentialReader reader = new SequentialReader(tailPosition);
+					while(batch.size() < maxCount && tailPosition - position >= 2)
+					{
+						int readOffset = reader.read(position, 2);
+						int recordSize = ByteConverter.toInt32FromInt16(reader.buffer, readOffset);
+						if(recordSize == 0)
+							break;
+						if(recordSize < 6 || position + recordSize > tailPosition)
+							throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", filePath));
+						
+						readOffset = reader.read(position, recordSize);
+						byte[] buffer = reader.buffer;
+						int messageKind = buffer[readOffset + 3];
+						if(buffer[readOffset + 2] == 0 && messageKind != EventNameDefinition)
+						{
+							if(batch.isEmpty() == false && batchBytes + recordSize > maxBytes)
+								break;
+							String eventName = readEventName(buffer, readOffset, recordSize);
+							int headerSize = getHeaderSize(buffer, readOffset);
+							ServiceEventPersistable sep = decodeRecord(messageKind & ~EventNameIdFlag, eventName, Arrays.copyOfRange(buffer, readOffset + headerSize, readOffset + recordSize));
+							peekedBatch.add(new BatchRecord(position, recordSize, sep.instanceUid));
+							if(peekedBatch.size() > offset)
 							{
-								SequenceDecoder asnSequence = ASNDecoder.Sequence(bodyBuffer);
-								UUID instanceUid = asnSequence.OctetStringToUUID();
-								long clientId = asnSequence.Int64();
-								byte[] argumentsEncoding = null;
-								if(asnSequence.exists(1))
-									argumentsEncoding = asnSequence.OctetString();
-								
-								return ServiceEventPersistable.createPrivateEvent(eventName, instanceUid, clientId, argumentsEncoding);
+								batch.add(sep);
+								batchBytes += recordSize;
 							}
-							
-							throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", filePath));
 						}
+						position += recordSize;
 					}
+					return batch;
 				}
 				catch(AsnException ex)
 				{
@@ -1505,7 +1394,627 @@ class ServiceFilePersistence implements ServicePersistence
 			{
 				throw new PersistenceIOSoftnetException(ex.getMessage());
 			}
-		}		
+		}
+	}
+
+	public void setAcknowledment(UUID instanceUid) throws PersistenceIOSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isClosed) 
+				throw new IllegalStateException("The storage has been closed.");
+
+			if(isInStorageMode == false) 
+				throw new IllegalStateException("The storage is in asynchronous mode.");
+			
+			int index = -1;
+			for(int i = 0; i < peekedBatch.size(); i++)
+			{
+				if(peekedBatch.get(i).instanceUid.equals(instanceUid))
+				{
+					index = i;
+					break;
+				}
+			}
+			if(index < 0)
+				throw new IllegalStateException("The event has not been peeked up to be acknowledged.");
+			
+			try
+			{
+				for(int i = 0; i <= index; i++)
+				{
+					BatchRecord batchRecord = peekedBatch.get(i);
+					if(batchRecord.position >= 0 && storageFile.readByte(batchRecord.position + 2) == 0)
+						acknowledgeRecord(batchRecord.position, batchRecord.size);
+				}
+				
+				BatchRecord lastRecord = peekedBatch.get(index);
+				if(lastRecord.position >= 0)
+					headPosition = lastRecord.position + lastRecord.size;
+				peekedRecord = null;
+				peekedBatch.subList(0, index + 1).clear();
+			}
+			catch(IOException ex)
+			{
+				throw new PersistenceIOSoftnetException(ex.getMessage());
+			}
+		}
+	}
+
+	private ServiceEventPersistable decodeRecord(int messageKind, String eventName, byte[] bodyBuffer) throws AsnException, PersistenceDataFormatSoftnetException
+	{
+		if(messageKind == 1)
+		{
+			SequenceDecoder asnSequence = ASNDecoder.Sequence(bodyBuffer);
+			UUID instanceUid = asnSequence.OctetStringToUUID();
+			byte[] argumentsEncoding = null;
+			if(asnSequence.exists(1))
+				argumentsEncoding = asnSequence.OctetString();
+			
+			return ServiceEventPersistable.createReplacingEvent(eventName, instanceUid, argumentsEncoding);
+		}
+		
+		if(messageKind == 5)
+		{
+			SequenceDecoder asnSequence = ASNDecoder.Sequence(bodyBuffer);
+			UUID instanceUid = asnSequence.OctetStringToUUID();
+			
+			return ServiceEventPersistable.createReplacingNullEvent(eventName, instanceUid);
+		}
+		
+		if(messageKind == 2)
+		{
+			SequenceDecoder asnSequence = ASNDecoder.Sequence(bodyBuffer);
+			UUID instanceUid = asnSequence.OctetStringToUUID();
+			byte[] argumentsEncoding = null;
+			if(asnSequence.exists(1))
+				argumentsEncoding = asnSequence.OctetString();
+			
+			return ServiceEventPersistable.createQueueingEvent(eventName, instanceUid, argumentsEncoding);
+		}
+		
+		if(messageKind == 4)
+		{
+			SequenceDecoder asnSequence = ASNDecoder.Sequence(bodyBuffer);
+			UUID instanceUid = asnSequence.OctetStringToUUID();
+			long clientId = asnSequence.Int64();
+			byte[] argumentsEncoding = null;
+			if(asnSequence.exists(1))
+				argumentsEncoding = asnSequence.OctetString();
+			
+			return ServiceEventPersistable.createPrivateEvent(eventName, instanceUid, clientId, argumentsEncoding);
+		}
+		
+		throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", filePath));
+	}
+
+	private void acknowledgeRecord(long position, int size) throws IOException
+	{
+		storageFile.writeByte(position + 2, 1);
+		deadBytes += size;
+		if(isCompacting && position < compactedPosition)
+			compactionAcks.add(position);
+	}
+
+	private void truncateStorage() throws IOException
+	{
+		compactionGeneration++;
+		deleteCheckpoint();
+		storageFile.setLength(32);
+		deadBytes = 0;
+		eventNameIds.clear();
+		eventNames.clear();
+		peekedBatch.clear();
+	}
+
+	private void prepareAppend(int recordSize) throws IOException
+	{
+		if(maintenanceFailure != null)
+		{
+			IOException ex = maintenanceFailure;
+			maintenanceFailure = null;
+			throw ex;
+		}
+
+		if(deadBytes > 0 && (tailPosition + recordSize > storageCapacity || (deadBytes >= storageCapacity / 4 && deadBytes >= tailPosition - 32 - deadBytes)))
+		{
+			if(isCompacting == false)
+			{
+				isCompacting = true;
+				isCompactionRequested = true;
+				startMaintenanceThread();
+			}
+			if(tailPosition + recordSize > storageCapacity)
+				awaitCompaction();
+		}
+		
+		if(fileStorageOptions.checkpointIntervalBytes > 0 && tailPosition - checkpointTailPosition >= fileStorageOptions.checkpointIntervalBytes && isCheckpointing == false)
+			scheduleCheckpoint();
+	}
+
+	private void scheduleCheckpoint() throws IOException
+	{
+		storageFile.flush();
+		pendingCheckpoint = encodeCheckpoint();
+		pendingCheckpointTail = tailPosition;
+		pendingCheckpointGeneration = checkpointGeneration;
+		isCheckpointing = true;
+		startMaintenanceThread();
+	}
+
+	private void startMaintenanceThread()
+	{
+		if(maintenanceThread == null)
+		{
+			maintenanceThread = new MaintenanceThread();
+			maintenanceThread.setName("softnet-persistence-maintenance");
+			maintenanceThread.setDaemon(true);
+			maintenanceThread.start();
+		}
+		mutex.notifyAll();
+	}
+
+	private void awaitCompaction() throws IOException
+	{
+		try
+		{
+			while(isCompacting && isClosed == false)
+				mutex.wait();
+		}
+		catch(InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		if(maintenanceFailure != null)
+		{
+			IOException ex = maintenanceFailure;
+			maintenanceFailure = null;
+			throw ex;
+		}
+	}
+
+	private long copyLiveRecords(RandomAccessFile compactedFile, long endPosition, TreeMap<Long, Long> relocations, long writePosition) throws IOException
+	{
+		byte[] block = new byte[(int)(endPosition - compactedPosition)];
+		storageFile.read(compactedPosition, block, 0, block.length);
+		byte[] output = new byte[block.length];
+		int outputSize = 0;
+		byte[] buffer = new byte[512];
+		
+		long readPosition = compactedPosition;
+		while(readPosition < endPosition)
+		{
+			byte[] record = block;
+			int offset = (int)(readPosition - compactedPosition);
+			if(offset + 3 > block.length)
+			{
+				storageFile.read(readPosition, buffer, 0, 3);
+				record = buffer;
+				offset = 0;
+			}
+			
+			int recordSize = ByteConverter.toInt32FromInt16(record, offset);
+			if(recordSize < 6)
+				throw new IOException(String.format("The data in the persistance storage '%s' has invalid format.", filePath));
+			
+			if(record[offset + 2] == 0)
+			{
+				if(offset + recordSize > record.length)
+				{
+					if(buffer.length < recordSize)
+						buffer = new byte[recordSize];
+					storageFile.read(readPosition, buffer, 0, recordSize);
+					record = buffer;
+					offset = 0;
+				}
+				if(outputSize + recordSize > output.length)
+					output = Arrays.copyOf(output, outputSize + recordSize);
+				System.arraycopy(record, offset, output, outputSize, recordSize);
+				outputSize += recordSize;
+				relocations.put(readPosition, writePosition);
+				writePosition += recordSize;
+			}
+			readPosition += recordSize;
+		}
+		compactedFile.write(output, 0, outputSize);
+		compactedPosition = readPosition;
+		return writePosition;
+	}
+
+	private void replaceWithCompactedFile(File compactedFile, TreeMap<Long, Long> relocations, long writePosition) throws IOException
+	{
+		deleteCheckpoint();
+		storageFile.close();
+		try
+		{
+			Files.move(compactedFile.toPath(), new File(filePath).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally
+		{
+			storageFile = openStorageFile(filePath);
+		}
+		
+		headPosition = relocateForward(relocations, headPosition, writePosition);
+		ancientDataTailPosition = relocateForward(relocations, ancientDataTailPosition, writePosition);
+		tailPosition = writePosition;
+		
+		for(REvent rEvent: replacingEvents.values())
+		{
+			if(rEvent.currentInstance != null)
+				rEvent.currentInstance.position = relocate(relocations, rEvent.currentInstance.position);
+			if(rEvent.lastInstance != null)
+				rEvent.lastInstance.position = relocate(relocations, rEvent.lastInstance.position);
+		}
+		for(QEvent qEvent: queueingEvents.values())
+		{
+			for(QERecord qeRecord: qEvent.instanceQueue)
+				qeRecord.position = relocate(relocations, qeRecord.position);
+		}
+		for(PEvent pEvent: privateEvents.values())
+		{
+			for(PERecord peRecord: pEvent.instanceQueue)
+				peRecord.position = relocate(relocations, peRecord.position);
+		}
+		if(peekedRecord != null)
+			peekedRecord.position = relocate(relocations, peekedRecord.position);
+		for(BatchRecord batchRecord: peekedBatch)
+		{
+			Long newPosition = relocations.get(batchRecord.position);
+			batchRecord.position = newPosition != null ? newPosition : -1;
+		}
+	}
+
+	private boolean loadCheckpoint(long fileLength) throws IOException
+	{
+		if(hasCheckpoint == false)
+			return false;
+		
+		if(readCheckpoint(fileLength))
+			return true;
+		
+		replacingEvents.clear();
+		eventNameIds.clear();
+		eventNames.clear();
+		deleteCheckpoint();
+		return false;
+	}
+
+	private boolean readCheckpoint(long fileLength) throws IOException
+	{
+		try
+		{
+			SequenceDecoder asnRoot = ASNDecoder.Sequence(Files.readAllBytes(new File(filePath + ".ckpt").toPath()));
+			if(asnRoot.OctetStringToUUID().equals(serviceUid) == false || asnRoot.OctetStringToUUID().equals(storageUid) == false)
+				return false;
+			long checkpointTail = asnRoot.Int64();
+			long checkpointDeadBytes = asnRoot.Int64();
+			if(checkpointTail < 32 || checkpointTail > fileLength)
+				return false;
+			
+			SequenceDecoder asnNames = asnRoot.Sequence();
+			while(asnNames.hasNext())
+			{
+				SequenceDecoder asnName = asnNames.Sequence();
+				int nameId = asnName.Int32();
+				String eventName = asnName.UTF8String();
+				if(nameId < 0 || nameId >= MaxEventNameIds)
+					return false;
+				registerEventName(nameId, eventName);
+			}
+			
+			byte[] buffer = new byte[518];
+			LinkedList<REvent> checkpointEvents = new LinkedList<REvent>();
+			SequenceDecoder asnEvents = asnRoot.Sequence();
+			while(asnEvents.hasNext())
+			{
+				SequenceDecoder asnEvent = asnEvents.Sequence();
+				String eventName = asnEvent.UTF8String();
+				long position = asnEvent.Int64();
+				int size = asnEvent.Int32();
+				boolean isNull = asnEvent.Boolean();
+				
+				byte[] nameBytes = eventName.getBytes(java.nio.charset.StandardCharsets.UTF_16BE);
+				if(position < 32 || position + size > checkpointTail || 6 + nameBytes.length > size || nameBytes.length > 512)
+					return false;
+				
+				storageFile.read(position, buffer, 0, 6);
+				int headerSize = getHeaderSize(buffer, 0);
+				if(ByteConverter.toInt32FromInt16(buffer, 0) != size || (buffer[3] & ~EventNameIdFlag) != (isNull ? 5 : 1) || headerSize > size)
+					return false;
+				storageFile.read(position, buffer, 0, headerSize);
+				if(readEventName(buffer, 0, size).equals(eventName) == false)
+					return false;
+				boolean isAcknowledged = buffer[2] != 0;
+				
+				if(asnEvent.exists(1))
+				{
+					long supersededPosition = asnEvent.Int64();
+					int supersededSize = asnEvent.Int32();
+					storageFile.read(supersededPosition, buffer, 0, 3);
+					if(ByteConverter.toInt32FromInt16(buffer, 0) != supersededSize)
+						return false;
+					if(buffer[2] == 0)
+					{
+						storageFile.writeByte(supersededPosition + 2, 1);
+						checkpointDeadBytes += supersededSize;
+					}
+				}
+				
+				if(isAcknowledged)
+					continue;
+				
+				REvent rEvent = new REvent(eventName);
+				rEvent.lastInstance = new RERecord(position, size, headerSize, isNull);
+				checkpointEvents.add(rEvent);
+			}
+			
+			for(REvent rEvent: checkpointEvents)
+				replacingEvents.put(rEvent.name, rEvent);
+			deadBytes = checkpointDeadBytes;
+			checkpointTailPosition = checkpointTail;
+			return true;
+		}
+		catch(AsnException ex)
+		{
+			return false;
+		}
+		catch(PersistenceDataFormatSoftnetException ex)
+		{
+			return false;
+		}
+	}
+
+	private void writeCheckpoint() throws IOException
+	{
+		storageFile.force();
+		
+		File checkpointFile = new File(filePath + ".ckpt");
+		File temporaryFile = new File(filePath + ".ckpt.tmp");
+		writeCheckpointFile(temporaryFile, encodeCheckpoint());
+		Files.move(temporaryFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		hasCheckpoint = true;
+		checkpointTailPosition = tailPosition;
+	}
+
+	private byte[] encodeCheckpoint()
+	{
+		ASNEncoder asnEncoder = new ASNEncoder();
+		SequenceEncoder asnRoot = asnEncoder.Sequence();
+		asnRoot.OctetString(serviceUid);
+		asnRoot.OctetString(storageUid);
+		asnRoot.Int64(tailPosition);
+		asnRoot.Int64(deadBytes);
+		SequenceEncoder asnNames = asnRoot.Sequence();
+		for(int nameId = 0; nameId < eventNames.size(); nameId++)
+		{
+			if(eventNames.get(nameId) == null)
+				continue;
+			SequenceEncoder asnName = asnNames.Sequence();
+			asnName.Int32(nameId);
+			asnName.UTF8String(eventNames.get(nameId));
+		}
+		SequenceEncoder asnEvents = asnRoot.Sequence();
+		for(REvent rEvent: replacingEvents.values())
+		{
+			RERecord instance = rEvent.lastInstance != null ? rEvent.lastInstance : rEvent.currentInstance;
+			if(instance == null)
+				continue;
+			SequenceEncoder asnEvent = asnEvents.Sequence();
+			asnEvent.UTF8String(rEvent.name);
+			asnEvent.Int64(instance.position);
+			asnEvent.Int32(instance.size);
+			asnEvent.Boolean(instance.isNull);
+			if(rEvent.lastInstance != null && rEvent.currentInstance != null)
+			{
+				asnEvent.Int64(1, rEvent.currentInstance.position);
+				asnEvent.Int32(rEvent.currentInstance.size);
+			}
+		}
+		return asnEncoder.getEncoding();
+	}
+
+	private void writeCheckpointFile(File file, byte[] encoding) throws IOException
+	{
+		FileOutputStream fileStream = new FileOutputStream(file);
+		try
+		{
+			fileStream.write(encoding);
+			fileStream.getFD().sync();
+		}
+		finally
+		{
+			fileStream.close();
+		}
+	}
+
+	private void deleteCheckpoint() throws IOException
+	{
+		checkpointTailPosition = 32;
+		checkpointGeneration++;
+		if(hasCheckpoint == false)
+			return;
+		Files.deleteIfExists(new File(filePath + ".ckpt").toPath());
+		hasCheckpoint = false;
+	}
+
+	private long relocate(TreeMap<Long, Long> relocations, long position)
+	{
+		Long newPosition = relocations.get(position);
+		return newPosition != null ? newPosition : position;
+	}
+
+	private long relocateForward(TreeMap<Long, Long> relocations, long position, long tailPosition)
+	{
+		Map.Entry<Long, Long> entry = relocations.ceilingEntry(position);
+		return entry != null ? entry.getValue() : tailPosition;
+	}
+
+	private long appendRecord(int messageKind, String eventName, byte[] nameBytes, int headerSize, byte[] bodyEncoding) throws IOException
+	{
+		int definitionSize = getNameDefinitionSize(eventName, nameBytes, headerSize);
+		int recordSize = headerSize + bodyEncoding.length;
+		boolean hasTrailingData = storageFile.length() > tailPosition + definitionSize + recordSize;
+		
+		byte[] record = new byte[definitionSize + recordSize + (hasTrailingData ? 2 : 0)];
+		encodeRecord(messageKind, eventName, nameBytes, headerSize, bodyEncoding, record, 0);
+		
+		long recordPosition = tailPosition + definitionSize;
+		storageFile.write(tailPosition, record, 0, record.length);
+		if(definitionSize > 0)
+			registerEventName(eventNames.size(), eventName);
+		tailPosition += definitionSize + recordSize;
+		return recordPosition;
+	}
+
+	private ArrayList<QERecord> appendQueueingRecords(List<QueueingEvent> events) throws IOException
+	{
+		byte[][] nameBytes = new byte[events.size()][];
+		byte[][] bodyEncodings = new byte[events.size()][];
+		long appendSizeLimit = 0;
+		for(int i = 0; i < events.size(); i++)
+		{
+			QueueingEvent queueingEvent = events.get(i);
+			nameBytes[i] = queueingEvent.name.getBytes(java.nio.charset.StandardCharsets.UTF_16BE);
+			
+			ASNEncoder asnEncoder = new ASNEncoder();
+			SequenceEncoder asnSequence = asnEncoder.Sequence();
+			asnSequence.OctetString(queueingEvent.uid);
+			byte[] argumentsEncoding = queueingEvent.getEncoding();
+			if(argumentsEncoding != null)
+				asnSequence.OctetString(1, argumentsEncoding);
+			bodyEncodings[i] = asnEncoder.getEncoding();
+			
+			appendSizeLimit += 14 + 2 * nameBytes[i].length + bodyEncodings[i].length;
+		}
+		prepareAppend((int)Math.min(appendSizeLimit, Integer.MAX_VALUE - 2));
+		appendSizeLimit = Math.min(appendSizeLimit, Math.max(storageCapacity - tailPosition, 0));
+		
+		ArrayList<QERecord> records = new ArrayList<QERecord>(events.size());
+		ArrayList<String> definedNames = new ArrayList<String>();
+		byte[] buffer = new byte[(int)appendSizeLimit + 2];
+		int appendSize = 0;
+		for(int i = 0; i < events.size(); i++)
+		{
+			String eventName = events.get(i).name;
+			int headerSize = getHeaderSize(eventName, nameBytes[i]);
+			int definitionSize = getNameDefinitionSize(eventName, nameBytes[i], headerSize);
+			int recordSize = headerSize + bodyEncodings[i].length;
+			if(tailPosition + appendSize + definitionSize + recordSize > storageCapacity)
+				break;
+			
+			encodeRecord(2, eventName, nameBytes[i], headerSize, bodyEncodings[i], buffer, appendSize); // Softnet.Core.Constants.Service.EventController.QUEUEING_EVENT
+			if(definitionSize > 0)
+			{
+				registerEventName(eventNames.size(), eventName);
+				definedNames.add(eventName);
+			}
+			records.add(new QERecord(tailPosition + appendSize + definitionSize, recordSize, headerSize));
+			appendSize += definitionSize + recordSize;
+		}
+		if(records.isEmpty())
+			return records;
+		
+		boolean hasTrailingData = storageFile.length() > tailPosition + appendSize;
+		try
+		{
+			storageFile.write(tailPosition, buffer, 0, appendSize + (hasTrailingData ? 2 : 0));
+		}
+		catch(IOException ex)
+		{
+			for(String eventName: definedNames)
+			{
+				eventNameIds.remove(eventName);
+				eventNames.remove(eventNames.size() - 1);
+			}
+			throw ex;
+		}
+		tailPosition += appendSize;
+		return records;
+	}
+
+	private void encodeRecord(int messageKind, String eventName, byte[] nameBytes, int headerSize, byte[] bodyEncoding, byte[] record, int offset)
+	{
+		int definitionSize = getNameDefinitionSize(eventName, nameBytes, headerSize);
+		int recordSize = headerSize + bodyEncoding.length;
+		
+		int nameId = -1;
+		if(headerSize == 6)
+		{
+			Integer knownId = eventNameIds.get(eventName);
+			if(knownId != null)
+				nameId = knownId;
+			else
+			{
+				nameId = eventNames.size();
+				ByteConverter.writeAsInt16(definitionSize, record, offset);
+				record[offset + 3] = (byte)EventNameDefinition;
+				ByteConverter.writeAsInt16(nameBytes.length, record, offset + 4);
+				System.arraycopy(nameBytes, 0, record, offset + 6, nameBytes.length);
+				ByteConverter.writeAsUInt16(nameId, record, offset + 6 + nameBytes.length);
+			}
+		}
+		
+		offset += definitionSize;
+		ByteConverter.writeAsInt16(recordSize, record, offset);
+		record[offset + 2] = 0;
+		if(nameId >= 0)
+		{
+			record[offset + 3] = (byte)(messageKind | EventNameIdFlag);
+			ByteConverter.writeAsUInt16(nameId, record, offset + 4);
+		}
+		else
+		{
+			record[offset + 3] = (byte)messageKind;
+			ByteConverter.writeAsInt16(nameBytes.length, record, offset + 4);
+			System.arraycopy(nameBytes, 0, record, offset + 6, nameBytes.length);
+		}
+		System.arraycopy(bodyEncoding, 0, record, offset + headerSize, bodyEncoding.length);
+	}
+
+	private int getHeaderSize(String eventName, byte[] nameBytes)
+	{
+		if(eventNameIds.containsKey(eventName) || eventNames.size() < MaxEventNameIds)
+			return 6;
+		return 6 + nameBytes.length;
+	}
+
+	private int getNameDefinitionSize(String eventName, byte[] nameBytes, int headerSize)
+	{
+		if(headerSize != 6 || eventNameIds.containsKey(eventName))
+			return 0;
+		return 8 + nameBytes.length;
+	}
+
+	private int getHeaderSize(byte[] buffer, int offset)
+	{
+		if((buffer[offset + 3] & EventNameIdFlag) != 0)
+			return 6;
+		return 6 + ByteConverter.toInt32FromInt16(buffer, offset + 4);
+	}
+
+	private String readEventName(byte[] buffer, int offset, int recordSize) throws PersistenceDataFormatSoftnetException
+	{
+		if((buffer[offset + 3] & EventNameIdFlag) != 0)
+		{
+			int nameId = ByteConverter.toInt32FromUInt16(buffer, offset + 4);
+			if(recordSize < 8 || nameId >= eventNames.size() || eventNames.get(nameId) == null)
+				throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", filePath));
+			return eventNames.get(nameId);
+		}
+		
+		int nameBytesCount = ByteConverter.toInt32FromInt16(buffer, offset + 4);
+		if(nameBytesCount < 1 || nameBytesCount > 512 || 8 + nameBytesCount > recordSize)
+			throw new PersistenceDataFormatSoftnetException(String.format("The data in the persistance storage '%s' has invalid format.", filePath));
+		return new String(buffer, offset + 6, nameBytesCount, java.nio.charset.StandardCharsets.UTF_16BE);
+	}
+
+	private void registerEventName(int nameId, String eventName)
+	{
+		while(eventNames.size() <= nameId)
+			eventNames.add(null);
+		eventNames.set(nameId, eventName);
+		eventNameIds.put(eventName, nameId);
 	}
 
 	public void close()
@@ -1515,18 +2024,263 @@ class ServiceFilePersistence implements ServicePersistence
 			if(isClosed) 
 				return;
 			
-			isClosed = true;			
+			isClosed = true;
+			if(pendingCheckpoint != null)
+			{
+				pendingCheckpoint = null;
+				isCheckpointing = false;
+			}
+			mutex.notifyAll();
 			try
 			{
-				storageFile.close();
+				while(isCheckpointing)
+					mutex.wait();
+			}
+			catch(InterruptedException ex)
+			{
+				Thread.currentThread().interrupt();
+			}
+
+			try
+			{
+				try
+				{
+					if(isCheckpointing == false && tailPosition > 32 && tailPosition != checkpointTailPosition && fileStorageOptions.checkpointIntervalBytes > 0)
+						writeCheckpoint();
+				}
+				finally
+				{
+					storageFile.close();
+				}
 			}
 			catch(IOException ex) {}		
 		}
 	}	
 	
+	private class MaintenanceThread extends Thread
+	{
+		@Override
+		public void run()
+		{
+			try
+			{
+				while(true)
+				{
+					boolean compaction;
+					synchronized(mutex)
+					{
+						while(pendingCheckpoint == null && isCompactionRequested == false && isClosed == false)
+							mutex.wait();
+						if(isClosed)
+							return;
+						compaction = isCompactionRequested;
+						isCompactionRequested = false;
+					}
+
+					if(compaction)
+						compact();
+					else
+						completeCheckpoint();
+				}
+			}
+			catch(InterruptedException ex) {}
+		}
+
+		private void compact()
+		{
+			File compactedFile = new File(filePath + ".compact");
+			TreeMap<Long, Long> relocations = new TreeMap<Long, Long>();
+			long generation;
+			long writePosition = 32;
+			IOException failure = null;
+			try
+			{
+				RandomAccessFile compactedStream = new RandomAccessFile(compactedFile, "rw");
+				try
+				{
+					compactedStream.setLength(0);
+					synchronized(mutex)
+					{
+						generation = compactionGeneration;
+						compactedPosition = 32;
+						compactionAcks.clear();
+						byte[] header = new byte[32];
+						storageFile.read(0, header, 0, 32);
+						compactedStream.write(header);
+					}
+
+					boolean isSynced = false;
+					while(true)
+					{
+						synchronized(mutex)
+						{
+							if(generation != compactionGeneration || isClosed)
+								return;
+							
+							if(isSynced && tailPosition - compactedPosition <= CompactionChunkSize)
+							{
+								writePosition = copyLiveRecords(compactedStream, tailPosition, relocations, writePosition);
+								long newDeadBytes = 0;
+								byte[] buffer = new byte[2];
+								for(long position: compactionAcks)
+								{
+									Long newPosition = relocations.get(position);
+									if(newPosition == null)
+										continue;
+									compactedStream.seek(newPosition);
+									compactedStream.readFully(buffer);
+									compactedStream.writeByte(1);
+									newDeadBytes += ByteConverter.toInt32FromInt16(buffer, 0);
+								}
+								compactedStream.getFD().sync();
+								compactedStream.close();
+								replaceWithCompactedFile(compactedFile, relocations, writePosition);
+								deadBytes = newDeadBytes;
+								return;
+							}
+							
+							long endPosition = Math.min(tailPosition, compactedPosition + CompactionChunkSize);
+							writePosition = copyLiveRecords(compactedStream, endPosition, relocations, writePosition);
+							isSynced = false;
+							if(compactedPosition < tailPosition)
+								continue;
+						}
+						compactedStream.getFD().sync();
+						isSynced = true;
+					}
+				}
+				finally
+				{
+					compactedStream.close();
+				}
+			}
+			catch(IOException ex)
+			{
+				failure = ex;
+			}
+			finally
+			{
+				synchronized(mutex)
+				{
+					try
+					{
+						Files.deleteIfExists(compactedFile.toPath());
+					}
+					catch(IOException ex) {}
+					if(failure != null && isClosed == false)
+						maintenanceFailure = failure;
+					isCompacting = false;
+					compactionAcks.clear();
+					mutex.notifyAll();
+				}
+			}
+		}
+
+		private void completeCheckpoint()
+		{
+			byte[] encoding;
+			long tail;
+			long generation;
+			synchronized(mutex)
+			{
+				if(pendingCheckpoint == null)
+					return;
+				encoding = pendingCheckpoint;
+				tail = pendingCheckpointTail;
+				generation = pendingCheckpointGeneration;
+				pendingCheckpoint = null;
+			}
+
+			File temporaryFile = new File(filePath + ".ckpt.tmp");
+			IOException failure = null;
+			try
+			{
+				FileChannel fileChannel = FileChannel.open(new File(filePath).toPath(), StandardOpenOption.WRITE);
+				try
+				{
+					fileChannel.force(false);
+				}
+				finally
+				{
+					fileChannel.close();
+				}
+				writeCheckpointFile(temporaryFile, encoding);
+			}
+			catch(IOException ex)
+			{
+				failure = ex;
+			}
+
+			synchronized(mutex)
+			{
+				try
+				{
+					if(failure == null && generation == checkpointGeneration)
+					{
+						Files.move(temporaryFile.toPath(), new File(filePath + ".ckpt").toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+						hasCheckpoint = true;
+						checkpointTailPosition = tail;
+					}
+					else
+						Files.deleteIfExists(temporaryFile.toPath());
+				}
+				catch(IOException ex)
+				{
+					if(failure == null)
+						failure = ex;
+				}
+				if(failure != null && generation == checkpointGeneration && isClosed == false)
+					maintenanceFailure = failure;
+				isCheckpointing = false;
+				mutex.notifyAll();
+			}
+		}
+	}
+
+	private class SequentialReader
+	{
+		public byte[] buffer;
+		private long bufferPosition;
+		private int bufferLength;
+		private long fileLength;
+		public SequentialReader(long fileLength)
+		{
+			this.fileLength = fileLength;
+			buffer = new byte[65536];
+			bufferPosition = 0;
+			bufferLength = 0;
+		}
+		
+		public int read(long position, int length) throws IOException
+		{
+			if(position < bufferPosition || position + length > bufferPosition + bufferLength)
+			{
+				if(buffer.length < length)
+					buffer = new byte[length];
+				bufferPosition = position;
+				bufferLength = (int)Math.min(buffer.length, fileLength - position);
+				storageFile.read(position, buffer, 0, bufferLength);
+			}
+			return (int)(position - bufferPosition);
+		}
+	}
+	
+	private class BatchRecord
+	{
+		public long position;
+		public final int size;
+		public final UUID instanceUid;
+		public BatchRecord(long position, int size, UUID instanceUid)
+		{
+			this.position = position;
+			this.size = size;
+			this.instanceUid = instanceUid;
+		}
+	}
+	
 	private class PeekedRecord
 	{
-		public final long position;
+		public long position;
 		public final int size;
 		public final int headerSize;
 		public final String eventName;
@@ -1543,7 +2297,7 @@ class ServiceFilePersistence implements ServicePersistence
 		
 	private class RERecord
 	{
-		public final long position;
+		public long position;
 		public final int size;
 		public final int headerSize;		
 		public final boolean isNull;
@@ -1571,7 +2325,7 @@ class ServiceFilePersistence implements ServicePersistence
 	
 	private class QERecord
 	{
-		public final long position;
+		public long position;
 		public final int size;
 		public final int headerSize;
 		public QERecord(long position, int size, int headerSize)
@@ -1595,7 +2349,7 @@ class ServiceFilePersistence implements ServicePersistence
 
 	private class PERecord
 	{
-		public final long position;
+		public long position;
 		public final int size;
 		public final int headerSize;
 		public PERecord(long position, int size, int headerSize)
@@ -1,45 +1,95 @@
 package softnet.service;
 
-import java.util.LinkedList;
-import java.util.Queue;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.UUID;
 
 import softnet.exceptions.PersistenceStorageFullSoftnetException;
+import softnet.utils.ByteConverter;
 
-class ServiceMemoryPersistence implements ServicePersistence
+class ServiceMemoryPersistence implements BatchServicePersistence
 {
+	private static final int InitialArenaSize = 16384;
+	private static final int RecordHeaderSize = 8;
+
 	public ServiceMemoryPersistence(long storageCapacity)
 	{
-		this.storageCapacity = storageCapacity;
+		this(storageCapacity, false);
+	}
+
+	public ServiceMemoryPersistence(long storageCapacity, boolean offHeap)
+	{
+		this.storageCapacity = (int)Math.min(storageCapacity, Integer.MAX_VALUE - 8);
+		arenaLimit = (int)Math.min((long)this.storageCapacity + this.storageCapacity / 2, Integer.MAX_VALUE - 8);
+		this.offHeap = offHeap;
 		storageUid = UUID.randomUUID();
 		storageMode = false;
-		sepEvents = new LinkedList<ServiceEventPersistable>();
-		replacingEvents = new LinkedList<REvent>();
-		queueingEvents = new LinkedList<QEvent>();
-		privateEvents = new LinkedList<PEvent>();
+		replacingEvents = new HashMap<String, REvent>();
+		queueingEvents = new HashMap<String, QEvent>();
+		privateEvents = new HashMap<String, PEvent>();
+		arena = allocate(Math.min(InitialArenaSize, this.storageCapacity));
 		isClosed = false;
 	}
-	
+
 	private Object mutex = new Object();
 	private UUID storageUid;
 	private boolean storageMode;
-	private long storageCapacity;
-	private LinkedList<ServiceEventPersistable> sepEvents;
-	private LinkedList<REvent> replacingEvents;
-	private LinkedList<QEvent> queueingEvents;
-	private LinkedList<PEvent> privateEvents;
+	private int storageCapacity;
+	private int arenaLimit;
+	private boolean offHeap;
+	private HashMap<String, REvent> replacingEvents;
+	private HashMap<String, QEvent> queueingEvents;
+	private HashMap<String, PEvent> privateEvents;
 	private boolean isClosed;
-	
+
+	private ByteBuffer arena;
+	private int headPosition = 0;
+	private int tailPosition = 0;
+	private int storedBytes = 0;
+	private int storedRecords = 0;
+	private byte[] recordBuffer = new byte[256];
+
 	public UUID getUid()
-	{ 
-		return storageUid; 
+	{
+		return storageUid;
+	}
+
+	public long getStoredBytes()
+	{
+		synchronized(mutex)
+		{
+			return storedBytes;
+		}
+	}
+
+	boolean isEmpty()
+	{
+		synchronized(mutex)
+		{
+			return storedRecords == 0;
+		}
 	}
-	
+
+	ServiceEventPersistable first()
+	{
+		synchronized(mutex)
+		{
+			if(isClosed)
+				throw new IllegalStateException("The storage has been closed.");
+			if(storedRecords == 0)
+				return null;
+			return read(headPosition);
+		}
+	}
+
 	public void reset()
 	{
 		synchronized(mutex)
 		{
-			sepEvents.clear();
+			clearArena();
 			replacingEvents.clear();
 			queueingEvents.clear();
 			privateEvents.clear();
@@ -50,7 +100,7 @@ class ServiceMemoryPersistence implements ServicePersistence
 	{
 		synchronized(mutex)
 		{
-			sepEvents.clear();
+			clearArena();
 			replacingEvents.clear();
 			queueingEvents.clear();
 			privateEvents.clear();
@@ -62,71 +112,58 @@ class ServiceMemoryPersistence implements ServicePersistence
 		synchronized(mutex)
 		{
 			if(storageMode)
-				return;			
+				return;
 			storageMode = true;
-						
+
 			queueingEvents.clear();
 			privateEvents.clear();
 		}
 	}
-	
+
 	public boolean isInCacheMode()
 	{
 		return storageMode == false;
 	}
-	
+
 	public boolean isInStorageMode()
 	{
-		return storageMode;		
+		return storageMode;
 	}
-	
+
 	public void invalidateAncientData() {}
-	
+
 	public void cache(ReplacingEvent replacingEvent) throws PersistenceStorageFullSoftnetException
 	{
 		synchronized(mutex)
 		{
-			if(isClosed) 
+			if(isClosed)
 				throw new IllegalStateException("The storage has been closed.");
-			
-			if(storageMode) 
+
+			if(storageMode)
 				throw new IllegalStateException("The storage is in synchronous mode.");
-			
-			ServiceEventPersistable sepEvent = null;
-			if(replacingEvent.isNull == false)
-				sepEvent = ServiceEventPersistable.createReplacingEvent(replacingEvent.name, replacingEvent.uid, replacingEvent.getEncoding());
-			else
-				sepEvent = ServiceEventPersistable.createReplacingNullEvent(replacingEvent.name, replacingEvent.uid);
-			sepEvents.add(sepEvent);
-			
-			REvent rEvent = null;
-			for(REvent listElement: replacingEvents)
-			{
-				if(listElement.name.equals(replacingEvent.name))
-				{
-					rEvent = listElement;
-					break;
-				}
-			}		
-			
+
+			int position = append(replacingEvent.isNull == false ? 1 : 5, replacingEvent.name, replacingEvent.uid, 0, replacingEvent.isNull == false ? replacingEvent.getEncoding() : null);
+
+			REvent rEvent = replacingEvents.get(replacingEvent.name);
+
 			if(rEvent == null)
 			{
 				rEvent = new REvent(replacingEvent.name);
-				replacingEvents.add(rEvent);				
-				rEvent.currentInstance = sepEvent;
+				replacingEvents.put(rEvent.name, rEvent);
+				rEvent.currentInstance = position;
 			}
-			else if(rEvent.currentInstance == null)
+			else if(rEvent.currentInstance < 0)
 			{
-				rEvent.currentInstance = sepEvent;						
+				rEvent.currentInstance = position;
 			}
-			else if(rEvent.lastInstance == null)
+			else if(rEvent.lastInstance < 0)
 			{
-				rEvent.lastInstance = sepEvent;
+				rEvent.lastInstance = position;
 			}
 			else
 			{
-				sepEvents.remove(rEvent.lastInstance);				
-				rEvent.lastInstance = sepEvent;
+				remove(rEvent.lastInstance);
+				rEvent.lastInstance = position;
 			}
 		}
 	}
@@ -135,292 +172,281 @@ class ServiceMemoryPersistence implements ServicePersistence
 	{
 		synchronized(mutex)
 		{
-			if(isClosed) 
+			if(isClosed)
 				throw new IllegalStateException("The storage has been closed.");
-			
-			if(storageMode) 
+
+			if(storageMode)
 				throw new IllegalStateException("The storage is in synchronous mode.");
-			
-			ServiceEventPersistable	sepEvent = ServiceEventPersistable.createQueueingEvent(queueingEvent.name, queueingEvent.uid, queueingEvent.getEncoding());
-			sepEvents.add(sepEvent);
-			
-			QEvent qEvent = null;
-			for(QEvent listElement: queueingEvents)
-			{
-				if(listElement.name.equals(queueingEvent.name))
-				{
-					qEvent = listElement;
-					break;
-				}
-			}
-			
+
+			int position = append(2, queueingEvent.name, queueingEvent.uid, 0, queueingEvent.getEncoding());
+
+			QEvent qEvent = queueingEvents.get(queueingEvent.name);
+
 			if(qEvent == null)
 			{
 				qEvent = new QEvent(queueingEvent.name);
-				queueingEvents.add(qEvent);				
-				qEvent.instanceQueue.add(sepEvent);
-			}
-			else 
-			{
-				qEvent.instanceQueue.add(sepEvent);
+				queueingEvents.put(qEvent.name, qEvent);
 			}
+			qEvent.instanceQueue.add(position);
 		}
 	}
 
-	public void cache(PrivateEvent privateEvent) throws PersistenceStorageFullSoftnetException
+	public int cache(List<QueueingEvent> events)
 	{
 		synchronized(mutex)
 		{
-			if(isClosed) 
+			if(isClosed)
 				throw new IllegalStateException("The storage has been closed.");
-			
-			if(storageMode) 
+
+			if(storageMode)
 				throw new IllegalStateException("The storage is in synchronous mode.");
-			
-			ServiceEventPersistable	sepEvent = ServiceEventPersistable.createPrivateEvent(privateEvent.name, privateEvent.uid, privateEvent.clientId, privateEvent.getEncoding());
-			sepEvents.add(sepEvent);
-			
-			PEvent pEvent = null;
-			for(PEvent listElement: privateEvents)
+
+			int count = 0;
+			try
 			{
-				if(listElement.name.equals(privateEvent.name))
+				for(QueueingEvent queueingEvent: events)
 				{
-					pEvent = listElement;
-					break;
+					int position = append(2, queueingEvent.name, queueingEvent.uid, 0, queueingEvent.getEncoding());
+
+					QEvent qEvent = queueingEvents.get(queueingEvent.name);
+
+					if(qEvent == null)
+					{
+						qEvent = new QEvent(queueingEvent.name);
+						queueingEvents.put(qEvent.name, qEvent);
+					}
+					qEvent.instanceQueue.add(position);
+					count++;
 				}
 			}
-			
+			catch(PersistenceStorageFullSoftnetException ex) {}
+			return count;
+		}
+	}
+
+	public void cache(PrivateEvent privateEvent) throws PersistenceStorageFullSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isClosed)
+				throw new IllegalStateException("The storage has been closed.");
+
+			if(storageMode)
+				throw new IllegalStateException("The storage is in synchronous mode.");
+
+			int position = append(4, privateEvent.name, privateEvent.uid, privateEvent.clientId, privateEvent.getEncoding());
+
+			PEvent pEvent = privateEvents.get(privateEvent.name);
+
 			if(pEvent == null)
 			{
 				pEvent = new PEvent(privateEvent.name);
-				privateEvents.add(pEvent);				
-				pEvent.instanceQueue.add(sepEvent);
-			}
-			else 
-			{
-				pEvent.instanceQueue.add(sepEvent);
+				privateEvents.put(pEvent.name, pEvent);
 			}
+			pEvent.instanceQueue.add(position);
 		}
 	}
-	
+
 	public ServiceEventPersistable setAcknowledment(int eventKind, String eventName)
 	{
 		synchronized(mutex)
 		{
-			if(isClosed) 
+			if(isClosed)
 				throw new IllegalStateException("The storage has been closed.");
 
-			if(storageMode) 
-				throw new IllegalStateException("The storage is in synchronous mode.");			
+			if(storageMode)
+				throw new IllegalStateException("The storage is in synchronous mode.");
 
 			if(eventName == null)
 				throw new NullPointerException("The value of eventName is null.");
-			
+
 			if(eventKind == 1)
 			{
-				REvent rEvent = null;
-				for(REvent listElement: replacingEvents)
-				{
-					if(listElement.name.equals(eventName))
-					{
-						rEvent = listElement;
-						break;
-					}
-				}		
-				
+				REvent rEvent = replacingEvents.get(eventName);
+
 				if(rEvent == null)
 					throw new IllegalStateException(String.format("No event '%s' in the storage to be acknowledged.", eventName));
 
-				if(rEvent.currentInstance == null)
+				if(rEvent.currentInstance < 0)
 					throw new IllegalStateException(String.format("No event '%s' in the storage to be acknowledged.", eventName));
-				
-				sepEvents.remove(rEvent.currentInstance);
-				rEvent.currentInstance = null;
-				
-				if(rEvent.lastInstance == null)
+
+				remove(rEvent.currentInstance);
+				rEvent.currentInstance = -1;
+
+				if(rEvent.lastInstance < 0)
 					return null;
-				
+
 				rEvent.currentInstance = rEvent.lastInstance;
-				rEvent.lastInstance = null;
-				
-				return rEvent.currentInstance;
+				rEvent.lastInstance = -1;
+
+				return read(rEvent.currentInstance);
 			}
 			else if(eventKind == 2)
 			{
-				QEvent qEvent = null;
-				for(QEvent listElement: queueingEvents)
-				{
-					if(listElement.name.equals(eventName))
-					{
-						qEvent = listElement;
-						break;
-					}
-				}		
-				
+				QEvent qEvent = queueingEvents.get(eventName);
+
 				if(qEvent == null)
 					throw new IllegalStateException(String.format("No event '%s' in the storage to be acknowledged.", eventName));
 
 				if(qEvent.instanceQueue.isEmpty())
 					throw new IllegalStateException(String.format("No event '%s' in the storage to be acknowledged.", eventName));
-				
-				ServiceEventPersistable sepEvent = qEvent.instanceQueue.remove();
-				sepEvents.remove(sepEvent);
-				
+
+				remove(qEvent.instanceQueue.remove());
+
 				if(qEvent.instanceQueue.isEmpty())
 					return null;
-				
-				return qEvent.instanceQueue.element();
+
+				return read(qEvent.instanceQueue.element());
 			}
 			else if(eventKind == 4)
 			{
-				PEvent pEvent = null;
-				for(PEvent listElement: privateEvents)
-				{
-					if(listElement.name.equals(eventName))
-					{
-						pEvent = listElement;
-						break;
-					}
-				}		
-				
+				PEvent pEvent = privateEvents.get(eventName);
+
 				if(pEvent == null)
 					throw new IllegalStateException(String.format("No event '%s' in the storage to be acknowledged.", eventName));
 
 				if(pEvent.instanceQueue.isEmpty())
 					throw new IllegalStateException(String.format("No event '%s' in the storage to be acknowledged.", eventName));
-				
-				ServiceEventPersistable sepEvent = pEvent.instanceQueue.remove();
-				sepEvents.remove(sepEvent);
-				
+
+				remove(pEvent.instanceQueue.remove());
+
 				if(pEvent.instanceQueue.isEmpty())
 					return null;
-				
-				return pEvent.instanceQueue.element();
+
+				return read(pEvent.instanceQueue.element());
 			}
-			else 
+			else
 				throw new IllegalArgumentException("The value of 'eventKind' is illegal.");
 		}
 	}
-	
+
 	public ServiceEventPersistable peek(int eventKind, String eventName)
 	{
 		synchronized(mutex)
 		{
-			if(isClosed) 
+			if(isClosed)
 				throw new IllegalStateException("The storage has been closed.");
 
-			if(storageMode) 
-				throw new IllegalStateException("The storage is in synchronous mode.");			
+			if(storageMode)
+				throw new IllegalStateException("The storage is in synchronous mode.");
 
 			if(eventName == null)
 				throw new NullPointerException("The value of eventName is null.");
-			
+
 			if(eventKind == 1)
 			{
-				REvent rEvent = null;
-				for(REvent listElement: replacingEvents)
-				{
-					if(listElement.name.equals(eventName))
-					{
-						rEvent = listElement;
-						break;
-					}
-				}		
-				
+				REvent rEvent = replacingEvents.get(eventName);
+
 				if(rEvent == null)
 					return null;
 
-				if(rEvent.currentInstance == null)
+				if(rEvent.currentInstance < 0)
 					return null;
-				
-				return rEvent.currentInstance;
+
+				return read(rEvent.currentInstance);
 			}
 			else if(eventKind == 2)
 			{
-				QEvent qEvent = null;
-				for(QEvent listElement: queueingEvents)
-				{
-					if(listElement.name.equals(eventName))
-					{
-						qEvent = listElement;
-						break;
-					}
-				}		
-				
+				QEvent qEvent = queueingEvents.get(eventName);
+
 				if(qEvent == null)
 					return null;
 
 				if(qEvent.instanceQueue.isEmpty())
 					return null;
-				
-				return qEvent.instanceQueue.element();
+
+				return read(qEvent.instanceQueue.element());
 			}
 			else if(eventKind == 4)
 			{
-				PEvent pEvent = null;
-				for(PEvent listElement: privateEvents)
-				{
-					if(listElement.name.equals(eventName))
-					{
-						pEvent = listElement;
-						break;
-					}
-				}		
-				
+				PEvent pEvent = privateEvents.get(eventName);
+
 				if(pEvent == null)
 					return null;
 
 				if(pEvent.instanceQueue.isEmpty())
 					return null;
-				
-				return pEvent.instanceQueue.element();
+
+				return read(pEvent.instanceQueue.element());
+			}
+			else
+				throw new IllegalArgumentException("The value of 'eventKind' is illegal.");
+		}
+	}
+
+	public List<ServiceEventPersistable> peek(int eventKind, String eventName, int offset, int maxCount)
+	{
+		synchronized(mutex)
+		{
+			if(isClosed)
+				throw new IllegalStateException("The storage has been closed.");
+
+			if(storageMode)
+				throw new IllegalStateException("The storage is in synchronous mode.");
+
+			if(eventName == null)
+				throw new NullPointerException("The value of eventName is null.");
+
+			List<ServiceEventPersistable> batch = new ArrayList<ServiceEventPersistable>();
+			PositionQueue instanceQueue;
+			if(eventKind == 1)
+			{
+				REvent rEvent = replacingEvents.get(eventName);
+				if(offset == 0 && maxCount > 0 && rEvent != null && rEvent.currentInstance >= 0)
+					batch.add(read(rEvent.currentInstance));
+				return batch;
+			}
+			else if(eventKind == 2)
+			{
+				QEvent qEvent = queueingEvents.get(eventName);
+				if(qEvent == null)
+					return batch;
+				instanceQueue = qEvent.instanceQueue;
+			}
+			else if(eventKind == 4)
+			{
+				PEvent pEvent = privateEvents.get(eventName);
+				if(pEvent == null)
+					return batch;
+				instanceQueue = pEvent.instanceQueue;
 			}
-			else 
+			else
 				throw new IllegalArgumentException("The value of 'eventKind' is illegal.");
+
+			for(int i = offset; i < instanceQueue.size() && batch.size() < maxCount; i++)
+				batch.add(read(instanceQueue.get(i)));
+			return batch;
 		}
 	}
-	
+
 	public void save(ReplacingEvent replacingEvent) throws PersistenceStorageFullSoftnetException
 	{
 		synchronized(mutex)
 		{
-			if(isClosed) 
+			if(isClosed)
 				throw new IllegalStateException("The storage has been closed.");
-			
-			if(storageMode == false) 
+
+			if(storageMode == false)
 				throw new IllegalStateException("The storage is in asynchronous mode.");
-			
-			ServiceEventPersistable sepEvent = null;
-			if(replacingEvent.isNull == false)
-				sepEvent = ServiceEventPersistable.createReplacingEvent(replacingEvent.name, replacingEvent.uid, replacingEvent.getEncoding());
-			else
-				sepEvent = ServiceEventPersistable.createReplacingNullEvent(replacingEvent.name, replacingEvent.uid);
-			sepEvents.add(sepEvent);
-			
-			REvent rEvent = null;
-			for(REvent listElement: replacingEvents)
-			{
-				if(listElement.name.equals(replacingEvent.name))
-				{
-					rEvent = listElement;
-					break;
-				}
-			}		
-			
+
+			int position = append(replacingEvent.isNull == false ? 1 : 5, replacingEvent.name, replacingEvent.uid, 0, replacingEvent.isNull == false ? replacingEvent.getEncoding() : null);
+
+			REvent rEvent = replacingEvents.get(replacingEvent.name);
+
 			if(rEvent == null)
 			{
 				rEvent = new REvent(replacingEvent.name);
-				replacingEvents.add(rEvent);				
-				rEvent.lastInstance = sepEvent;
+				replacingEvents.put(rEvent.name, rEvent);
+				rEvent.lastInstance = position;
 			}
-			else if(rEvent.lastInstance == null)
+			else if(rEvent.lastInstance < 0)
 			{
-				rEvent.lastInstance = sepEvent;
+				rEvent.lastInstance = position;
 			}
 			else
 			{
-				sepEvents.remove(rEvent.lastInstance);				
-				rEvent.lastInstance = sepEvent;
+				remove(rEvent.lastInstance);
+				rEvent.lastInstance = position;
 			}
 		}
 	}
@@ -429,14 +455,37 @@ class ServiceMemoryPersistence implements ServicePersistence
 	{
 		synchronized(mutex)
 		{
-			if(isClosed) 
+			if(isClosed)
 				throw new IllegalStateException("The storage has been closed.");
-			
-			if(storageMode == false) 
+
+			if(storageMode == false)
 				throw new IllegalStateException("The storage is in asynchronous mode.");
-			
-			ServiceEventPersistable	sepEvent = ServiceEventPersistable.createQueueingEvent(queueingEvent.name, queueingEvent.uid, queueingEvent.getEncoding());
-			sepEvents.add(sepEvent);			
+
+			append(2, queueingEvent.name, queueingEvent.uid, 0, queueingEvent.getEncoding());
+		}
+	}
+
+	public int save(List<QueueingEvent> events)
+	{
+		synchronized(mutex)
+		{
+			if(isClosed)
+				throw new IllegalStateException("The storage has been closed.");
+
+			if(storageMode == false)
+				throw new IllegalStateException("The storage is in asynchronous mode.");
+
+			int count = 0;
+			try
+			{
+				for(QueueingEvent queueingEvent: events)
+				{
+					append(2, queueingEvent.name, queueingEvent.uid, 0, queueingEvent.getEncoding());
+					count++;
+				}
+			}
+			catch(PersistenceStorageFullSoftnetException ex) {}
+			return count;
 		}
 	}
 
@@ -444,97 +493,408 @@ class ServiceMemoryPersistence implements ServicePersistence
 	{
 		synchronized(mutex)
 		{
-			if(isClosed) 
+			if(isClosed)
 				throw new IllegalStateException("The storage has been closed.");
-			
-			if(storageMode == false) 
+
+			if(storageMode == false)
 				throw new IllegalStateException("The storage is in asynchronous mode.");
-			
-			ServiceEventPersistable	sepEvent = ServiceEventPersistable.createPrivateEvent(privateEvent.name, privateEvent.uid, privateEvent.clientId, privateEvent.getEncoding());
-			sepEvents.add(sepEvent);
+
+			append(4, privateEvent.name, privateEvent.uid, privateEvent.clientId, privateEvent.getEncoding());
 		}
 	}
-	
+
 	public void setAcknowledment()
 	{
 		synchronized(mutex)
 		{
-			if(isClosed) 
+			if(isClosed)
 				throw new IllegalStateException("The storage has been closed.");
 
-			if(storageMode == false) 
+			if(storageMode == false)
 				throw new IllegalStateException("The storage is in asynchronous mode.");
-			
-			if(sepEvents.size() == 0)
+
+			if(storedRecords == 0)
 				throw new IllegalStateException("No events in the storage to be acknowledged.");
-			
-			sepEvents.remove();
+
+			acknowledgeHead();
+		}
+	}
+
+	public List<ServiceEventPersistable> peek(int offset, int maxCount, int maxBytes)
+	{
+		synchronized(mutex)
+		{
+			if(isClosed)
+				throw new IllegalStateException("The storage has been closed.");
+
+			if(storageMode == false)
+				throw new IllegalStateException("The storage is in asynchronous mode.");
+
+			if(offset < 0)
+				throw new IllegalArgumentException("The value of 'offset' must not be negative.");
+			if(maxCount < 1)
+				throw new IllegalArgumentException("The value of 'maxCount' must be greater than 0.");
+
+			ArrayList<ServiceEventPersistable> batch = new ArrayList<ServiceEventPersistable>();
+			if(storedRecords == 0)
+			{
+				replacingEvents.clear();
+				storageMode = false;
+				return batch;
+			}
+
+			int batchBytes = 0;
+			int position = headPosition;
+			while(position < tailPosition && batch.size() < maxCount)
+			{
+				int recordSize = arena.getInt(position);
+				if(arena.get(position + 4) == 0 && offset > 0)
+				{
+					offset--;
+				}
+				else if(arena.get(position + 4) == 0)
+				{
+					if(batch.size() > 0 && batchBytes + recordSize > maxBytes)
+						break;
+					batch.add(read(position));
+					batchBytes += recordSize;
+				}
+				position += recordSize;
+			}
+			return batch;
 		}
 	}
-	
+
+	public void setAcknowledment(UUID instanceUid)
+	{
+		synchronized(mutex)
+		{
+			if(isClosed)
+				throw new IllegalStateException("The storage has been closed.");
+
+			if(storageMode == false)
+				throw new IllegalStateException("The storage is in asynchronous mode.");
+
+			int count = 0;
+			boolean isFound = false;
+			int position = headPosition;
+			while(position < tailPosition)
+			{
+				if(arena.get(position + 4) == 0)
+				{
+					count++;
+					if(readUid(position).equals(instanceUid))
+					{
+						isFound = true;
+						break;
+					}
+				}
+				position += arena.getInt(position);
+			}
+
+			if(isFound == false)
+				throw new IllegalStateException("The event has not been peeked up to be acknowledged.");
+
+			for(int i = 0; i < count; i++)
+				acknowledgeHead();
+		}
+	}
+
 	public ServiceEventPersistable peek()
 	{
 		synchronized(mutex)
 		{
-			if(isClosed) 
+			if(isClosed)
 				throw new IllegalStateException("The storage has been closed.");
 
-			if(storageMode == false) 
+			if(storageMode == false)
 				throw new IllegalStateException("The storage is in asynchronous mode.");
 
-			if(sepEvents.size() > 0)
-				return sepEvents.element();
+			if(storedRecords > 0)
+				return read(headPosition);
 
 			replacingEvents.clear();
 			storageMode = false;
 			return null;
 		}
 	}
-	
+
 	public void close()
-	{		
+	{
 		synchronized(mutex)
 		{
 			isClosed = true;
-			sepEvents.clear();
+			clearArena();
+			arena = null;
 			replacingEvents.clear();
 			queueingEvents.clear();
 			privateEvents.clear();
 		}
-	}	
-	
+	}
+
+	private ByteBuffer allocate(int size)
+	{
+		return offHeap ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+	}
+
+	private void clearArena()
+	{
+		headPosition = 0;
+		tailPosition = 0;
+		storedBytes = 0;
+		storedRecords = 0;
+	}
+
+	private int append(int kind, String name, UUID uid, long clientId, byte[] arguments) throws PersistenceStorageFullSoftnetException
+	{
+		byte[] nameBytes = name.getBytes(java.nio.charset.StandardCharsets.UTF_16BE);
+		int recordSize = RecordHeaderSize + nameBytes.length + 16 + (kind == 4 ? 8 : 0) + (arguments != null ? arguments.length : 0);
+		if((long)storedBytes + recordSize > storageCapacity)
+			throw new PersistenceStorageFullSoftnetException("The memory-based persistence storage has reached the maximum size limit.");
+
+		if(tailPosition + recordSize > arena.capacity())
+			compact(recordSize);
+
+		int position = tailPosition;
+		arena.putInt(position, recordSize);
+		arena.put(position + 4, (byte)0);
+		arena.put(position + 5, (byte)kind);
+		arena.putShort(position + 6, (short)nameBytes.length);
+		arena.position(position + RecordHeaderSize);
+		arena.put(nameBytes);
+		arena.put(ByteConverter.getBytes(uid));
+		if(kind == 4)
+			arena.putLong(clientId);
+		if(arguments != null)
+			arena.put(arguments);
+
+		tailPosition += recordSize;
+		storedBytes += recordSize;
+		storedRecords++;
+		return position;
+	}
+
+	private void remove(int position)
+	{
+		if(arena.get(position + 4) != 0)
+			return;
+		arena.put(position + 4, (byte)1);
+		storedBytes -= arena.getInt(position);
+		storedRecords--;
+
+		if(storedRecords == 0)
+		{
+			clearArena();
+			return;
+		}
+
+		while(headPosition < tailPosition && arena.get(headPosition + 4) != 0)
+			headPosition += arena.getInt(headPosition);
+	}
+
+	private void acknowledgeHead()
+	{
+		int kind = arena.get(headPosition + 5);
+		if(kind == 1 || kind == 5)
+		{
+			REvent rEvent = replacingEvents.get(readName(headPosition));
+			if(rEvent != null)
+			{
+				if(rEvent.currentInstance == headPosition)
+					rEvent.currentInstance = -1;
+				if(rEvent.lastInstance == headPosition)
+					rEvent.lastInstance = -1;
+			}
+		}
+		remove(headPosition);
+	}
+
+	private String readName(int position)
+	{
+		int nameBytesCount = arena.getShort(position + 6) & 0xFFFF;
+		if(recordBuffer.length < nameBytesCount)
+			recordBuffer = new byte[nameBytesCount];
+		arena.position(position + RecordHeaderSize);
+		arena.get(recordBuffer, 0, nameBytesCount);
+		return new String(recordBuffer, 0, nameBytesCount, java.nio.charset.StandardCharsets.UTF_16BE);
+	}
+
+	private UUID readUid(int position)
+	{
+		int offset = position + RecordHeaderSize + (arena.getShort(position + 6) & 0xFFFF);
+		return new UUID(arena.getLong(offset), arena.getLong(offset + 8));
+	}
+
+	private ServiceEventPersistable read(int position)
+	{
+		int recordSize = arena.getInt(position);
+		int kind = arena.get(position + 5);
+		int nameBytesCount = arena.getShort(position + 6) & 0xFFFF;
+		if(recordBuffer.length < recordSize)
+			recordBuffer = new byte[recordSize];
+		arena.position(position);
+		arena.get(recordBuffer, 0, recordSize);
+
+		int offset = RecordHeaderSize;
+		String name = new String(recordBuffer, offset, nameBytesCount, java.nio.charset.StandardCharsets.UTF_16BE);
+		offset += nameBytesCount;
+		UUID instanceUid = ByteConverter.toUuid(recordBuffer, offset);
+		offset += 16;
+		long clientId = 0;
+		if(kind == 4)
+		{
+			clientId = arena.getLong(position + offset);
+			offset += 8;
+		}
+		byte[] arguments = offset < recordSize ? Arrays.copyOfRange(recordBuffer, offset, recordSize) : null;
+
+		if(kind == 1)
+			return ServiceEventPersistable.createReplacingEvent(name, instanceUid, arguments);
+		if(kind == 5)
+			return ServiceEventPersistable.createReplacingNullEvent(name, instanceUid);
+		if(kind == 2)
+			return ServiceEventPersistable.createQueueingEvent(name, instanceUid, arguments);
+		return ServiceEventPersistable.createPrivateEvent(name, instanceUid, clientId, arguments);
+	}
+
+	private void compact(int recordSize)
+	{
+		int requiredSize = storedBytes + recordSize;
+		ByteBuffer target = arena;
+		if(requiredSize > arena.capacity() / 2 && arena.capacity() < arenaLimit)
+			target = allocate((int)Math.min(arenaLimit, Math.max((long)arena.capacity() * 2, requiredSize)));
+
+		int[] oldPositions = new int[storedRecords];
+		int[] newPositions = new int[storedRecords];
+		int count = 0;
+		int writePosition = 0;
+		int readPosition = headPosition;
+		while(readPosition < tailPosition)
+		{
+			int size = arena.getInt(readPosition);
+			if(arena.get(readPosition + 4) == 0)
+			{
+				if(recordBuffer.length < size)
+					recordBuffer = new byte[size];
+				arena.position(readPosition);
+				arena.get(recordBuffer, 0, size);
+				target.position(writePosition);
+				target.put(recordBuffer, 0, size);
+				oldPositions[count] = readPosition;
+				newPositions[count] = writePosition;
+				count++;
+				writePosition += size;
+			}
+			readPosition += size;
+		}
+
+		arena = target;
+		headPosition = 0;
+		tailPosition = writePosition;
+
+		for(REvent rEvent: replacingEvents.values())
+		{
+			if(rEvent.currentInstance >= 0)
+				rEvent.currentInstance = newPositions[Arrays.binarySearch(oldPositions, 0, count, rEvent.currentInstance)];
+			if(rEvent.lastInstance >= 0)
+				rEvent.lastInstance = newPositions[Arrays.binarySearch(oldPositions, 0, count, rEvent.lastInstance)];
+		}
+		for(QEvent qEvent: queueingEvents.values())
+			qEvent.instanceQueue.relocate(oldPositions, newPositions, count);
+		for(PEvent pEvent: privateEvents.values())
+			pEvent.instanceQueue.relocate(oldPositions, newPositions, count);
+	}
+
 	private class REvent
 	{
 		public final String name;
-		public ServiceEventPersistable currentInstance;
-		public ServiceEventPersistable lastInstance;
+		public int currentInstance;
+		public int lastInstance;
 		public REvent(String name)
 		{
 			this.name = name;
-			currentInstance = null;
-			lastInstance = null;
+			currentInstance = -1;
+			lastInstance = -1;
 		}
 	}
 
 	private class QEvent
 	{
 		public final String name;
-		public Queue<ServiceEventPersistable> instanceQueue;
+		public PositionQueue instanceQueue;
 		public QEvent(String name)
 		{
 			this.name = name;
-			this.instanceQueue = new LinkedList<ServiceEventPersistable>();
+			this.instanceQueue = new PositionQueue();
 		}
 	}
 
 	private class PEvent
 	{
 		public final String name;
-		public Queue<ServiceEventPersistable> instanceQueue;
+		public PositionQueue instanceQueue;
 		public PEvent(String name)
 		{
 			this.name = name;
-			this.instanceQueue = new LinkedList<ServiceEventPersistable>();
+			this.instanceQueue = new PositionQueue();
+		}
+	}
+
+	private static class PositionQueue
+	{
+		private int[] positions = new int[8];
+		private int head = 0;
+		private int size = 0;
+
+		public boolean isEmpty()
+		{
+			return size == 0;
+		}
+
+		public int size()
+		{
+			return size;
+		}
+
+		public int get(int index)
+		{
+			return positions[(head + index) % positions.length];
+		}
+
+		public void add(int position)
+		{
+			if(size == positions.length)
+			{
+				int[] newPositions = new int[positions.length * 2];
+				for(int i = 0; i < size; i++)
+					newPositions[i] = positions[(head + i) % positions.length];
+				positions = newPositions;
+				head = 0;
+			}
+			positions[(head + size) % positions.length] = position;
+			size++;
+		}
+
+		public int element()
+		{
+			return positions[head];
+		}
+
+		public int remove()
+		{
+			int position = positions[head];
+			head = (head + 1) % positions.length;
+			size--;
+			return position;
+		}
+
+		public void relocate(int[] oldPositions, int[] newPositions, int count)
+		{
+			for(int i = 0; i < size; i++)
+			{
+				int index = (head + i) % positions.length;
+				positions[index] = newPositions[Arrays.binarySearch(oldPositions, 0, count, positions[index])];
+			}
 		}
 	}
 }
@@ -0,0 +1,8 @@
+package softnet.service;
+
+public enum StorageDurability
+{
+	Sync,
+	GroupCommit,
+	Buffered
+}
@@ -0,0 +1,16 @@
+package softnet.service;
+
+import java.io.IOException;
+
+interface StorageFile
+{
+	long length() throws IOException;
+	void setLength(long newLength) throws IOException;
+	void read(long position, byte[] buffer, int offset, int length) throws IOException;
+	int readByte(long position) throws IOException;
+	void write(long position, byte[] buffer, int offset, int length) throws IOException;
+	void writeByte(long position, int value) throws IOException;
+	void flush() throws IOException;
+	void force() throws IOException;
+	void close() throws IOException;
+}
@@ -133,13 +133,12 @@ class TCPBinding
 			else
 			{
 				final TcpRequest request = completedRequests.removeFirst();				
-				Thread thread = new Thread()
+				Threads.start(new Runnable()
 				{
 				    public void run(){
 				    	acceptHandler.accept(new RequestContext(serviceEndpoint, request.user, request.clientId), request.socketChannel, request.mode);
 				    }
-				};
-				thread.start();
+				});
 			}
 		}
 	}
@@ -180,11 +179,11 @@ class TCPBinding
 		
 		if(serverIp instanceof Inet6Address)
 		{
-			request.tcpConnector = new TCPConnectorV6(connectionUid, serverIp, tcpOptions, serviceEndpoint.scheduler);
+			request.tcpConnector = new TCPConnectorV6(connectionUid, serverIp, tcpOptions, serviceEndpoint.scheduler, serviceEndpoint.threadPool, serviceEndpoint.reactor);
 		}
 		else
 		{
-			request.tcpConnector = new TCPConnectorV4(connectionUid, serverIp, tcpOptions, serviceEndpoint.scheduler);
+			request.tcpConnector = new TCPConnectorV4(connectionUid, serverIp, tcpOptions, serviceEndpoint.scheduler, serviceEndpoint.threadPool, serviceEndpoint.reactor);
 		}
 		
 		synchronized(mutex)
@@ -22,6 +22,8 @@ public class TCPConnectorV4 implements TCPConnector
 	private InetAddress serverIp;
 	private TCPOptions tcpOptions;
 	private Scheduler scheduler;
+	private ThreadPool threadPool;
+	private Reactor reactor;
 	private TCPResponseHandler responseHandler;
 	private BiAcceptor<byte[], Object> authenticationHandler;
 	private Object attachment;
@@ -50,12 +52,14 @@ public class TCPConnectorV4 implements TCPConnector
     }
 	private ConnectorState connectorState = ConnectorState.P2P_MODE;
 	
-	public TCPConnectorV4(UUID connectionUid, InetAddress serverIp, TCPOptions tcpOptions, Scheduler scheduler)
+	public TCPConnectorV4(UUID connectionUid, InetAddress serverIp, TCPOptions tcpOptions, Scheduler scheduler, ThreadPool threadPool, Reactor reactor)
 	{
 		this.connectionUid = connectionUid;
 		this.serverIp = serverIp;
 		this.tcpOptions = tcpOptions;
 		this.scheduler = scheduler;
+		this.threadPool = threadPool;
+		this.reactor = reactor;
 		acceptedChannels = new ArrayList<SocketChannel>(2);
 	}	
 	
@@ -65,13 +69,12 @@ public class TCPConnectorV4 implements TCPConnector
 		this.authenticationHandler = authenticationHandler;
 		this.attachment = attachment;
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	execute();
 		    }
-		};
-		thread.start();
+		});
 	}
 	
 	public void onAuthenticationHash(byte[] authHash, byte[] authKey2)
@@ -164,7 +167,7 @@ public class TCPConnectorV4 implements TCPConnector
 			
 			localIEP = (InetSocketAddress)controlChannel.getLocalAddress();
 
-			msgSocket = new MsgSocket(controlChannel);
+			msgSocket = new MsgSocket(controlChannel, reactor);
 			msgSocket.messageReceivedHandler	= new Acceptor<byte[]>()
 			{
 				public void accept(byte[] message) { onMessageReceived(message); }
@@ -179,6 +182,7 @@ public class TCPConnectorV4 implements TCPConnector
 			};					
 			msgSocket.minLength = 1;
 			msgSocket.maxLength = 256;
+			msgSocket.dispatcher = threadPool;
 			msgSocket.start();
 						
 			try
@@ -269,13 +273,12 @@ public class TCPConnectorV4 implements TCPConnector
 					listenerChannel.bind(localIEP);
 					
 					final ServerSocketChannel f_listenerChannel = listenerChannel;
-					Thread thread = new Thread()
+					Threads.start(new Runnable()
 					{
 					    public void run(){
 					    	executeListener(f_listenerChannel);
 					    }
-					};
-					thread.start();				
+					});				
 				}
 				catch(IOException | UnsupportedOperationException ex) {}
 			
@@ -338,7 +341,7 @@ public class TCPConnectorV4 implements TCPConnector
 			controlChannel.configureBlocking(true);
 			controlChannel.connect(new InetSocketAddress(serverIp, Constants.ServerPorts.TcpRzvPort));	
 			
-			msgSocket = new MsgSocket(controlChannel);
+			msgSocket = new MsgSocket(controlChannel, reactor);
 			msgSocket.messageReceivedHandler	= new Acceptor<byte[]>()
 			{
 				public void accept(byte[] message) { onMessageReceived(message); }
@@ -353,6 +356,7 @@ public class TCPConnectorV4 implements TCPConnector
 			};					
 			msgSocket.minLength = 1;
 			msgSocket.maxLength = 256;
+			msgSocket.dispatcher = threadPool;
 			msgSocket.start();
 			
 			msgSocket.send(EncodeMessage_ServiceProxy());
@@ -379,8 +383,7 @@ public class TCPConnectorV4 implements TCPConnector
 					if(connectorState == ConnectorState.P2P_HANDSHAKE)
 					{
 						acceptedChannels.add(acceptedChannel);						
-						ClientAuthenticationThread thread = new ClientAuthenticationThread(acceptedChannel);
-						thread.start();						
+						Threads.start(new ClientAuthenticationThread(acceptedChannel));						
 					}
 					else if (connectorState == ConnectorState.P2P_MODE)
 					{
@@ -673,8 +676,7 @@ public class TCPConnectorV4 implements TCPConnector
 			{				
 				for(SocketChannel acceptedChannel: acceptedChannels)
 				{
-					ClientAuthenticationThread thread = new ClientAuthenticationThread(acceptedChannel);
-					thread.start();
+					Threads.start(new ClientAuthenticationThread(acceptedChannel));
 				}
 			}
 			
@@ -686,13 +688,12 @@ public class TCPConnectorV4 implements TCPConnector
 			scheduler.add(p2pConnectionAttemptTimeoutControlTask, Constants.TcpP2PConnectionAttemptTimeoutSeconds);
 		}
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	tryP2PConnection();		    	
 		    }
-		};
-		thread.start();
+		});
 	}
 
 	private void ProcessMessage_CreateP2PConnectionInDualMode(byte[] message) throws AsnException, UnknownHostException
@@ -725,8 +726,7 @@ public class TCPConnectorV4 implements TCPConnector
 			{				
 				for(SocketChannel acceptedChannel: acceptedChannels)
 				{
-					ClientAuthenticationThread thread = new ClientAuthenticationThread(acceptedChannel);
-					thread.start();
+					Threads.start(new ClientAuthenticationThread(acceptedChannel));
 				}
 			}
 			
@@ -738,21 +738,19 @@ public class TCPConnectorV4 implements TCPConnector
 			scheduler.add(p2pConnectionAttemptTimeoutControlTask, Constants.TcpP2PConnectionAttemptTimeoutSeconds);
 		}
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	tryLocalP2PConnection();
 		    }
-		};
-		thread.start();
+		});
 
-		thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	tryP2PConnection();		    	
 		    }
-		};
-		thread.start();
+		});
 	}
 
 	private void ProcessMessage_CreateProxyConnection(byte[] message) throws AsnException
@@ -761,13 +759,12 @@ public class TCPConnectorV4 implements TCPConnector
 		final int serverPort = sequence.Int32();
 		sequence.end();
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 				tryProxyConnection(serverPort);
 		    }
-		};
-		thread.start();	
+		});	
 	}
 
 	private void ProcessMessage_Error(byte[] message) throws AsnException
@@ -860,7 +857,7 @@ public class TCPConnectorV4 implements TCPConnector
 		catch(IOException e) {}
 	}
 	
-	class ClientAuthenticationThread extends Thread
+	class ClientAuthenticationThread implements Runnable
 	{
 		private SocketChannel acceptedChannel;
 		
@@ -22,6 +22,8 @@ public class TCPConnectorV6 implements TCPConnector
 	private InetAddress serverIp;
 	private TCPOptions tcpOptions;
 	private Scheduler scheduler;
+	private ThreadPool threadPool;
+	private Reactor reactor;
 	private TCPResponseHandler responseHandler;
 	private BiAcceptor<byte[], Object> authenticationHandler;
 	private Object attachment;
@@ -48,12 +50,14 @@ public class TCPConnectorV6 implements TCPConnector
     }
 	private ConnectorState connectorState = ConnectorState.P2P_MODE;
 	
-	public TCPConnectorV6(UUID connectionUid, InetAddress serverIp, TCPOptions tcpOptions, Scheduler scheduler)
+	public TCPConnectorV6(UUID connectionUid, InetAddress serverIp, TCPOptions tcpOptions, Scheduler scheduler, ThreadPool threadPool, Reactor reactor)
 	{
 		this.connectionUid = connectionUid;
 		this.serverIp = serverIp;
 		this.tcpOptions = tcpOptions;
 		this.scheduler = scheduler;
+		this.threadPool = threadPool;
+		this.reactor = reactor;
 		acceptedChannels = new ArrayList<SocketChannel>(2);
 	}
 	
@@ -63,13 +67,12 @@ public class TCPConnectorV6 implements TCPConnector
 		this.authenticationHandler = authenticationHandler;
 		this.attachment = attachment;
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	execute();
 		    }
-		};
-		thread.start();
+		});
 	}
 	
 	public void onAuthenticationHash(byte[] authHash, byte[] authKey2)
@@ -159,7 +162,7 @@ public class TCPConnectorV6 implements TCPConnector
 			
 			localIEP = (InetSocketAddress)controlChannel.getLocalAddress();
 
-			msgSocket = new MsgSocket(controlChannel);
+			msgSocket = new MsgSocket(controlChannel, reactor);
 			msgSocket.messageReceivedHandler	= new Acceptor<byte[]>()
 			{
 				public void accept(byte[] message) { onMessageReceived(message); }
@@ -174,6 +177,7 @@ public class TCPConnectorV6 implements TCPConnector
 			};					
 			msgSocket.minLength = 1;
 			msgSocket.maxLength = 256;
+			msgSocket.dispatcher = threadPool;
 			msgSocket.start();
 						
 			try
@@ -232,13 +236,12 @@ public class TCPConnectorV6 implements TCPConnector
 					listenerChannel.bind(localIEP);
 					
 					final ServerSocketChannel f_listenerChannel = listenerChannel;
-					Thread thread = new Thread()
+					Threads.start(new Runnable()
 					{
 					    public void run(){
 					    	executeListener(f_listenerChannel);
 					    }
-					};
-					thread.start();				
+					});				
 				}
 				catch(IOException | UnsupportedOperationException ex) {}
 			
@@ -301,7 +304,7 @@ public class TCPConnectorV6 implements TCPConnector
 			controlChannel.configureBlocking(true);
 			controlChannel.connect(new InetSocketAddress(serverIp, Constants.ServerPorts.TcpRzvPort));	
 			
-			msgSocket = new MsgSocket(controlChannel);
+			msgSocket = new MsgSocket(controlChannel, reactor);
 			msgSocket.messageReceivedHandler	= new Acceptor<byte[]>()
 			{
 				public void accept(byte[] message) { onMessageReceived(message); }
@@ -316,6 +319,7 @@ public class TCPConnectorV6 implements TCPConnector
 			};					
 			msgSocket.minLength = 1;
 			msgSocket.maxLength = 256;
+			msgSocket.dispatcher = threadPool;
 			msgSocket.start();
 			
 			msgSocket.send(EncodeMessage_ServiceProxy());
@@ -342,8 +346,7 @@ public class TCPConnectorV6 implements TCPConnector
 					if(connectorState == ConnectorState.P2P_HANDSHAKE)
 					{
 						acceptedChannels.add(acceptedChannel);						
-						ClientAuthenticationThread thread = new ClientAuthenticationThread(acceptedChannel);
-						thread.start();						
+						Threads.start(new ClientAuthenticationThread(acceptedChannel));						
 					}
 					else if (connectorState == ConnectorState.P2P_MODE)
 					{
@@ -585,8 +588,7 @@ public class TCPConnectorV6 implements TCPConnector
 			{				
 				for(SocketChannel acceptedChannel: acceptedChannels)
 				{
-					ClientAuthenticationThread thread = new ClientAuthenticationThread(acceptedChannel);
-					thread.start();
+					Threads.start(new ClientAuthenticationThread(acceptedChannel));
 				}
 			}
 			
@@ -598,13 +600,12 @@ public class TCPConnectorV6 implements TCPConnector
 			scheduler.add(p2pConnectionAttemptTimeoutControlTask, Constants.TcpP2PConnectionAttemptTimeoutSeconds);
 		}
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	tryP2PConnection();		    	
 		    }
-		};
-		thread.start();
+		});
 	}
 
 	private void ProcessMessage_CreateProxyConnection(byte[] message) throws AsnException
@@ -613,13 +614,12 @@ public class TCPConnectorV6 implements TCPConnector
 		final int serverPort = sequence.Int32();
 		sequence.end();
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 				tryProxyConnection(serverPort);
 		    }
-		};
-		thread.start();	
+		});	
 	}
 
 	private void ProcessMessage_Error(byte[] message) throws AsnException
@@ -703,7 +703,7 @@ public class TCPConnectorV6 implements TCPConnector
 		catch(IOException e) {}
 	}
 	
-	class ClientAuthenticationThread extends Thread
+	class ClientAuthenticationThread implements Runnable
 	{
 		private SocketChannel acceptedChannel;
 		
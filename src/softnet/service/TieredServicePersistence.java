@@ -0,0 +1,407 @@
+package softnet.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import softnet.exceptions.*;
+
+class TieredServicePersistence implements BatchServicePersistence
+{
+	public TieredServicePersistence(ServiceMemoryPersistence memoryTier, ServiceFilePersistence fileTier)
+	{
+		this.memoryTier = memoryTier;
+		this.fileTier = fileTier;
+		storageMode = fileTier.isInStorageMode();
+		isSpilled = fileTier.isEmpty() == false;
+	}
+
+	private Object mutex = new Object();
+	private ServiceMemoryPersistence memoryTier;
+	private ServiceFilePersistence fileTier;
+	private boolean storageMode;
+	private boolean isSpilled;
+	private boolean isSpillPending;
+
+	public UUID getUid()
+	{
+		return fileTier.getUid();
+	}
+
+	public void setStorageMode()
+	{
+		synchronized(mutex)
+		{
+			if(storageMode)
+				return;
+			storageMode = true;
+			isSpillPending = fileTier.isInCacheMode() && memoryTier.isEmpty() == false;
+
+			fileTier.setStorageMode();
+			memoryTier.setStorageMode();
+
+			try
+			{
+				completeSpill();
+			}
+			catch(PersistenceIOSoftnetException | PersistenceStorageFullSoftnetException ex) {}
+		}
+	}
+
+	public boolean isInCacheMode()
+	{
+		return storageMode == false;
+	}
+
+	public boolean isInStorageMode()
+	{
+		return storageMode;
+	}
+
+	public void invalidateAncientData() throws PersistenceIOSoftnetException
+	{
+		fileTier.invalidateAncientData();
+	}
+
+	public void reset() throws PersistenceIOSoftnetException
+	{
+		synchronized(mutex)
+		{
+			memoryTier.reset();
+			fileTier.reset();
+			isSpilled = false;
+			isSpillPending = false;
+		}
+	}
+
+	public void clear() throws PersistenceIOSoftnetException
+	{
+		synchronized(mutex)
+		{
+			memoryTier.clear();
+			fileTier.clear();
+			isSpilled = false;
+			isSpillPending = false;
+		}
+	}
+
+	public void cache(ReplacingEvent event) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isSpilled == false)
+			{
+				try
+				{
+					memoryTier.cache(event);
+					return;
+				}
+				catch(PersistenceStorageFullSoftnetException ex) {}
+			}
+			spill();
+			isSpilled = true;
+			fileTier.cache(event);
+		}
+	}
+
+	public void cache(QueueingEvent event) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isSpilled == false)
+			{
+				try
+				{
+					memoryTier.cache(event);
+					return;
+				}
+				catch(PersistenceStorageFullSoftnetException ex) {}
+			}
+			spill();
+			isSpilled = true;
+			fileTier.cache(event);
+		}
+	}
+
+	public void cache(PrivateEvent event) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isSpilled == false)
+			{
+				try
+				{
+					memoryTier.cache(event);
+					return;
+				}
+				catch(PersistenceStorageFullSoftnetException ex) {}
+			}
+			spill();
+			isSpilled = true;
+			fileTier.cache(event);
+		}
+	}
+
+	public int cache(List<QueueingEvent> events) throws PersistenceIOSoftnetException
+	{
+		synchronized(mutex)
+		{
+			int count = 0;
+			if(isSpilled == false)
+			{
+				count = memoryTier.cache(events);
+				if(count == events.size())
+					return count;
+			}
+			try
+			{
+				spill();
+			}
+			catch(PersistenceStorageFullSoftnetException ex)
+			{
+				return count;
+			}
+			isSpilled = true;
+			return count + fileTier.cache(events.subList(count, events.size()));
+		}
+	}
+
+	public ServiceEventPersistable setAcknowledment(int eventKind, String eventName) throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isSpilled && fileTier.peek(eventKind, eventName) != null)
+			{
+				ServiceEventPersistable sep = fileTier.setAcknowledment(eventKind, eventName);
+				if(fileTier.isEmpty())
+					isSpilled = false;
+				if(sep != null)
+					return sep;
+				return memoryTier.peek(eventKind, eventName);
+			}
+			return memoryTier.setAcknowledment(eventKind, eventName);
+		}
+	}
+
+	public ServiceEventPersistable peek(int eventKind, String eventName) throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isSpilled)
+			{
+				ServiceEventPersistable sep = fileTier.peek(eventKind, eventName);
+				if(sep != null)
+					return sep;
+			}
+			return memoryTier.peek(eventKind, eventName);
+		}
+	}
+
+	public List<ServiceEventPersistable> peek(int eventKind, String eventName, int offset, int maxCount) throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(isSpilled == false)
+				return memoryTier.peek(eventKind, eventName, offset, maxCount);
+
+			List<ServiceEventPersistable> batch = fileTier.peek(eventKind, eventName, 0, offset + maxCount);
+			if(batch.size() < offset + maxCount)
+				batch.addAll(memoryTier.peek(eventKind, eventName, 0, offset + maxCount - batch.size()));
+			if(eventKind == 1 && batch.size() > 1)
+				batch = batch.subList(0, 1);
+			return new ArrayList<ServiceEventPersistable>(batch.subList(Math.min(offset, batch.size()), batch.size()));
+		}
+	}
+
+	public void save(ReplacingEvent event) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	{
+		synchronized(mutex)
+		{
+			completeSpill();
+			if(fileTier.isInStorageMode() && memoryTier.isEmpty())
+				fileTier.save(event);
+			else
+				memoryTier.save(event);
+		}
+	}
+
+	public void save(QueueingEvent event) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	{
+		synchronized(mutex)
+		{
+			completeSpill();
+			if(fileTier.isInStorageMode() && memoryTier.isEmpty())
+				fileTier.save(event);
+			else
+				memoryTier.save(event);
+		}
+	}
+
+	public void save(PrivateEvent event) throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	{
+		synchronized(mutex)
+		{
+			completeSpill();
+			if(fileTier.isInStorageMode() && memoryTier.isEmpty())
+				fileTier.save(event);
+			else
+				memoryTier.save(event);
+		}
+	}
+
+	public int save(List<QueueingEvent> events) throws PersistenceIOSoftnetException
+	{
+		synchronized(mutex)
+		{
+			try
+			{
+				completeSpill();
+			}
+			catch(PersistenceStorageFullSoftnetException ex)
+			{
+				return 0;
+			}
+			if(fileTier.isInStorageMode() && memoryTier.isEmpty())
+				return fileTier.save(events);
+			else
+				return memoryTier.save(events);
+		}
+	}
+
+	public void setAcknowledment() throws PersistenceIOSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(fileTier.isInStorageMode())
+				fileTier.setAcknowledment();
+			else
+				memoryTier.setAcknowledment();
+		}
+	}
+
+	public ServiceEventPersistable peek() throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException
+	{
+		synchronized(mutex)
+		{
+			try
+			{
+				completeSpill();
+			}
+			catch(PersistenceStorageFullSoftnetException ex) {}
+
+			if(fileTier.isInStorageMode())
+			{
+				ServiceEventPersistable sep = fileTier.peek();
+				if(sep != null)
+					return sep;
+				isSpilled = false;
+			}
+
+			if(memoryTier.isInStorageMode())
+			{
+				ServiceEventPersistable sep = memoryTier.peek();
+				if(sep != null)
+					return sep;
+			}
+
+			storageMode = false;
+			return null;
+		}
+	}
+
+	public List<ServiceEventPersistable> peek(int offset, int maxCount, int maxBytes) throws PersistenceIOSoftnetException, PersistenceDataFormatSoftnetException
+	{
+		synchronized(mutex)
+		{
+			try
+			{
+				completeSpill();
+			}
+			catch(PersistenceStorageFullSoftnetException ex) {}
+
+			List<ServiceEventPersistable> batch = null;
+			if(fileTier.isInStorageMode())
+			{
+				batch = fileTier.peek(offset, maxCount, maxBytes);
+				if(batch.isEmpty() == false || (offset > 0 && fileTier.isInStorageMode()))
+					return batch;
+				isSpilled = false;
+			}
+
+			if(memoryTier.isInStorageMode())
+			{
+				batch = memoryTier.peek(offset, maxCount, maxBytes);
+				if(batch.isEmpty() == false || (offset > 0 && memoryTier.isInStorageMode()))
+					return batch;
+			}
+
+			storageMode = false;
+			return batch != null ? batch : new ArrayList<ServiceEventPersistable>();
+		}
+	}
+
+	public void setAcknowledment(UUID instanceUid) throws PersistenceIOSoftnetException
+	{
+		synchronized(mutex)
+		{
+			if(fileTier.isInStorageMode())
+				fileTier.setAcknowledment(instanceUid);
+			else
+				memoryTier.setAcknowledment(instanceUid);
+		}
+	}
+
+	public void close()
+	{
+		synchronized(mutex)
+		{
+			memoryTier.close();
+			fileTier.close();
+		}
+	}
+
+	private void spill() throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	{
+		if(fileTier.isInStorageMode())
+			return;
+
+		ServiceEventPersistable sep;
+		while((sep = memoryTier.first()) != null)
+		{
+			if(sep.kind == 1)
+				fileTier.cache(new ReplacingEvent(sep));
+			else if(sep.kind == 2)
+				fileTier.cache(new QueueingEvent(sep));
+			else
+				fileTier.cache(new PrivateEvent(sep));
+			isSpilled = true;
+			memoryTier.setAcknowledment(sep.kind, sep.name);
+		}
+	}
+
+	private void completeSpill() throws PersistenceIOSoftnetException, PersistenceStorageFullSoftnetException
+	{
+		if(isSpillPending == false)
+			return;
+
+		if(fileTier.isInCacheMode())
+		{
+			isSpillPending = false;
+			return;
+		}
+
+		ServiceEventPersistable sep;
+		while((sep = memoryTier.first()) != null)
+		{
+			if(sep.kind == 1)
+				fileTier.save(new ReplacingEvent(sep));
+			else if(sep.kind == 2)
+				fileTier.save(new QueueingEvent(sep));
+			else
+				fileTier.save(new PrivateEvent(sep));
+			isSpilled = true;
+			memoryTier.setAcknowledment();
+		}
+		isSpillPending = false;
+	}
+}
@@ -125,13 +125,12 @@ class UDPBinding
 			else
 			{
 				final UdpRequest request = completedRequests.removeFirst();
-				Thread thread = new Thread()
+				Threads.start(new Runnable()
 				{
 				    public void run(){
 				    	acceptHandler.accept(new RequestContext(serviceEndpoint, request.user, request.clientId), request.datagramSocket, request.remoteSocketAddress, request.mode);
 				    }
-				};
-				thread.start();
+				});
 			}
 		}
 	}
@@ -172,11 +171,11 @@ class UDPBinding
 		
 		if(serverIp instanceof Inet6Address)
 		{
-			request.udpConnector = new UDPConnectorV6(connectionUid, serverIp, serviceEndpoint.scheduler);
+			request.udpConnector = new UDPConnectorV6(connectionUid, serverIp, serviceEndpoint.scheduler, serviceEndpoint.threadPool, serviceEndpoint.reactor);
 		}
 		else
 		{
-			request.udpConnector = new UDPConnectorV4(connectionUid, serverIp, serviceEndpoint.scheduler);
+			request.udpConnector = new UDPConnectorV4(connectionUid, serverIp, serviceEndpoint.scheduler, serviceEndpoint.threadPool, serviceEndpoint.reactor);
 		}
 		
 		synchronized(mutex)
@@ -16,6 +16,8 @@ class UDPConnectorV4 implements UDPConnector, STaskContext
 	private UUID connectionUid;
 	private InetAddress serverIP;
 	private Scheduler scheduler;
+	private ThreadPool threadPool;
+	private Reactor reactor;
 	private UDPResponseHandler responseHandler;
 	private BiAcceptor<byte[], Object> authenticationHandler;
 	private Object attachment;
@@ -45,11 +47,13 @@ class UDPConnectorV4 implements UDPConnector, STaskContext
     }
 	private ConnectorState connectorState = ConnectorState.INITIAL;
 			
-	public UDPConnectorV4(UUID connectionUid, InetAddress serverIP, Scheduler scheduler)
+	public UDPConnectorV4(UUID connectionUid, InetAddress serverIP, Scheduler scheduler, ThreadPool threadPool, Reactor reactor)
 	{
 		this.connectionUid = connectionUid;
 		this.serverIP = serverIP;
 		this.scheduler = scheduler;
+		this.threadPool = threadPool;
+		this.reactor = reactor;
 	}
 	
 	public void connect(UDPResponseHandler responseHandler, BiAcceptor<byte[], Object> authenticationHandler, Object attachment)
@@ -58,13 +62,12 @@ class UDPConnectorV4 implements UDPConnector, STaskContext
 		this.authenticationHandler = authenticationHandler;
 		this.attachment = attachment;
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	execute();
 		    }
-		};
-		thread.start();
+		});
 	}
 	
 	public void onAuthenticationHash(byte[] authHash, byte[] authKey2)
@@ -128,7 +131,7 @@ class UDPConnectorV4 implements UDPConnector, STaskContext
 				if(is_disposed == false)
 				{
 					controlChannel = SocketChannel.open();
-					msgSocket = new MsgSocket(controlChannel);
+					msgSocket = new MsgSocket(controlChannel, reactor);
 				}
 				else return;
 			}
@@ -152,6 +155,7 @@ class UDPConnectorV4 implements UDPConnector, STaskContext
 			};					
 			msgSocket.minLength = 1;
 			msgSocket.maxLength = 256;
+			msgSocket.dispatcher = threadPool;
 			msgSocket.start();
 			
 			msgSocket.send(EncodeMessage_Service());
@@ -179,13 +183,12 @@ class UDPConnectorV4 implements UDPConnector, STaskContext
 			thisEndpointUid = endpointUid;			
 		}
         
-        Thread thread = new Thread()
+        Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	udpExecute();
 		    }
-		};
-		thread.start();
+		});
         
         authenticationHandler.accept(authKey, attachment);
 	}
@@ -581,13 +584,12 @@ class UDPConnectorV4 implements UDPConnector, STaskContext
 		dispose();
 
 		final DatagramSocket f_dgmSocket = dgmSocket;
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 				responseHandler.onSuccess(f_dgmSocket, remotePublicSocketAddress, ConnectionMode.P2P, attachment);
 		    }
-		};
-		thread.start();	
+		});	
 	}
 
 	private void ProcessMessage_P2PLocalHolePunched()
@@ -611,13 +613,12 @@ class UDPConnectorV4 implements UDPConnector, STaskContext
 		dispose();
 		
 		final DatagramSocket f_dgmSocket = dgmSocket;
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 				responseHandler.onSuccess(f_dgmSocket, remotePrivateSocketAddress, ConnectionMode.P2P, attachment);
 		    }
-		};
-		thread.start();		
+		});		
 	}
 
 	private SoftnetMessage EncodeMessage_Service()
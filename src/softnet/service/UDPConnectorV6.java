@@ -16,6 +16,8 @@ class UDPConnectorV6 implements UDPConnector, STaskContext
 	private UUID connectionUid;
 	private InetAddress serverIP;
 	private Scheduler scheduler;
+	private ThreadPool threadPool;
+	private Reactor reactor;
 	private UDPResponseHandler responseHandler;
 	private BiAcceptor<byte[], Object> authenticationHandler;
 	private Object attachment;
@@ -41,11 +43,13 @@ class UDPConnectorV6 implements UDPConnector, STaskContext
     }
 	private ConnectorState connectorState = ConnectorState.INITIAL;
 			
-	public UDPConnectorV6(UUID connectionUid, InetAddress serverIP, Scheduler scheduler)
+	public UDPConnectorV6(UUID connectionUid, InetAddress serverIP, Scheduler scheduler, ThreadPool threadPool, Reactor reactor)
 	{
 		this.connectionUid = connectionUid;
 		this.serverIP = serverIP;
 		this.scheduler = scheduler;
+		this.threadPool = threadPool;
+		this.reactor = reactor;
 	}
 	
 	public void connect(UDPResponseHandler responseHandler, BiAcceptor<byte[], Object> authenticationHandler, Object attachment)
@@ -54,13 +58,12 @@ class UDPConnectorV6 implements UDPConnector, STaskContext
 		this.authenticationHandler = authenticationHandler;
 		this.attachment = attachment;
 		
-		Thread thread = new Thread()
+		Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	execute();
 		    }
-		};
-		thread.start();
+		});
 	}
 	
 	public void onAuthenticationHash(byte[] authHash, byte[] authKey2)
@@ -124,7 +127,7 @@ class UDPConnectorV6 implements UDPConnector, STaskContext
 				if(is_disposed == false)
 				{
 					controlChannel = SocketChannel.open();
-					msgSocket = new MsgSocket(controlChannel);
+					msgSocket = new MsgSocket(controlChannel, reactor);
 				}
 				else return;
 			}
@@ -148,6 +151,7 @@ class UDPConnectorV6 implements UDPConnector, STaskContext
 			};					
 			msgSocket.minLength = 1;
 			msgSocket.maxLength = 256;
+			msgSocket.dispatcher = threadPool;
 			msgSocket.start();
 			
 			msgSocket.send(EncodeMessage_Service());
@@ -174,13 +178,12 @@ class UDPConnectorV6 implements UDPConnector, STaskContext
 			thisEndpointUid = endpointUid;			
 		}
         
-        Thread thread = new Thread()
+        Threads.start(new Runnable()
 		{
 		    public void run(){
 		    	udpExecute();
 		    }
-		};
-		thread.start();
+		});
         
         authenticationHandler.accept(authKey, attachment);
 	}